@@ -0,0 +1,60 @@
+package com.urbanwaste.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of one password check per PBKDF2 work factor, to size
+ * urbanwaste.passwords.pbkdf2-iterations on the production hardware: take the largest
+ * count whose check stays under the login latency target (e.g. 100 ms). The throughput
+ * of the login endpoint is then about verifier-threads / that time.
+ *
+ * Run with ./gradlew jmh.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordHasherBenchmark {
+
+    @Param({"100000", "210000", "310000", "600000"})
+    private int iterations;
+
+    private PasswordHasher hasher;
+    private String stored;
+
+    @Setup
+    public void setUp() {
+        hasher = new PasswordHasher(iterations);
+        stored = hasher.hash("correct horse battery staple");
+    }
+
+    /**
+     * A login: the cost is the same whether the password matches or not
+     */
+    @Benchmark
+    public boolean verify() {
+        return hasher.matches("correct horse battery staple", stored);
+    }
+
+    /**
+     * A password set by create/update, or a rehash at login
+     */
+    @Benchmark
+    public String hash() {
+        return hasher.hash("correct horse battery staple");
+    }
+}
@@ -14,6 +14,7 @@ import com.urbanwaste.model.Utilisateur;
 import com.urbanwaste.service.AuthService;
 
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 
 // ==================== AUTH CONTROLLER ====================
 @RestController
@@ -33,6 +34,10 @@ public class AuthController {
                 user.getPrenom() + " " + user.getNom(),
                 user.getRole()
             ));
+        } catch (RejectedExecutionException e) {
+            // Every password verifier is busy and the queue is full
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(Map.of("error", "Too many login attempts in progress, try again later"));
         } catch (RuntimeException e) {
             // Handle authentication failures
             if (e.getMessage() != null && e.getMessage().contains("Identifiants incorrects")) {
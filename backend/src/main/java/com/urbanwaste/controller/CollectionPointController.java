@@ -2,16 +2,34 @@ package com.urbanwaste.controller;
 
 import com.urbanwaste.model.PointCollecte;
 import com.urbanwaste.model.PointsCollecteWrapper;
+import com.urbanwaste.model.TelemetryReading;
+import com.urbanwaste.model.Zone;
 import com.urbanwaste.service.CollectionPointService;
+import com.urbanwaste.service.DistanceMatrix;
+import com.urbanwaste.service.FillForecaster;
+import com.urbanwaste.service.FillHistoryService;
+import com.urbanwaste.service.SpatialIndex;
+import com.urbanwaste.service.TelemetryService;
+import com.urbanwaste.util.ImportReport;
 import com.urbanwaste.util.XMLHandler;
 import com.urbanwaste.exception.XMLValidationException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
-import org.xml.sax.SAXException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.xml.bind.JAXBException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 
 @RestController
@@ -25,6 +43,24 @@ public class CollectionPointController {
     @Autowired
     private XMLHandler xmlHandler;
     
+    @Autowired
+    private DistanceMatrix distanceMatrix;
+    
+    @Autowired
+    private SpatialIndex spatialIndex;
+    
+    @Autowired
+    private TelemetryService telemetryService;
+    
+    @Autowired
+    private FillHistoryService fillHistoryService;
+    
+    @Autowired
+    private FillForecaster fillForecaster;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
     @GetMapping
     public ResponseEntity<?> getAllPoints() {
         try {
@@ -117,9 +153,176 @@ public class CollectionPointController {
         }
     }
     
+    /**
+     * GET: The k fullest points, fullest first
+     */
+    @GetMapping("/fullest")
+    public ResponseEntity<?> getFullestPoints(@RequestParam(defaultValue = "10") int k) {
+        try {
+            return ResponseEntity.ok(pointService.getFullestPoints(k));
+        } catch (JAXBException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    /**
+     * GET: Points expected to reach the threshold within horizonHours, soonest first,
+     * with their estimated fill rate and predictedFullAt
+     */
+    @GetMapping("/forecast")
+    public ResponseEntity<?> getForecast(
+            @RequestParam(defaultValue = "24") int horizonHours,
+            @RequestParam(defaultValue = "80") float threshold) {
+        if (horizonHours <= 0) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", "horizonHours must be positive"));
+        }
+        try {
+            return ResponseEntity.ok(fillForecaster.forecastAll(pointService.getAllPoints(), threshold,
+                Duration.ofHours(horizonHours)));
+        } catch (JAXBException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    /**
+     * GET: When a point is expected to reach the threshold (predictedFullAt is null
+     * beyond horizonHours or while its fill rate is unknown)
+     */
+    @GetMapping("/{id}/forecast")
+    public ResponseEntity<?> getPointForecast(
+            @PathVariable int id,
+            @RequestParam(defaultValue = "168") int horizonHours,
+            @RequestParam(defaultValue = "80") float threshold) {
+        try {
+            Optional<PointCollecte> point = pointService.getPointById(id);
+            return point.isPresent()
+                ? ResponseEntity.ok(fillForecaster.forecast(point.get(), threshold, Duration.ofHours(Math.max(horizonHours, 1))))
+                : ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "Point not found"));
+        } catch (JAXBException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    /**
+     * GET: The k closest points to a point, with their distance in km
+     */
+    @GetMapping("/{id}/nearest")
+    public ResponseEntity<?> getNearestPoints(@PathVariable int id, @RequestParam(defaultValue = "5") int k) {
+        try {
+            if (pointService.getPointById(id).isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "Point not found"));
+            }
+            return ResponseEntity.ok(distanceMatrix.nearest(id, k));
+        } catch (JAXBException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    /**
+     * GET: Points around a position: all within radius km, or the k closest when no radius is given
+     */
+    @GetMapping("/near")
+    public ResponseEntity<?> getPointsNear(
+            @RequestParam double lat,
+            @RequestParam double lon,
+            @RequestParam(required = false) Double radius,
+            @RequestParam(defaultValue = "10") int k) {
+        if (radius != null && radius < 0) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", "radius must be positive"));
+        }
+        List<SpatialIndex.Hit> hits = radius != null
+            ? spatialIndex.within(lat, lon, radius)
+            : spatialIndex.nearest(lat, lon, k);
+        return ResponseEntity.ok(hits);
+    }
+    
+    /**
+     * GET: Points inside a latitude/longitude rectangle
+     */
+    @GetMapping("/bbox")
+    public ResponseEntity<?> getPointsInBox(
+            @RequestParam double minLat,
+            @RequestParam double minLon,
+            @RequestParam double maxLat,
+            @RequestParam double maxLon) {
+        if (minLat > maxLat || minLon > maxLon) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", "min bounds must not exceed max bounds"));
+        }
+        return ResponseEntity.ok(spatialIndex.inBox(minLat, minLon, maxLat, maxLon));
+    }
+    
+    /**
+     * GET: Fill-level history of a point. from/to are ISO dates or instants (default: the
+     * last 7 days); step is raw, 1h or 1d (default: chosen from the range).
+     */
+    @GetMapping("/{id}/history")
+    public ResponseEntity<?> getFillHistory(
+            @PathVariable int id,
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false) String step) {
+        if (!fillHistoryService.isAvailable()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(Map.of("error", "Fill-level history is not available"));
+        }
+        try {
+            if (pointService.getPointById(id).isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "Point not found"));
+            }
+            Instant end = to != null ? parseInstant(to, true) : Instant.now();
+            Instant start = from != null ? parseInstant(from, false) : end.minus(Duration.ofDays(7));
+            if (start.isAfter(end)) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("error", "from must not be after to"));
+            }
+            return ResponseEntity.ok(fillHistoryService.getHistory(id, start, end, step));
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", "Invalid date (expected yyyy-MM-dd or an ISO instant): " + e.getParsedString()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", e.getMessage()));
+        } catch (JAXBException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    // A plain date covers the whole day (UTC): its start for "from", its end for "to"
+    private static Instant parseInstant(String value, boolean endOfDay) {
+        if (value.length() == 10) {
+            LocalDate day = LocalDate.parse(value);
+            return endOfDay
+                ? day.plusDays(1).atStartOfDay().toInstant(ZoneOffset.UTC).minusSeconds(1)
+                : day.atStartOfDay().toInstant(ZoneOffset.UTC);
+        }
+        return Instant.parse(value);
+    }
+    
+    /**
+     * GET: Point statistics, of all points or of those of a defined zone (name or id)
+     */
     @GetMapping("/stats")
-    public ResponseEntity<?> getStatistics() {
+    public ResponseEntity<?> getStatistics(@RequestParam(required = false) String zone) {
         try {
+            if (zone != null) {
+                Optional<Zone> defined = pointService.resolveZone(zone);
+                Optional<Map<String, Object>> stats = defined.isPresent()
+                    ? pointService.getZoneStatistics(defined.get().getId()) : Optional.empty();
+                return stats.isPresent()
+                    ? ResponseEntity.ok(stats.get())
+                    : ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Zone not found: " + zone));
+            }
             return ResponseEntity.ok(pointService.getStatistics());
         } catch (JAXBException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -127,6 +330,19 @@ public class CollectionPointController {
         }
     }
     
+    /**
+     * GET: Check the maintained statistics against a recomputation from all points
+     */
+    @GetMapping("/stats/verify")
+    public ResponseEntity<?> verifyStatistics() {
+        try {
+            return ResponseEntity.ok(pointService.verifyStatistics());
+        } catch (JAXBException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+    
     @PatchMapping("/{id}/fill-level")
     public ResponseEntity<?> updateFillLevel(@PathVariable int id, @RequestParam float level) {
         try {
@@ -144,6 +360,78 @@ public class CollectionPointController {
         }
     }
     
+    /**
+     * POST: Bulk sensor readings {pointId, level, timestamp}, as a JSON array or as
+     * NDJSON (one object per line). The body is parsed as it arrives and the readings
+     * are applied asynchronously in batches.
+     */
+    @PostMapping(value = "/telemetry", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/x-ndjson"})
+    public ResponseEntity<?> ingestTelemetry(InputStream body) {
+        int accepted = 0;
+        int refused = 0;
+        // readValues iterates the elements of a top-level array, or a sequence of root values
+        try (MappingIterator<TelemetryReading> readings = objectMapper.readerFor(TelemetryReading.class).readValues(body)) {
+            while (readings.hasNextValue()) {
+                if (telemetryService.submit(readings.nextValue())) {
+                    accepted++;
+                } else {
+                    refused++;
+                }
+            }
+        } catch (JsonProcessingException e) {
+            // Readings before the malformed one are already queued
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", "Malformed reading: " + e.getOriginalMessage(),
+                    "accepted", accepted, "refused", refused));
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", "Failed to read telemetry: " + e.getMessage()));
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+            .body(Map.of("accepted", accepted, "refused", refused));
+    }
+    
+    /**
+     * GET: Export collection points as XML (Interoperability)
+     * Streamed (optionally gzipped); filtered by last collection date range, zone and state
+     */
+    @GetMapping("/export")
+    public ResponseEntity<?> exportPoints(
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false) String zone,
+            @RequestParam(required = false) String etat,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        try {
+            List<PointCollecte> points = pointService.findPoints(
+                from != null ? LocalDate.parse(from) : null,
+                to != null ? LocalDate.parse(to) : null,
+                zone, etat);
+            
+            StreamingResponseBody body = out ->
+                xmlHandler.streamExport(out, PointsCollecteWrapper.class, "pointCollecte", points, gzip);
+            
+            HttpHeaders headers = new HttpHeaders();
+            if (gzip) {
+                headers.setContentType(MediaType.parseMediaType("application/gzip"));
+                headers.setContentDispositionFormData("attachment", "points_collecte.xml.gz");
+            } else {
+                headers.setContentType(MediaType.APPLICATION_XML);
+                headers.setContentDispositionFormData("attachment", "points_collecte.xml");
+            }
+            
+            return ResponseEntity.ok()
+                .headers(headers)
+                .body(body);
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", "Invalid date (expected yyyy-MM-dd): " + e.getParsedString()));
+        } catch (JAXBException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", "Failed to export points: " + e.getMessage()));
+        }
+    }
+    
     /**
      * POST: Import collection points from XML file (Interoperability)
      * Accepts MultipartFile XML, validates against XSD, and merges with existing data
@@ -156,33 +444,23 @@ public class CollectionPointController {
         }
         
         try {
-            // Unmarshal XML from InputStream with XSD validation
-            PointsCollecteWrapper importedWrapper = xmlHandler.unmarshalFromStream(
-                file.getInputStream(), 
-                PointsCollecteWrapper.class, 
-                "pointsCollecte.xsd"
+            // Stream the file record by record; each <pointCollecte> is validated against the XSD
+            // and valid records are merged in chunks
+            ImportReport report = xmlHandler.streamImport(
+                file.getInputStream(),
+                PointsCollecteWrapper.class,
+                PointCollecte.class,
+                "pointCollecte",
+                "pointsCollecte.xsd",
+                pointService::mergePoints
             );
             
-            if (importedWrapper == null || importedWrapper.getPoints() == null) {
+            if (report.getFatalError() != null) {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                    .body(Map.of("error", "Invalid XML structure"));
+                    .body(report.toMap(null));
             }
             
-            // Merge with existing data (avoiding duplicates by ID)
-            int importedCount = pointService.mergePoints(importedWrapper.getPoints());
-            
-            return ResponseEntity.ok(Map.of(
-                "message", "Collection points imported successfully",
-                "imported", importedCount,
-                "total", importedWrapper.getPoints().size()
-            ));
-        } catch (SAXException e) {
-            String errorMsg = e.getMessage();
-            if (errorMsg == null || errorMsg.isEmpty()) {
-                errorMsg = e.getClass().getSimpleName() + ": " + (e.getLocalizedMessage() != null ? e.getLocalizedMessage() : "XML validation failed");
-            }
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                .body(Map.of("error", "XML validation failed: " + errorMsg));
+            return ResponseEntity.ok(report.toMap("Collection points imported successfully"));
         } catch (JAXBException e) {
             String errorMsg = e.getMessage();
             if (errorMsg == null || errorMsg.isEmpty()) {
@@ -0,0 +1,57 @@
+package com.urbanwaste.controller;
+
+import com.urbanwaste.service.CollectionPointService;
+import com.urbanwaste.service.RouteService;
+import com.urbanwaste.service.VehicleService;
+import com.urbanwaste.util.ReadView;
+import com.urbanwaste.util.XMLHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import jakarta.xml.bind.JAXBException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Routes, vehicles and collection points read together from one consistent view
+ */
+@RestController
+@RequestMapping("/api/overview")
+@CrossOrigin(origins = {"http://localhost:5173", "http://localhost:3000"})
+public class OverviewController {
+
+    @Autowired
+    private RouteService routeService;
+
+    @Autowired
+    private VehicleService vehicleService;
+
+    @Autowired
+    private CollectionPointService collectionPointService;
+
+    @Autowired
+    private XMLHandler xmlHandler;
+
+    /**
+     * GET: All routes, vehicles and points as of the same commit
+     */
+    @GetMapping
+    public ResponseEntity<?> getOverview() {
+        try {
+            // The three lists come from the same view, so a route never refers to a
+            // vehicle or point state newer than the one returned alongside it
+            ReadView view = xmlHandler.view();
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("routes", routeService.getAllRoutes(view));
+            body.put("vehicles", vehicleService.getAllVehicles(view));
+            body.put("points", collectionPointService.getAllPoints(view));
+            body.put("version", view.getSequence());
+            return ResponseEntity.ok(body);
+        } catch (JAXBException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+}
@@ -1,14 +1,19 @@
 package com.urbanwaste.controller;
 
-import com.urbanwaste.service.RouteService;
+import com.urbanwaste.service.PublicScheduleCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import jakarta.xml.bind.JAXBException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Public controller for citizen-facing endpoints (no authentication required)
@@ -19,23 +24,36 @@ import java.util.Map;
 public class PublicController {
     
     @Autowired
-    private RouteService routeService;
+    private PublicScheduleCache scheduleCache;
+    
+    // How long browsers and proxies may reuse a schedule before revalidating it
+    @Value("${urbanwaste.public-schedules.max-age-seconds:60}")
+    private long maxAgeSeconds;
     
     /**
-     * GET: Get collection schedules for a zone
+     * GET: Get collection schedules for a zone.
+     * Supports conditional requests: If-None-Match / If-Modified-Since answer 304 when unchanged.
      */
     @GetMapping("/schedules")
-    public ResponseEntity<?> getSchedules(@RequestParam(required = false) String zone) {
+    public ResponseEntity<?> getSchedules(@RequestParam(required = false) String zone, WebRequest request) {
         try {
             if (zone == null || zone.trim().isEmpty()) {
                 return ResponseEntity.ok(List.of());
             }
-            List<Map<String, String>> schedules = routeService.getSchedulesByZone(zone);
-            return ResponseEntity.ok(schedules);
+            PublicScheduleCache.View schedule = scheduleCache.get(zone);
+            if (request.checkNotModified(schedule.getEtag(), schedule.getLastModified())) {
+                // 304 already prepared by Spring
+                return null;
+            }
+            return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CacheControl.maxAge(maxAgeSeconds, TimeUnit.SECONDS).cachePublic())
+                .eTag(schedule.getEtag())
+                .lastModified(schedule.getLastModified())
+                .body(schedule.getJson());
         } catch (JAXBException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", e.getMessage()));
         }
     }
 }
-
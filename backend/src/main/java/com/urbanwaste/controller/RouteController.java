@@ -2,7 +2,9 @@ package com.urbanwaste.controller;
 
 import com.urbanwaste.model.Tournee; 
 import com.urbanwaste.model.TourneesWrapper;
+import com.urbanwaste.service.RoutePlanner;
 import com.urbanwaste.service.RouteService;
+import com.urbanwaste.util.ImportReport;
 import com.urbanwaste.util.XMLHandler;
 import com.urbanwaste.exception.XMLValidationException;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,8 +16,10 @@ import org.springframework.web.bind.annotation.*;
 
 import jakarta.xml.bind.JAXBException; 
 import org.springframework.web.multipart.MultipartFile;
-import org.xml.sax.SAXException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import java.io.InputStream;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -30,6 +34,9 @@ public class RouteController {
     
     @Autowired
     private XMLHandler xmlHandler;
+    
+    @Autowired
+    private RoutePlanner routePlanner;
 
     /**
      * GET: Retrieve all routes (Tournees)
@@ -66,14 +73,15 @@ public class RouteController {
      * POST: Create a new route
      */
     @PostMapping
-    public ResponseEntity<?> createRoute(@RequestBody Tournee route) { 
+    public ResponseEntity<?> createRoute(@RequestBody Tournee route,
+                                         @RequestParam(defaultValue = "false") boolean optimize) { 
         try {
             System.out.println("[RouteController] Creating route with employee ID: " + 
                              (route.getEmploye() != null ? route.getEmploye().getId() : "null") +
                              ", vehicle ID: " + (route.getVehicle() != null ? route.getVehicle().getId() : "null") +
                              ", points count: " + (route.getPointsCollecte() != null ? route.getPointsCollecte().size() : 0));
             
-            Tournee newRoute = routeService.createRoute(route);
+            Tournee newRoute = routeService.createRoute(route, optimize);
             return ResponseEntity.status(HttpStatus.CREATED).body(newRoute);
         } catch (IllegalArgumentException e) {
             System.err.println("[RouteController] Validation error: " + e.getMessage());
@@ -121,6 +129,62 @@ public class RouteController {
         }
     }
 
+    /**
+     * POST: Reorder the route's collection points to minimize the distance driven
+     * and store the computed distanceKm
+     */
+    @PostMapping("/{id}/optimize")
+    public ResponseEntity<?> optimizeRoute(@PathVariable int id) {
+        try {
+            Optional<Map<String, Object>> result = routeService.optimizeRoute(id);
+            return result.isPresent()
+                ? ResponseEntity.ok(result.get())
+                : ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "Route not found"));
+        } catch (XMLValidationException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", "XML validation failed", "details", e.getMessage()));
+        } catch (JAXBException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * POST: Plan the day's tours automatically for the points filled above the threshold,
+     * using the available vehicles and employees. Returns the proposed tours; with
+     * commit=true they are created (all or none, through the usual business rules).
+     */
+    @PostMapping("/plan")
+    public ResponseEntity<?> planRoutes(
+            @RequestParam(required = false) String date,
+            @RequestParam(defaultValue = "80") float threshold,
+            @RequestParam(defaultValue = "08:00") String heureDebut,
+            @RequestParam(defaultValue = "false") boolean commit) {
+        try {
+            LocalDate day = date != null ? LocalDate.parse(date) : LocalDate.now();
+            RoutePlanner.Plan plan = routePlanner.plan(day, threshold, heureDebut);
+            
+            if (!commit) {
+                return ResponseEntity.ok(plan.toMap(plan.getTournees()));
+            }
+            List<Tournee> created = routeService.createRoutes(plan.getTournees());
+            return ResponseEntity.status(HttpStatus.CREATED).body(plan.toMap(created));
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", "Invalid date (expected yyyy-MM-dd): " + e.getParsedString()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", e.getMessage()));
+        } catch (XMLValidationException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", "XML validation failed", "details", e.getMessage()));
+        } catch (JAXBException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+
     /**
      * DELETE: Delete a route
      */
@@ -142,22 +206,43 @@ public class RouteController {
     }
     
     /**
-     * GET: Export all routes as XML (Interoperability)
-     * Returns XML file for external system integration
+     * GET: Export routes as XML (Interoperability)
+     * Returns XML file for external system integration, streamed (optionally gzipped)
+     * and filtered by date range, zone and status
      */
     @GetMapping("/export")
-    public ResponseEntity<?> exportRoutes() {
+    public ResponseEntity<?> exportRoutes(
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false) String zone,
+            @RequestParam(required = false) String statut,
+            @RequestParam(defaultValue = "false") boolean gzip) {
         try {
-            TourneesWrapper wrapper = routeService.getAllRoutesWrapper();
-            String xmlContent = xmlHandler.marshalToString(wrapper);
+            // Filters: from/to are yyyy-MM-dd (inclusive) on the planned date
+            List<Tournee> routes = routeService.findRoutes(
+                from != null ? LocalDate.parse(from) : null,
+                to != null ? LocalDate.parse(to) : null,
+                zone, statut);
+            
+            // Written element by element to the response stream
+            StreamingResponseBody body = out ->
+                xmlHandler.streamExport(out, TourneesWrapper.class, "tournee", routes, gzip);
             
             HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_XML);
-            headers.setContentDispositionFormData("attachment", "rapport_tournees.xml");
+            if (gzip) {
+                headers.setContentType(MediaType.parseMediaType("application/gzip"));
+                headers.setContentDispositionFormData("attachment", "rapport_tournees.xml.gz");
+            } else {
+                headers.setContentType(MediaType.APPLICATION_XML);
+                headers.setContentDispositionFormData("attachment", "rapport_tournees.xml");
+            }
             
             return ResponseEntity.ok()
                 .headers(headers)
-                .body(xmlContent);
+                .body(body);
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", "Invalid date (expected yyyy-MM-dd): " + e.getParsedString()));
         } catch (JAXBException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", "Failed to export routes: " + e.getMessage()));
@@ -183,37 +268,23 @@ public class RouteController {
             System.out.println("[RouteController] Importing file: " + file.getOriginalFilename() + 
                              ", size: " + file.getSize() + " bytes");
             
-            // Unmarshal XML from InputStream with XSD validation
-            TourneesWrapper importedWrapper = xmlHandler.unmarshalFromStream(
-                file.getInputStream(), 
-                TourneesWrapper.class, 
-                "tournees.xsd"
+            // Stream the file record by record; each <tournee> is validated against the XSD
+            // and valid records are merged in chunks
+            ImportReport report = xmlHandler.streamImport(
+                file.getInputStream(),
+                TourneesWrapper.class,
+                Tournee.class,
+                "tournee",
+                "tournees.xsd",
+                routeService::mergeRoutes
             );
             
-            if (importedWrapper == null || importedWrapper.getTournees() == null) {
+            if (report.getFatalError() != null) {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                    .body(Map.of("error", "Invalid XML structure"));
+                    .body(report.toMap(null));
             }
             
-            // Merge with existing data (avoiding duplicates by ID)
-            int importedCount = routeService.mergeRoutes(importedWrapper.getTournees());
-            
-            return ResponseEntity.ok(Map.of(
-                "message", "Routes imported successfully",
-                "imported", importedCount,
-                "total", importedWrapper.getTournees().size()
-            ));
-        } catch (SAXException e) {
-            String errorMsg = e.getMessage();
-            if (errorMsg == null || errorMsg.isEmpty()) {
-                errorMsg = e.getClass().getSimpleName() + ": " + (e.getLocalizedMessage() != null ? e.getLocalizedMessage() : "XML validation failed");
-            }
-            // Add helpful message for common validation errors
-            if (errorMsg.contains("capacite") && errorMsg.contains("statut")) {
-                errorMsg += ". Note: In 'vehicle' elements within tours, the order is strict: id, capacite, disponibilite, immatriculation, typeVehicule, statut, etat, conducteur. Check that 'capacite' appears before 'typeVehicule' and not after.";
-            }
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                .body(Map.of("error", "XML validation failed: " + errorMsg));
+            return ResponseEntity.ok(report.toMap("Routes imported successfully"));
         } catch (JAXBException e) {
             String errorMsg = e.getMessage();
             if (errorMsg == null || errorMsg.isEmpty()) {
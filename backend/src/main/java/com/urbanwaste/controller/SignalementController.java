@@ -1,6 +1,8 @@
 package com.urbanwaste.controller;
 
 import com.urbanwaste.model.Signalement;
+import com.urbanwaste.model.Zone;
+import com.urbanwaste.service.CollectionPointService;
 import com.urbanwaste.service.SignalementService;
 import com.urbanwaste.exception.XMLValidationException;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,6 +23,9 @@ public class SignalementController {
     @Autowired
     private SignalementService signalementService;
 
+    @Autowired
+    private CollectionPointService pointService;
+
     /**
      * POST: Employees submit new reports
      */
@@ -39,11 +44,19 @@ public class SignalementController {
     }
 
     /**
-     * GET: Admins / Supervisors view all reports
+     * GET: Admins / Supervisors view all reports, or those of a zone (name or id)
      */
     @GetMapping
-    public ResponseEntity<?> getAll() {
+    public ResponseEntity<?> getAll(@RequestParam(required = false) String zone) {
         try {
+            if (zone != null) {
+                Optional<Zone> defined = pointService.resolveZone(zone);
+                if (defined.isEmpty()) {
+                    return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("error", "Zone not found: " + zone));
+                }
+                return ResponseEntity.ok(signalementService.getByZone(defined.get().getId()));
+            }
             List<Signalement> list = signalementService.getAll();
             return ResponseEntity.ok(list);
         } catch (JAXBException e) {
@@ -0,0 +1,59 @@
+package com.urbanwaste.controller;
+
+import com.urbanwaste.service.DistanceMatrix;
+import com.urbanwaste.service.FillHistoryService;
+import com.urbanwaste.service.TelemetryService;
+import com.urbanwaste.util.XMLHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/system")
+@CrossOrigin(origins = {"http://localhost:5173", "http://localhost:3000"})
+public class SystemController {
+
+    @Autowired
+    private XMLHandler xmlHandler;
+
+    @Autowired
+    private DistanceMatrix distanceMatrix;
+
+    @Autowired
+    private TelemetryService telemetryService;
+
+    @Autowired
+    private FillHistoryService fillHistoryService;
+
+    /**
+     * Marshaller/unmarshaller/validator pool hit, miss and acquire-time metrics
+     */
+    @GetMapping("/xml-pool")
+    public ResponseEntity<?> getXmlPoolMetrics() {
+        return ResponseEntity.ok(xmlHandler.getPoolMetrics());
+    }
+
+    /**
+     * Number of points and memory used by the distance matrix
+     */
+    @GetMapping("/distance-matrix")
+    public ResponseEntity<?> getDistanceMatrixStats() {
+        return ResponseEntity.ok(distanceMatrix.getStats());
+    }
+
+    /**
+     * Sensor readings received, refused, queued and applied since startup
+     */
+    @GetMapping("/telemetry")
+    public ResponseEntity<?> getTelemetryStats() {
+        return ResponseEntity.ok(telemetryService.getStats());
+    }
+
+    /**
+     * Series, chunks and bytes per sample of the fill-level history
+     */
+    @GetMapping("/fill-history")
+    public ResponseEntity<?> getFillHistoryStats() {
+        return ResponseEntity.ok(fillHistoryService.getStats());
+    }
+}
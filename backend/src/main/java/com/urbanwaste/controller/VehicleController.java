@@ -3,14 +3,17 @@ package com.urbanwaste.controller;
 import com.urbanwaste.model.Vehicule; 
 import com.urbanwaste.model.VehiculesWrapper;
 import com.urbanwaste.service.VehicleService;
+import com.urbanwaste.util.ImportReport;
 import com.urbanwaste.util.XMLHandler;
 import com.urbanwaste.exception.XMLValidationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
-import org.xml.sax.SAXException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.xml.bind.JAXBException; 
 import java.util.List;
@@ -130,6 +133,40 @@ public class VehicleController {
         }
     }
     
+    /**
+     * GET: Export vehicles as XML (Interoperability)
+     * Streamed (optionally gzipped); optionally filtered by status
+     */
+    @GetMapping("/export")
+    public ResponseEntity<?> exportVehicles(
+            @RequestParam(required = false) String statut,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        try {
+            List<Vehicule> vehicles = statut != null
+                ? vehicleService.getVehiclesByStatus(statut)
+                : vehicleService.getAllVehicles();
+            
+            StreamingResponseBody body = out ->
+                xmlHandler.streamExport(out, VehiculesWrapper.class, "vehicule", vehicles, gzip);
+            
+            HttpHeaders headers = new HttpHeaders();
+            if (gzip) {
+                headers.setContentType(MediaType.parseMediaType("application/gzip"));
+                headers.setContentDispositionFormData("attachment", "vehicules.xml.gz");
+            } else {
+                headers.setContentType(MediaType.APPLICATION_XML);
+                headers.setContentDispositionFormData("attachment", "vehicules.xml");
+            }
+            
+            return ResponseEntity.ok()
+                .headers(headers)
+                .body(body);
+        } catch (JAXBException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", "Failed to export vehicles: " + e.getMessage()));
+        }
+    }
+    
     /**
      * POST: Import vehicles from XML file (Interoperability)
      * Accepts MultipartFile XML, validates against XSD, and merges with existing data
@@ -142,41 +179,23 @@ public class VehicleController {
         }
         
         try {
-            // Unmarshal XML from InputStream with XSD validation
-            VehiculesWrapper importedWrapper = xmlHandler.unmarshalFromStream(
-                file.getInputStream(), 
-                VehiculesWrapper.class, 
-                "vehicules.xsd"
+            // Stream the file record by record; each <vehicule> is validated against the XSD
+            // and valid records are merged in chunks
+            ImportReport report = xmlHandler.streamImport(
+                file.getInputStream(),
+                VehiculesWrapper.class,
+                Vehicule.class,
+                "vehicule",
+                "vehicules.xsd",
+                vehicleService::mergeVehicles
             );
             
-            if (importedWrapper == null || importedWrapper.getVehicules() == null) {
+            if (report.getFatalError() != null) {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                    .body(Map.of("error", "Invalid XML structure"));
+                    .body(report.toMap(null));
             }
             
-            // Merge with existing data (avoiding duplicates by ID)
-            int importedCount = vehicleService.mergeVehicles(importedWrapper.getVehicules());
-            
-            return ResponseEntity.ok(Map.of(
-                "message", "Vehicles imported successfully",
-                "imported", importedCount,
-                "total", importedWrapper.getVehicules().size()
-            ));
-        } catch (SAXException e) {
-            String errorMsg = e.getMessage();
-            if (errorMsg == null || errorMsg.isEmpty()) {
-                errorMsg = e.getClass().getSimpleName() + ": " + (e.getLocalizedMessage() != null ? e.getLocalizedMessage() : "XML validation failed");
-            }
-            // Try to extract more details from the exception
-            if (e.getLocalizedMessage() != null && !e.getLocalizedMessage().isEmpty()) {
-                errorMsg += " (" + e.getLocalizedMessage() + ")";
-            }
-            // Add helpful message for common validation errors
-            if (errorMsg.contains("telephone") && errorMsg.contains("conducteur")) {
-                errorMsg += ". Note: The 'telephone' field is not allowed in 'conducteur' for vehicles. Only 'id', 'nom', and 'prenom' are allowed.";
-            }
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                .body(Map.of("error", "XML validation failed: " + errorMsg));
+            return ResponseEntity.ok(report.toMap("Vehicles imported successfully"));
         } catch (JAXBException e) {
             String errorMsg = e.getMessage();
             if (errorMsg == null || errorMsg.isEmpty()) {
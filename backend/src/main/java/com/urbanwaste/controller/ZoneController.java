@@ -0,0 +1,134 @@
+package com.urbanwaste.controller;
+
+import com.urbanwaste.model.Zone;
+import com.urbanwaste.service.CollectionPointService;
+import com.urbanwaste.service.ZoneService;
+import com.urbanwaste.exception.XMLValidationException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import jakarta.xml.bind.JAXBException;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Collection zones: named polygons the collection points are assigned to
+ */
+@RestController
+@RequestMapping("/api/zones")
+@CrossOrigin(origins = {"http://localhost:5173", "http://localhost:3000"})
+public class ZoneController {
+
+    @Autowired
+    private ZoneService zoneService;
+
+    @Autowired
+    private CollectionPointService pointService;
+
+    @GetMapping
+    public ResponseEntity<?> getAll() {
+        try {
+            return ResponseEntity.ok(zoneService.getAllZones());
+        } catch (JAXBException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getById(@PathVariable int id) {
+        try {
+            Optional<Zone> zone = zoneService.getZoneById(id);
+            return zone.isPresent()
+                ? ResponseEntity.ok(zone.get())
+                : ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Zone not found"));
+        } catch (JAXBException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * POST: Create a zone (nom and a polygone of at least 3 sommets)
+     */
+    @PostMapping
+    public ResponseEntity<?> create(@RequestBody Zone zone) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(zoneService.createZone(zone));
+        } catch (IllegalArgumentException | XMLValidationException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", e.getMessage()));
+        } catch (JAXBException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * PUT: Replace a zone; the points are reassigned to the new boundary
+     */
+    @PutMapping("/{id}")
+    public ResponseEntity<?> update(@PathVariable int id, @RequestBody Zone zone) {
+        try {
+            Optional<Zone> updated = zoneService.updateZone(id, zone);
+            return updated.isPresent()
+                ? ResponseEntity.ok(updated.get())
+                : ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Zone not found"));
+        } catch (IllegalArgumentException | XMLValidationException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", e.getMessage()));
+        } catch (JAXBException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> delete(@PathVariable int id) {
+        try {
+            return zoneService.deleteZone(id)
+                ? ResponseEntity.ok(Map.of("message", "Zone deleted successfully"))
+                : ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Zone not found"));
+        } catch (XMLValidationException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", e.getMessage()));
+        } catch (JAXBException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * GET: Collection points inside the zone
+     */
+    @GetMapping("/{id}/points")
+    public ResponseEntity<?> getPoints(@PathVariable int id) {
+        try {
+            if (zoneService.getZoneById(id).isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Zone not found"));
+            }
+            return ResponseEntity.ok(pointService.getPointsInZone(id));
+        } catch (JAXBException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * GET: Statistics of the points inside the zone (same fields as /api/points/stats)
+     */
+    @GetMapping("/{id}/stats")
+    public ResponseEntity<?> getStatistics(@PathVariable int id) {
+        try {
+            Optional<Map<String, Object>> stats = pointService.getZoneStatistics(id);
+            return stats.isPresent()
+                ? ResponseEntity.ok(stats.get())
+                : ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Zone not found"));
+        } catch (JAXBException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+}
@@ -13,4 +13,9 @@ public class Admin extends Utilisateur {
         super();
         setRole("ADMIN");
     }
+
+    @Override
+    public Admin copy() {
+        return copyInto(new Admin());
+    }
 }
\ No newline at end of file
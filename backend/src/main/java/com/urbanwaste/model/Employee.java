@@ -18,6 +18,13 @@ public class Employee extends Utilisateur {
         setRole("EMPLOYE");
     }
 
+    @Override
+    public Employee copy() {
+        Employee copy = copyInto(new Employee());
+        copy.disponible = disponible;
+        return copy;
+    }
+
     public boolean isDisponible() { return disponible; }
     public void setDisponible(boolean disponible) { this.disponible = disponible; }
 }
\ No newline at end of file
@@ -49,6 +49,19 @@ public class Notification {
         this.roleCible = roleCible;
     }
 
+    /**
+     * Copy of this notification that a write may modify
+     */
+    public Notification copy() {
+        Notification copy = new Notification(titre, message, roleCible);
+        copy.id = id;
+        copy.dateCreation = dateCreation;
+        copy.lue = lue;
+        copy.vehiculeId = vehiculeId;
+        copy.type = type;
+        return copy;
+    }
+
     // Getters and Setters
     public int getId() { return id; }
     public void setId(int id) { this.id = id; }
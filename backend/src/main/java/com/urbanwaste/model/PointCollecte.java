@@ -51,6 +51,24 @@ public class PointCollecte {
 
     public PointCollecte() {}
 
+    /**
+     * Shallow copy for copy-on-write updates (the published point stays as it was)
+     */
+    public PointCollecte copy() {
+        PointCollecte copy = new PointCollecte();
+        copy.id = id;
+        copy.localisation = localisation;
+        copy.niveauRemplissage = niveauRemplissage;
+        copy.latitude = latitude;
+        copy.longitude = longitude;
+        copy.capacite = capacite;
+        copy.etatConteneur = etatConteneur;
+        copy.DateDerniereCollecte = DateDerniereCollecte;
+        copy.typeDechet = typeDechet;
+        copy.modele = modele;
+        return copy;
+    }
+
     // Getters and Setters
     public int getId() { return id; }
     public void setId(int id) { this.id = id; }
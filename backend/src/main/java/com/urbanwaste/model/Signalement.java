@@ -42,6 +42,23 @@ public class Signalement {
     public Signalement() {
     }
 
+    /**
+     * Copy for copy-on-write updates of the store
+     */
+    public Signalement copy() {
+        Signalement copy = new Signalement();
+        copy.id = id;
+        copy.type = type;
+        copy.description = description;
+        copy.pointCollecteId = pointCollecteId;
+        copy.employeId = employeId;
+        copy.citoyenId = citoyenId;
+        copy.dateSignalement = dateSignalement;
+        copy.statut = statut;
+        copy.photoUrl = photoUrl;
+        return copy;
+    }
+
     public int getId() {
         return id;
     }
@@ -13,4 +13,9 @@ public class SuperviseurZone extends Utilisateur {
         super();
         setRole("SUPERVISEUR");
     }
+
+    @Override
+    public SuperviseurZone copy() {
+        return copyInto(new SuperviseurZone());
+    }
 }
\ No newline at end of file
@@ -13,4 +13,9 @@ public class Technicien extends Utilisateur {
         super();
         setRole("TECHNICIEN");
     }
+
+    @Override
+    public Technicien copy() {
+        return copyInto(new Technicien());
+    }
 }
\ No newline at end of file
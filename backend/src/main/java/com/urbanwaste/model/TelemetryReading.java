@@ -0,0 +1,29 @@
+package com.urbanwaste.model;
+
+import java.util.Date;
+
+/**
+ * One fill-level report sent by a bin sensor
+ */
+public class TelemetryReading {
+    private int pointId;
+    private float level;
+    private Date timestamp; // When the sensor measured the level; defaults to the reception time
+
+    public TelemetryReading() {}
+
+    public TelemetryReading(int pointId, float level, Date timestamp) {
+        this.pointId = pointId;
+        this.level = level;
+        this.timestamp = timestamp;
+    }
+
+    public int getPointId() { return pointId; }
+    public void setPointId(int pointId) { this.pointId = pointId; }
+
+    public float getLevel() { return level; }
+    public void setLevel(float level) { this.level = level; }
+
+    public Date getTimestamp() { return timestamp; }
+    public void setTimestamp(Date timestamp) { this.timestamp = timestamp; }
+}
@@ -45,6 +45,24 @@ public class Tournee {
 
     public Tournee() {}
 
+    /**
+     * Copy with its own points list; the employee, vehicle and points themselves are shared
+     * since published entities are never modified in place
+     */
+    public Tournee copy() {
+        Tournee copy = new Tournee();
+        copy.id = id;
+        copy.datePlanifiee = datePlanifiee;
+        copy.statut = statut;
+        copy.employe = employe;
+        copy.vehicle = vehicle;
+        copy.pointsCollecte = pointsCollecte != null ? new ArrayList<>(pointsCollecte) : null;
+        copy.heureDebut = heureDebut;
+        copy.heureFin = heureFin;
+        copy.distanceKm = distanceKm;
+        return copy;
+    }
+
     // Getters and Setters
     public int getId() { return id; }
     public void setId(int id) { this.id = id; }
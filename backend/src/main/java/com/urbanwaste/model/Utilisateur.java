@@ -1,6 +1,7 @@
 package com.urbanwaste.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlRootElement;
 import jakarta.xml.bind.annotation.XmlAccessType;
 import jakarta.xml.bind.annotation.XmlAccessorType;
@@ -44,6 +45,24 @@ public class Utilisateur {
         this.password = password;
     }
     
+    /**
+     * Copy of the user, of the same class (used by the stores' copy-on-write)
+     */
+    public Utilisateur copy() {
+        return copyInto(new Utilisateur());
+    }
+    
+    protected <U extends Utilisateur> U copyInto(U copy) {
+        copy.setId(id);
+        copy.setMail(mail);
+        copy.setNom(nom);
+        copy.setPrenom(prenom);
+        copy.setTelephone(telephone);
+        copy.setPassword(password);
+        copy.setRole(role);
+        return copy;
+    }
+    
     // Standard Getters/Setters
     public int getId() { return id; }
     public void setId(int id) { this.id = id; }
@@ -63,9 +82,12 @@ public class Utilisateur {
     public String getRole() { return role; }
     public void setRole(String role) { this.role = role; }
 
+    // Write-only in JSON: clients may set a password, but the stored hash is never sent out
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     public String getPassword() { return password; }
     public void setPassword(String password) { this.password = password; }
 
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     public String getMotDePasse() { return password; }
     public void setMotDePasse(String motDePasse) { this.password = motDePasse; }
 }
\ No newline at end of file
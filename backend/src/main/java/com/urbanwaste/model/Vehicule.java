@@ -39,6 +39,22 @@ public class Vehicule {
 
     public Vehicule() {}
 
+    /**
+     * Copy edited by a write instead of the published vehicle
+     */
+    public Vehicule copy() {
+        Vehicule copy = new Vehicule();
+        copy.id = id;
+        copy.capacite = capacite;
+        copy.disponibilite = disponibilite;
+        copy.immatriculation = immatriculation;
+        copy.typeVehicule = typeVehicule;
+        copy.statut = statut;
+        copy.etat = etat;
+        copy.conducteur = conducteur;
+        return copy;
+    }
+
     // Getters and Setters
     public int getId() { return id; }
     public void setId(int id) { this.id = id; }
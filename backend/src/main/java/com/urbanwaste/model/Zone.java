@@ -0,0 +1,59 @@
+package com.urbanwaste.model;
+
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlRootElement;
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import jakarta.xml.bind.annotation.XmlElement;
+import jakarta.xml.bind.annotation.XmlElementWrapper;
+import jakarta.xml.bind.annotation.XmlRootElement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collection zone (district, sector): a named polygon. The collection points inside
+ * the boundary belong to the zone.
+ */
+@XmlRootElement(name = "zone")
+@XmlAccessorType(XmlAccessType.FIELD)
+@JacksonXmlRootElement(localName = "zone")
+public class Zone {
+    @XmlElement(required = true)
+    private int id;
+
+    @XmlElement(required = true)
+    private String nom;
+
+    @XmlElement
+    private String description;
+
+    // Boundary vertices in order; the polygon closes from the last back to the first
+    @XmlElementWrapper(name = "polygone")
+    @XmlElement(name = "sommet")
+    private List<Sommet> polygone = new ArrayList<>();
+
+    public Zone() {}
+
+    /**
+     * Copy for copy-on-write updates of the store (vertices are never modified in place)
+     */
+    public Zone copy() {
+        Zone copy = new Zone();
+        copy.id = id;
+        copy.nom = nom;
+        copy.description = description;
+        copy.polygone = new ArrayList<>(polygone);
+        return copy;
+    }
+
+    public int getId() { return id; }
+    public void setId(int id) { this.id = id; }
+
+    public String getNom() { return nom; }
+    public void setNom(String nom) { this.nom = nom; }
+
+    public String getDescription() { return description; }
+    public void setDescription(String description) { this.description = description; }
+
+    public List<Sommet> getPolygone() { return polygone; }
+    public void setPolygone(List<Sommet> polygone) { this.polygone = polygone; }
+}
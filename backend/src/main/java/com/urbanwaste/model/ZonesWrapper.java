@@ -0,0 +1,20 @@
+package com.urbanwaste.model;
+
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlRootElement;
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import jakarta.xml.bind.annotation.XmlElement;
+import jakarta.xml.bind.annotation.XmlRootElement;
+import java.util.ArrayList;
+import java.util.List;
+
+@XmlRootElement(name = "zones")
+@XmlAccessorType(XmlAccessType.FIELD)
+@JacksonXmlRootElement(localName = "zones")
+public class ZonesWrapper {
+    @XmlElement(name = "zone")
+    private List<Zone> zones = new ArrayList<>();
+
+    public List<Zone> getZones() { return zones; }
+    public void setZones(List<Zone> zones) { this.zones = zones; }
+}
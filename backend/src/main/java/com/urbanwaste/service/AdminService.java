@@ -3,6 +3,7 @@ package com.urbanwaste.service;
 import com.urbanwaste.model.Admin;
 import com.urbanwaste.model.AdminsWrapper;
 import com.urbanwaste.model.Utilisateur;
+import com.urbanwaste.util.EntityStore;
 import com.urbanwaste.util.XMLHandler;
 import com.urbanwaste.exception.XMLValidationException;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,7 +11,7 @@ import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.xml.bind.JAXBException;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -23,124 +24,104 @@ public class AdminService {
     @Autowired
     private XMLHandler xmlHandler;
     
+    @Autowired
+    private PasswordService passwordService;
+    
+    private EntityStore<AdminsWrapper, Admin> store;
+    
     private AtomicInteger idCounter = new AtomicInteger(1);
     
     @PostConstruct
     public void init() {
+        store = xmlHandler.getStore(ADMINS_FILE, AdminsWrapper.class,
+            AdminsWrapper::getAdmins, AdminsWrapper::setAdmins, Admin::getId, Admin::copy);
+        
         if (xmlHandler.fileExists(ADMINS_FILE)) {
             try {
-                List<Utilisateur> admins = getAllAdmins();
-                if (!admins.isEmpty()) {
-                    int maxId = admins.stream().mapToInt(Utilisateur::getId).max().orElse(0);
-                    idCounter.set(maxId + 1);
-                }
-            } catch (JAXBException e) {
+                idCounter.set(store.maxId() + 1);
+                passwordService.migrate(store);
+            } catch (JAXBException | XMLValidationException e) {
                 System.err.println("Failed to load existing admins: " + e.getMessage());
             }
         }
     }
     
+    /**
+     * Follow committed changes of the admins (used by the login's credential index)
+     */
+    public void addListener(EntityStore.Listener<Admin> listener) {
+        store.addListener(listener);
+    }
+    
+    /**
+     * Store the upgraded hash of a password checked at login, unless it changed meanwhile
+     */
+    public boolean replacePasswordHash(int id, String verified, String rehashed) throws JAXBException, XMLValidationException {
+        return passwordService.replaceHash(store, id, verified, rehashed);
+    }
+    
     public List<Utilisateur> getAllAdmins() throws JAXBException {
-        System.out.println("[AdminService] Loading admins from XML file: " + ADMINS_FILE);
-        AdminsWrapper wrapper = xmlHandler.loadFromXML(ADMINS_FILE, AdminsWrapper.class);
-        if (wrapper == null || wrapper.getAdmins() == null) {
-            System.out.println("[AdminService] No admins found in XML file");
-            return new ArrayList<>();
-        }
-        List<Utilisateur> admins = new ArrayList<>(wrapper.getAdmins());
-        System.out.println("[AdminService] Loaded " + admins.size() + " admins from " + ADMINS_FILE);
-        return admins;
+        return Collections.unmodifiableList(store.getAll());
     }
     
     public Optional<Utilisateur> getAdminById(int id) throws JAXBException {
-        return getAllAdmins().stream()
-            .filter(a -> a.getId() == id)
-            .findFirst();
+        return store.findById(id).map(Utilisateur.class::cast);
     }
     
     public Utilisateur createAdmin(Utilisateur user) throws JAXBException, XMLValidationException {
-        System.out.println("[AdminService] Creating admin - loading from XML: " + ADMINS_FILE);
-        AdminsWrapper wrapper = xmlHandler.loadFromXML(ADMINS_FILE, AdminsWrapper.class);
-        List<Admin> admins = wrapper != null && wrapper.getAdmins() != null 
-            ? new ArrayList<>(wrapper.getAdmins()) 
-            : new ArrayList<>();
-        
-        Admin admin = new Admin();
-        admin.setId(idCounter.getAndIncrement());
-        admin.setMail(user.getMail());
-        admin.setNom(user.getNom());
-        admin.setPrenom(user.getPrenom());
-        admin.setTelephone(user.getTelephone());
-        admin.setMotDePasse(user.getMotDePasse());
-        admin.setRole("ADMIN");
-        
-        admins.add(admin);
-        
-        AdminsWrapper newWrapper = new AdminsWrapper();
-        newWrapper.setAdmins(admins);
-        System.out.println("[AdminService] Saving admin to XML: " + ADMINS_FILE);
-        xmlHandler.saveToXML(newWrapper, ADMINS_FILE);
-        
-        return admin;
+        String password = passwordService.encode(user.getMotDePasse());
+        return store.write(tx -> {
+            Admin admin = new Admin();
+            admin.setId(idCounter.getAndIncrement());
+            admin.setMail(user.getMail());
+            admin.setNom(user.getNom());
+            admin.setPrenom(user.getPrenom());
+            admin.setTelephone(user.getTelephone());
+            admin.setMotDePasse(password);
+            admin.setRole("ADMIN");
+            
+            tx.put(admin);
+            System.out.println("[AdminService] Saving admin to XML: " + ADMINS_FILE);
+            return admin;
+        });
     }
     
     public Optional<Utilisateur> updateAdmin(int id, Utilisateur updatedUser) throws JAXBException, XMLValidationException {
-        System.out.println("[AdminService] Updating admin ID " + id + " - loading from XML: " + ADMINS_FILE);
-        AdminsWrapper wrapper = xmlHandler.loadFromXML(ADMINS_FILE, AdminsWrapper.class);
-        List<Admin> admins = wrapper != null && wrapper.getAdmins() != null 
-            ? new ArrayList<>(wrapper.getAdmins()) 
-            : new ArrayList<>();
-        
-        Optional<Admin> existing = admins.stream()
-            .filter(a -> a.getId() == id)
-            .findFirst();
-        
-        if (existing.isEmpty()) {
-            System.out.println("[AdminService] Admin ID " + id + " not found in XML");
-            return Optional.empty();
-        }
-        
-        Admin existingAdmin = existing.get();
-        Admin updatedAdmin = new Admin();
-        updatedAdmin.setId(id);
-        // Smart merge: use incoming value if provided, otherwise keep existing
-        updatedAdmin.setMail(updatedUser.getMail() != null ? updatedUser.getMail() : existingAdmin.getMail());
-        updatedAdmin.setNom(updatedUser.getNom() != null ? updatedUser.getNom() : existingAdmin.getNom());
-        updatedAdmin.setPrenom(updatedUser.getPrenom() != null ? updatedUser.getPrenom() : existingAdmin.getPrenom());
-        updatedAdmin.setTelephone(updatedUser.getTelephone() != 0 ? updatedUser.getTelephone() : existingAdmin.getTelephone());
-        updatedAdmin.setMotDePasse(updatedUser.getMotDePasse() != null ? updatedUser.getMotDePasse() : existingAdmin.getMotDePasse());
-        updatedAdmin.setRole("ADMIN");
-        
-        admins.removeIf(a -> a.getId() == id);
-        admins.add(updatedAdmin);
-        
-        AdminsWrapper newWrapper = new AdminsWrapper();
-        newWrapper.setAdmins(admins);
-        System.out.println("[AdminService] Saving updated admin to XML: " + ADMINS_FILE);
-        xmlHandler.saveToXML(newWrapper, ADMINS_FILE);
-        
-        return Optional.of(updatedAdmin);
+        // Clients never see the stored hash: a null password keeps it, anything else is a new one
+        String password = passwordService.encode(updatedUser.getMotDePasse());
+        return store.write(tx -> {
+            Optional<Admin> existing = tx.find(id);
+            
+            if (existing.isEmpty()) {
+                System.out.println("[AdminService] Admin ID " + id + " not found");
+                return Optional.empty();
+            }
+            
+            Admin existingAdmin = existing.get();
+            Admin updatedAdmin = new Admin();
+            updatedAdmin.setId(id);
+            // Smart merge: use incoming value if provided, otherwise keep existing
+            updatedAdmin.setMail(updatedUser.getMail() != null ? updatedUser.getMail() : existingAdmin.getMail());
+            updatedAdmin.setNom(updatedUser.getNom() != null ? updatedUser.getNom() : existingAdmin.getNom());
+            updatedAdmin.setPrenom(updatedUser.getPrenom() != null ? updatedUser.getPrenom() : existingAdmin.getPrenom());
+            updatedAdmin.setTelephone(updatedUser.getTelephone() != 0 ? updatedUser.getTelephone() : existingAdmin.getTelephone());
+            updatedAdmin.setMotDePasse(password != null ? password : existingAdmin.getMotDePasse());
+            updatedAdmin.setRole("ADMIN");
+            
+            tx.put(updatedAdmin);
+            System.out.println("[AdminService] Saving updated admin to XML: " + ADMINS_FILE);
+            return Optional.of(updatedAdmin);
+        });
     }
     
     public boolean deleteAdmin(int id) throws JAXBException, XMLValidationException {
-        System.out.println("[AdminService] Deleting admin ID " + id + " - loading from XML: " + ADMINS_FILE);
-        AdminsWrapper wrapper = xmlHandler.loadFromXML(ADMINS_FILE, AdminsWrapper.class);
-        List<Admin> admins = wrapper != null && wrapper.getAdmins() != null 
-            ? new ArrayList<>(wrapper.getAdmins()) 
-            : new ArrayList<>();
-        
-        boolean removed = admins.removeIf(a -> a.getId() == id);
-        
-        if (removed) {
-            AdminsWrapper newWrapper = new AdminsWrapper();
-            newWrapper.setAdmins(admins);
-            System.out.println("[AdminService] Saving updated admins list to XML: " + ADMINS_FILE);
-            xmlHandler.saveToXML(newWrapper, ADMINS_FILE);
-        } else {
-            System.out.println("[AdminService] Admin ID " + id + " not found in XML");
-        }
-        
-        return removed;
+        return store.write(tx -> {
+            boolean removed = tx.remove(id);
+            if (!removed) {
+                System.out.println("[AdminService] Admin ID " + id + " not found");
+            }
+            return removed;
+        });
     }
 }
 
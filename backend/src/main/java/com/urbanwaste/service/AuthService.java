@@ -1,6 +1,7 @@
 package com.urbanwaste.service;
 
 import com.urbanwaste.model.*;
+import com.urbanwaste.util.EntityStore;
 import com.urbanwaste.util.XMLHandler;
 import com.urbanwaste.exception.XMLValidationException;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,7 +9,6 @@ import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct; 
 import jakarta.xml.bind.JAXBException; 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -19,28 +19,58 @@ public class AuthService {
     private static final String USERS_FILE = "utilisateurs.xml";
     private static final String USERS_XSD = "utilisateurs.xsd";
     
+    // Credential sources, in the order the login checks them
+    private static final int ADMINS = 0;
+    private static final int SUPERVISEURS = 1;
+    private static final int TECHNICIENS = 2;
+    private static final int EMPLOYEES = 3;
+    
     @Autowired
     private XMLHandler xmlHandler;
     
+    @Autowired
+    private AdminService adminService;
+    
+    @Autowired
+    private SuperviseurService superviseurService;
+    
+    @Autowired
+    private TechnicienService technicienService;
+    
+    @Autowired
+    private EmployeeService employeeService;
+    
+    @Autowired
+    private PasswordService passwordService;
+    
+    private EntityStore<UtilisateursWrapper, Utilisateur> store;
+    
     private AtomicInteger idCounter = new AtomicInteger(1);
     
+    private final CredentialIndex credentials = new CredentialIndex(4);
+    
     /**
      * Initialize default users on startup
      */
     @PostConstruct
     public void init() {
+        store = xmlHandler.getStore(USERS_FILE, UtilisateursWrapper.class,
+            UtilisateursWrapper::getUtilisateurs, UtilisateursWrapper::setUtilisateurs, Utilisateur::getId, Utilisateur::copy);
+        
+        adminService.addListener(credentials.source(ADMINS, "ADMIN"));
+        superviseurService.addListener(credentials.source(SUPERVISEURS, "SUPERVISEUR"));
+        technicienService.addListener(credentials.source(TECHNICIENS, "TECHNICIEN"));
+        employeeService.addListener(credentials.source(EMPLOYEES, null));
+        
         if (!xmlHandler.fileExists(USERS_FILE)) {
             initializeDefaultUsers();
         } else {
             // Load existing users and set counter
             try {
-                List<Utilisateur> users = getAllUsers();
-                if (!users.isEmpty()) {
-                    // Find the highest existing ID to ensure new users don't get duplicate IDs
-                    int maxId = users.stream().mapToInt(Utilisateur::getId).max().orElse(0);
-                    idCounter.set(maxId + 1);
-                }
-            } catch (JAXBException e) {
+                // Find the highest existing ID to ensure new users don't get duplicate IDs
+                idCounter.set(store.maxId() + 1);
+                passwordService.migrate(store);
+            } catch (JAXBException | XMLValidationException e) {
                 System.err.println("Failed to load existing users: " + e.getMessage());
             }
         }
@@ -48,200 +78,72 @@ public class AuthService {
     
     /**
      * Login with username (mail) and password
-     * Chain of Responsibility: Check admins -> superviseurs -> techniciens -> employees
+     * Chain of Responsibility: Check admins -> superviseurs -> techniciens -> employees,
+     * read from the credential index rather than from each file in turn
      */
     public Utilisateur login(String mail, String password) {
-        System.out.println("[AuthService] Login attempt for email: " + mail);
-        
         try {
-            // Step 1: Check admins.xml
-            System.out.println("[AuthService] Step 1: Checking Admins...");
-            if (xmlHandler.fileExists("admins.xml")) {
-                try {
-                    AdminsWrapper adminsWrapper = xmlHandler.loadFromXML("admins.xml", AdminsWrapper.class);
-                    if (adminsWrapper != null && adminsWrapper.getAdmins() != null && !adminsWrapper.getAdmins().isEmpty()) {
-                        System.out.println("[AuthService] Found " + adminsWrapper.getAdmins().size() + " admins");
-                        Utilisateur admin = adminsWrapper.getAdmins().stream()
-                            .filter(u -> {
-                                if (u == null) return false;
-                                boolean mailMatch = u.getMail() != null && u.getMail().equals(mail);
-                                if (!mailMatch) return false;
-                                
-                                String storedPassword = u.getMotDePasse();
-                                if (storedPassword == null || storedPassword.isEmpty()) {
-                                    storedPassword = u.getPassword();
-                                }
-                                
-                                System.out.println("[AuthService] Admin mail match found. Stored password (motDePasse): '" + u.getMotDePasse() + "', Stored password (password): '" + u.getPassword() + "', Final: '" + storedPassword + "', Input: '" + password + "'");
-                                
-                                boolean passwordMatch = storedPassword != null && storedPassword.equals(password);
-                                System.out.println("[AuthService] Password match: " + passwordMatch);
-                                return passwordMatch;
-                            })
-                            .findFirst()
-                            .orElse(null);
-                        if (admin != null) {
-                            System.out.println("[AuthService] ✓ Found in Admins - ID: " + admin.getId());
-                            admin.setRole("ADMIN");
-                            return admin;
-                        }
-                    } else {
-                        System.out.println("[AuthService] AdminsWrapper is null or empty");
-                    }
-                } catch (Exception e) {
-                    System.err.println("[AuthService] Error loading admins.xml: " + e.getMessage());
-                    e.printStackTrace();
-                }
-            } else {
-                System.out.println("[AuthService] admins.xml file does not exist");
-            }
-            
-            // Step 2: Check superviseurs.xml
-            System.out.println("[AuthService] Step 2: Checking Superviseurs...");
-            if (xmlHandler.fileExists("superviseurs.xml")) {
-                try {
-                    SuperviseursWrapper superviseursWrapper = xmlHandler.loadFromXML("superviseurs.xml", SuperviseursWrapper.class);
-                    if (superviseursWrapper != null && superviseursWrapper.getSuperviseurs() != null && !superviseursWrapper.getSuperviseurs().isEmpty()) {
-                        System.out.println("[AuthService] Found " + superviseursWrapper.getSuperviseurs().size() + " superviseurs");
-                        Utilisateur superviseur = superviseursWrapper.getSuperviseurs().stream()
-                            .filter(u -> {
-                                if (u == null) return false;
-                                boolean mailMatch = u.getMail() != null && u.getMail().equals(mail);
-                                if (!mailMatch) return false;
-                                
-                                String storedPassword = u.getMotDePasse();
-                                if (storedPassword == null || storedPassword.isEmpty()) {
-                                    storedPassword = u.getPassword();
-                                }
-                                
-                                System.out.println("[AuthService] Superviseur mail match found. Stored password (motDePasse): '" + u.getMotDePasse() + "', Stored password (password): '" + u.getPassword() + "', Final: '" + storedPassword + "', Input: '" + password + "'");
-                                
-                                boolean passwordMatch = storedPassword != null && storedPassword.equals(password);
-                                System.out.println("[AuthService] Password match: " + passwordMatch);
-                                return passwordMatch;
-                            })
-                            .findFirst()
-                            .orElse(null);
-                        if (superviseur != null) {
-                            System.out.println("[AuthService] ✓ Found in Superviseurs - ID: " + superviseur.getId());
-                            superviseur.setRole("SUPERVISEUR");
-                            return superviseur;
-                        }
-                    } else {
-                        System.out.println("[AuthService] SuperviseursWrapper is null or empty");
-                    }
-                } catch (Exception e) {
-                    System.err.println("[AuthService] Error loading superviseurs.xml: " + e.getMessage());
-                    e.printStackTrace();
-                }
-            } else {
-                System.out.println("[AuthService] superviseurs.xml file does not exist");
-            }
-            
-            // Step 3: Check techiciens.xml (note: filename has one 'n')
-            System.out.println("[AuthService] Step 3: Checking Techniciens...");
-            if (xmlHandler.fileExists("techiciens.xml")) {
-                try {
-                    TechniciensWrapper techniciensWrapper = xmlHandler.loadFromXML("techiciens.xml", TechniciensWrapper.class);
-                    if (techniciensWrapper != null && techniciensWrapper.getTechniciens() != null && !techniciensWrapper.getTechniciens().isEmpty()) {
-                        System.out.println("[AuthService] Found " + techniciensWrapper.getTechniciens().size() + " techniciens");
-                        Utilisateur technicien = techniciensWrapper.getTechniciens().stream()
-                            .filter(u -> {
-                                if (u == null) return false;
-                                boolean mailMatch = u.getMail() != null && u.getMail().equals(mail);
-                                if (!mailMatch) return false;
-                                
-                                String storedPassword = u.getMotDePasse();
-                                if (storedPassword == null || storedPassword.isEmpty()) {
-                                    storedPassword = u.getPassword();
-                                }
-                                
-                                System.out.println("[AuthService] Technicien mail match found. Stored password (motDePasse): '" + u.getMotDePasse() + "', Stored password (password): '" + u.getPassword() + "', Final: '" + storedPassword + "', Input: '" + password + "'");
-                                
-                                boolean passwordMatch = storedPassword != null && storedPassword.equals(password);
-                                System.out.println("[AuthService] Password match: " + passwordMatch);
-                                return passwordMatch;
-                            })
-                            .findFirst()
-                            .orElse(null);
-                        if (technicien != null) {
-                            System.out.println("[AuthService] ✓ Found in Techniciens - ID: " + technicien.getId());
-                            technicien.setRole("TECHNICIEN");
-                            return technicien;
-                        }
-                    } else {
-                        System.out.println("[AuthService] TechniciensWrapper is null or empty");
-                    }
-                } catch (Exception e) {
-                    System.err.println("[AuthService] Error loading techiciens.xml: " + e.getMessage());
-                    e.printStackTrace();
+            ensureCredentialsLoaded();
+        } catch (JAXBException e) {
+            System.err.println("[AuthService] Failed to load user accounts: " + e.getMessage());
+            throw new RuntimeException("Failed to authenticate user: " + e.getMessage(), e);
+        }
+        
+        CredentialIndex.Credential[] candidates = credentials.candidates(mail);
+        if (candidates.length == 0) {
+            // Hash anyway, so an unknown mail cannot be told apart by the response time
+            passwordService.verify(password, null);
+        }
+        for (CredentialIndex.Credential candidate : candidates) {
+            PasswordService.Verification verification = passwordService.verify(password, candidate.storedPassword);
+            if (verification.isMatched()) {
+                if (verification.getRehashed() != null) {
+                    upgradeHash(candidate, verification.getRehashed());
                 }
-            } else {
-                System.out.println("[AuthService] techiciens.xml file does not exist");
-            }
-            
-            // Step 4: Check employees.xml
-            System.out.println("[AuthService] Step 4: Checking Employees...");
-            if (xmlHandler.fileExists("employees.xml")) {
-                try {
-                    EmployeesWrapper employeesWrapper = xmlHandler.loadFromXML("employees.xml", EmployeesWrapper.class);
-                    if (employeesWrapper != null && employeesWrapper.getEmployes() != null && !employeesWrapper.getEmployes().isEmpty()) {
-                        System.out.println("[AuthService] Found " + employeesWrapper.getEmployes().size() + " employees");
-                        Utilisateur employe = employeesWrapper.getEmployes().stream()
-                            .filter(u -> {
-                                if (u == null) return false;
-                                boolean mailMatch = u.getMail() != null && u.getMail().equals(mail);
-                                if (!mailMatch) return false;
-                                
-                                String storedPassword = u.getMotDePasse();
-                                if (storedPassword == null || storedPassword.isEmpty()) {
-                                    storedPassword = u.getPassword();
-                                }
-                                
-                                System.out.println("[AuthService] Employee mail match found. Stored password (motDePasse): '" + u.getMotDePasse() + "', Stored password (password): '" + u.getPassword() + "', Final: '" + storedPassword + "', Input: '" + password + "'");
-                                
-                                boolean passwordMatch = storedPassword != null && storedPassword.equals(password);
-                                System.out.println("[AuthService] Password match: " + passwordMatch);
-                                return passwordMatch;
-                            })
-                            .findFirst()
-                            .orElse(null);
-                        if (employe != null) {
-                            // Set role based on employee type (EMPLOYE or CHAUFFEUR)
-                            String role = employe.getRole();
-                            if (role == null || role.isEmpty()) {
-                                employe.setRole("EMPLOYE");
-                            }
-                            System.out.println("[AuthService] ✓ Found in Employees - ID: " + employe.getId() + ", Role: " + employe.getRole());
-                            return employe;
-                        }
-                    } else {
-                        System.out.println("[AuthService] EmployeesWrapper is null or empty");
-                    }
-                } catch (Exception e) {
-                    System.err.println("[AuthService] Error loading employees.xml: " + e.getMessage());
-                    e.printStackTrace();
+                // A copy: the stored user is shared with every reader of the store
+                Utilisateur user = candidate.user.copy();
+                user.setPassword(null);
+                // Employees keep their own role (EMPLOYE or CHAUFFEUR)
+                if (candidate.role != null) {
+                    user.setRole(candidate.role);
+                } else if (user.getRole() == null || user.getRole().isEmpty()) {
+                    user.setRole("EMPLOYE");
                 }
-            } else {
-                System.out.println("[AuthService] employees.xml file does not exist");
+                System.out.println("[AuthService] Login of user ID " + user.getId() + " as " + user.getRole());
+                return user;
             }
-            
-            // Step 5: No match found
-            System.out.println("[AuthService] ✗ No match found in any file");
-            throw new RuntimeException("Identifiants incorrects");
-            
-        } catch (RuntimeException e) {
-            // Re-throw authentication failures
-            if (e.getMessage() != null && e.getMessage().contains("Identifiants incorrects")) {
-                throw e;
+        }
+        System.out.println("[AuthService] Login failed for email: " + mail);
+        throw new RuntimeException("Identifiants incorrects");
+    }
+    
+    // Best effort: the login succeeds even if the new hash cannot be saved
+    private void upgradeHash(CredentialIndex.Credential candidate, String rehashed) {
+        try {
+            switch (candidate.source) {
+                case ADMINS -> adminService.replacePasswordHash(candidate.id, candidate.storedPassword, rehashed);
+                case SUPERVISEURS -> superviseurService.replacePasswordHash(candidate.id, candidate.storedPassword, rehashed);
+                case TECHNICIENS -> technicienService.replacePasswordHash(candidate.id, candidate.storedPassword, rehashed);
+                default -> employeeService.replacePasswordHash(candidate.id, candidate.storedPassword, rehashed);
             }
-            System.err.println("[AuthService] RuntimeException during login: " + e.getMessage());
-            e.printStackTrace();
-            throw new RuntimeException("Failed to authenticate user: " + e.getMessage(), e);
-        } catch (Exception e) {
-            System.err.println("[AuthService] Unexpected exception during login: " + e.getMessage());
-            e.printStackTrace();
-            throw new RuntimeException("Failed to authenticate user: " + e.getMessage(), e);
+        } catch (JAXBException | XMLValidationException e) {
+            System.err.println("[AuthService] Failed to save the new password hash of user ID " + candidate.id + ": " + e.getMessage());
+        }
+    }
+    
+    // A source whose file could not be read at startup is loaded on the first login
+    private void ensureCredentialsLoaded() throws JAXBException {
+        if (!credentials.isLoaded(ADMINS)) {
+            adminService.getAllAdmins();
+        }
+        if (!credentials.isLoaded(SUPERVISEURS)) {
+            superviseurService.getAllSuperviseurs();
+        }
+        if (!credentials.isLoaded(TECHNICIENS)) {
+            technicienService.getAllTechniciens();
+        }
+        if (!credentials.isLoaded(EMPLOYEES)) {
+            employeeService.getAllEmployees();
         }
     }
     
@@ -250,33 +152,28 @@ public class AuthService {
      */
     public Utilisateur signup(String mail, String password, String nom, String prenom, 
                             int telephone, String role) {
+        String hashed = passwordService.encode(password);
         try {
-            // 1. Load current user data
-            UtilisateursWrapper wrapper = xmlHandler.loadFromXML(USERS_FILE, UtilisateursWrapper.class);
-            List<Utilisateur> users = wrapper.getUtilisateurs();
-            
-            // Check if mail already exists
-            boolean exists = users.stream().anyMatch(u -> u.getMail().equals(mail));
-            if (exists) {
-                throw new IllegalArgumentException("Email already registered");
-            }
-            
-            // 2. Create new user instance based on role
-            Utilisateur newUser = createUserByRole(role);
-            newUser.setId(idCounter.getAndIncrement());
-            newUser.setMail(mail);
-            newUser.setPassword(password);
-            newUser.setNom(nom);
-            newUser.setPrenom(prenom);
-            newUser.setTelephone(telephone);
-            
-            // 3. Add to list and save
-            users.add(newUser);
-            wrapper.setUtilisateurs(users);
-            
-            xmlHandler.saveToXML(wrapper, USERS_FILE);
-            
-            return newUser;
+            return store.write(tx -> {
+                // 1. Check if mail already exists
+                boolean exists = tx.all().stream().anyMatch(u -> u.getMail().equals(mail));
+                if (exists) {
+                    throw new IllegalArgumentException("Email already registered");
+                }
+                
+                // 2. Create new user instance based on role
+                Utilisateur newUser = createUserByRole(role);
+                newUser.setId(idCounter.getAndIncrement());
+                newUser.setMail(mail);
+                newUser.setPassword(hashed);
+                newUser.setNom(nom);
+                newUser.setPrenom(prenom);
+                newUser.setTelephone(telephone);
+                
+                // 3. Add to store and save
+                tx.put(newUser);
+                return newUser;
+            });
         } catch (JAXBException | XMLValidationException e) {
             throw new RuntimeException("Failed to register user", e);
         }
@@ -287,8 +184,7 @@ public class AuthService {
      */
     public Optional<Utilisateur> getUserById(int id) {
         try {
-            List<Utilisateur> users = getAllUsers();
-            return users.stream().filter(u -> u.getId() == id).findFirst();
+            return store.findById(id);
         } catch (JAXBException e) {
             throw new RuntimeException("Failed to get user", e);
         }
@@ -298,9 +194,7 @@ public class AuthService {
      * Get all users
      */
     public List<Utilisateur> getAllUsers() throws JAXBException {
-        // Loads the list wrapper from the XML file
-        UtilisateursWrapper wrapper = xmlHandler.loadFromXML(USERS_FILE, UtilisateursWrapper.class);
-        return wrapper.getUtilisateurs();
+        return store.getAll();
     }
     
     /**
@@ -317,26 +211,21 @@ public class AuthService {
      */
     public Optional<Utilisateur> updateUser(int id, Utilisateur updatedUser) {
         try {
-            UtilisateursWrapper wrapper = xmlHandler.loadFromXML(USERS_FILE, UtilisateursWrapper.class);
-            List<Utilisateur> users = wrapper.getUtilisateurs();
-            
-            Optional<Utilisateur> existing = users.stream()
-                .filter(u -> u.getId() == id)
-                .findFirst();
-            
-            if (existing.isEmpty()) {
-                return Optional.empty();
-            }
-            
-            // Remove the old version and add the updated version
-            users.removeIf(u -> u.getId() == id);
-            updatedUser.setId(id);
-            users.add(updatedUser);
-            
-            wrapper.setUtilisateurs(users);
-            xmlHandler.saveToXML(wrapper, USERS_FILE);
-            
-            return Optional.of(updatedUser);
+            // Clients never see the stored hash: a null password keeps it, anything else is a new one
+            String password = passwordService.encode(updatedUser.getPassword());
+            return store.write(tx -> {
+                Optional<Utilisateur> existing = tx.find(id);
+                if (existing.isEmpty()) {
+                    return Optional.empty();
+                }
+                updatedUser.setPassword(password != null ? password : existing.get().getPassword());
+                
+                // Replace the old version with the updated version
+                updatedUser.setId(id);
+                tx.put(updatedUser);
+                
+                return Optional.of(updatedUser);
+            });
         } catch (JAXBException | XMLValidationException e) {
             throw new RuntimeException("Failed to update user", e);
         }
@@ -347,17 +236,7 @@ public class AuthService {
      */
     public boolean deleteUser(int id) {
         try {
-            UtilisateursWrapper wrapper = xmlHandler.loadFromXML(USERS_FILE, UtilisateursWrapper.class);
-            List<Utilisateur> users = wrapper.getUtilisateurs();
-            
-            boolean removed = users.removeIf(u -> u.getId() == id);
-            
-            if (removed) {
-                wrapper.setUtilisateurs(users);
-                xmlHandler.saveToXML(wrapper, USERS_FILE);
-            }
-            
-            return removed;
+            return store.write(tx -> tx.remove(id));
         } catch (JAXBException | XMLValidationException e) {
             throw new RuntimeException("Failed to delete user", e);
         }
@@ -380,7 +259,6 @@ public class AuthService {
      * Initialize default users
      */
     private void initializeDefaultUsers() {
-        UtilisateursWrapper wrapper = new UtilisateursWrapper();
         List<Utilisateur> defaultUsers = List.of(
             createDefaultUser("ADMIN", "admin@ecoville.tn", "1234", "Admin", "Municipal", 20123456),
             createDefaultUser("SUPERVISEUR", "superviseur@ecoville.tn", "1234", "Superviseur", "Général", 20987654),
@@ -388,10 +266,11 @@ public class AuthService {
             createDefaultUser("EMPLOYE", "employe@ecoville.tn", "1234", "Ahmed", "Employé", 22345678)
         );
         
-        wrapper.setUtilisateurs(new java.util.ArrayList<>(defaultUsers));
-        
         try {
-            xmlHandler.saveToXML(wrapper, USERS_FILE);
+            store.write(tx -> {
+                defaultUsers.forEach(tx::put);
+                return null;
+            });
             System.out.println("✓ Default users initialized successfully");
         } catch (JAXBException | XMLValidationException e) {
             throw new RuntimeException("Failed to initialize default users", e);
@@ -406,7 +285,7 @@ public class AuthService {
         Utilisateur user = createUserByRole(role);
         user.setId(idCounter.getAndIncrement());
         user.setMail(mail);
-        user.setPassword(password);
+        user.setPassword(passwordService.encode(password));
         user.setNom(nom);
         user.setPrenom(prenom);
         user.setTelephone(telephone);
@@ -1,22 +1,32 @@
 package com.urbanwaste.service;
 
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional; // <-- CHANGED from javax.annotation
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger; // <-- CHANGED from javax.xml.bind
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import com.urbanwaste.model.PointCollecte;
 import com.urbanwaste.model.PointsCollecteWrapper;
+import com.urbanwaste.model.TelemetryReading;
 import com.urbanwaste.model.TypeDechet;
+import com.urbanwaste.model.Zone;
+import com.urbanwaste.util.EntityStore;
+import com.urbanwaste.util.ReadView;
+import com.urbanwaste.util.SecondaryIndex;
 import com.urbanwaste.util.XMLHandler;
 import com.urbanwaste.exception.XMLValidationException;
 
@@ -32,18 +42,51 @@ public class CollectionPointService {
     @Autowired
     private XMLHandler xmlHandler;
     
+    @Autowired
+    private FillHistoryService fillHistoryService;
+    
+    @Autowired
+    private FillForecaster fillForecaster;
+    
+    private EntityStore<PointsCollecteWrapper, PointCollecte> store;
+    
     private AtomicInteger idCounter = new AtomicInteger(1);
     
+    // Fill level above which a point counts as critical in the statistics
+    @Value("${urbanwaste.stats.critical-threshold:80}")
+    private float criticalThreshold;
+    
+    private PointStatistics statistics;
+    
+    private final FillLevelIndex fillLevelIndex = new FillLevelIndex();
+    
+    private SecondaryIndex<PointCollecte> indexes;
+    
+    private ZoneAssignment zoneAssignment;
+    
+    // When the applied fill level of each point was measured (epoch ms), whether by a sensor
+    // or by hand. Checked and set inside the store writes, so a level measured earlier than
+    // the applied one is refused whichever way it comes in.
+    private final Map<Integer, Long> levelMeasuredAt = new ConcurrentHashMap<>();
+    
     @PostConstruct
     public void init() {
-        // Initialize ID counter from existing data
+        store = xmlHandler.getStore(POINTS_FILE, PointsCollecteWrapper.class,
+            PointsCollecteWrapper::getPoints, PointsCollecteWrapper::setPoints, PointCollecte::getId, PointCollecte::copy);
+        statistics = new PointStatistics(criticalThreshold);
+        store.addListener(statistics);
+        store.addListener(fillLevelIndex);
+        zoneAssignment = new ZoneAssignment(criticalThreshold);
+        store.addListener(zoneAssignment);
+        indexes = new SecondaryIndex<>(store, PointCollecte::getId)
+            .on("etatConteneur", PointCollecte::getEtatConteneur, true)
+            .on("typeDechet", p -> p.getTypeDechet() != null ? p.getTypeDechet().getNom() : null, true)
+            .attach();
+        
+        // Warm up the store and initialize ID counter from existing data
         if (xmlHandler.fileExists(POINTS_FILE)) {
             try {
-                List<PointCollecte> points = getAllPoints();
-                if (!points.isEmpty()) {
-                    int maxId = points.stream().mapToInt(PointCollecte::getId).max().orElse(0);
-                    idCounter.set(maxId + 1);
-                }
+                idCounter.set(store.maxId() + 1);
             } catch (JAXBException e) {
                 System.err.println("Failed to load existing points: " + e.getMessage());
             }
@@ -51,25 +94,31 @@ public class CollectionPointService {
     }
     
     /**
-     * Get all collection points
+     * Get all collection points (served from the in-memory store)
      */
     public List<PointCollecte> getAllPoints() throws JAXBException {
-        // Uses the XMLHandler to load the data wrapper and returns the inner list
-        PointsCollecteWrapper wrapper = xmlHandler.loadFromXML(POINTS_FILE, PointsCollecteWrapper.class);
-        // Ensure we always return a non-null list
-        if (wrapper == null || wrapper.getPoints() == null) {
-            return new ArrayList<>();
-        }
-        return wrapper.getPoints();
+        return store.getAll();
+    }
+    
+    /**
+     * Get all collection points as they were in the given view
+     */
+    public List<PointCollecte> getAllPoints(ReadView view) throws JAXBException {
+        return view.getAll(store);
+    }
+    
+    /**
+     * Follow committed point changes (used by the indexes derived from the points)
+     */
+    public void addListener(EntityStore.Listener<PointCollecte> listener) {
+        store.addListener(listener);
     }
     
     /**
      * Get point by ID
      */
     public Optional<PointCollecte> getPointById(int id) throws JAXBException {
-        return getAllPoints().stream()
-            .filter(p -> p.getId() == id)
-            .findFirst();
+        return store.findById(id);
     }
     
     /**
@@ -82,124 +131,167 @@ public class CollectionPointService {
         System.out.println("DEBUG: Incoming Lat/Lon: " + point.getLatitude() + " / " + point.getLongitude());
         // --- DEBUGGING END ---
 
-        PointsCollecteWrapper wrapper = xmlHandler.loadFromXML(POINTS_FILE, PointsCollecteWrapper.class);
-        
-        // Ensure wrapper and list are initialized
-        if (wrapper == null) {
-            wrapper = new PointsCollecteWrapper();
-        }
-        List<PointCollecte> points = wrapper.getPoints();
-        if (points == null) {
-            points = new ArrayList<>();
-            wrapper.setPoints(points);
-        }
-        
-        // Assign unique ID
-        point.setId(idCounter.getAndIncrement());
-        
-        // Set default values if not provided (Business Rules)
-        if (point.getEtatConteneur() == null) {
-            point.setEtatConteneur("ACTIF");
-        }
-        if (point.getDateDerniereCollecte() == null) {
-            point.setDateDerniereCollecte(new Date());
-        }
-        // Ensure typeDechet is set if not provided
-        if (point.getTypeDechet() == null) {
-            point.setTypeDechet(new TypeDechet(1, "MIXTE"));
-        }
-        
-        points.add(point);
-        wrapper.setPoints(points);
-        
-        // Save the updated list back to XML
-        xmlHandler.saveToXML(wrapper, POINTS_FILE);
-        
-        return point;
+        return store.write(tx -> {
+            // Assign unique ID
+            point.setId(nextId(tx));
+            
+            // Set default values if not provided (Business Rules)
+            if (point.getEtatConteneur() == null) {
+                point.setEtatConteneur("ACTIF");
+            }
+            if (point.getDateDerniereCollecte() == null) {
+                point.setDateDerniereCollecte(new Date());
+            }
+            // Ensure typeDechet is set if not provided
+            if (point.getTypeDechet() == null) {
+                point.setTypeDechet(new TypeDechet(1, "MIXTE"));
+            }
+            
+            tx.put(point);
+            return point;
+        });
     }
     
     /**
      * Update existing point
      */
     public Optional<PointCollecte> updatePoint(int id, PointCollecte updatedPoint) throws JAXBException, XMLValidationException {
-        PointsCollecteWrapper wrapper = xmlHandler.loadFromXML(POINTS_FILE, PointsCollecteWrapper.class);
-        
-        // Ensure wrapper and list are initialized
-        if (wrapper == null) {
-            wrapper = new PointsCollecteWrapper();
-        }
-        List<PointCollecte> points = wrapper.getPoints();
-        if (points == null) {
-            points = new ArrayList<>();
-            wrapper.setPoints(points);
-        }
-        
-        Optional<PointCollecte> existing = points.stream()
-            .filter(p -> p.getId() == id)
-            .findFirst();
-        
-        if (existing.isEmpty()) {
-            return Optional.empty();
-        }
-        
-        // Remove old and add updated
-        points.removeIf(p -> p.getId() == id);
-        updatedPoint.setId(id);
-        // Ensure typeDechet is set if not provided
-        if (updatedPoint.getTypeDechet() == null) {
-            updatedPoint.setTypeDechet(new TypeDechet(1, "MIXTE"));
-        }
-        points.add(updatedPoint);
-        
-        wrapper.setPoints(points);
-        xmlHandler.saveToXML(wrapper, POINTS_FILE);
-        
-        return Optional.of(updatedPoint);
+        return store.write(tx -> {
+            if (tx.find(id).isEmpty()) {
+                return Optional.empty();
+            }
+            
+            updatedPoint.setId(id);
+            // Ensure typeDechet is set if not provided
+            if (updatedPoint.getTypeDechet() == null) {
+                updatedPoint.setTypeDechet(new TypeDechet(1, "MIXTE"));
+            }
+            tx.put(updatedPoint);
+            
+            return Optional.of(updatedPoint);
+        });
     }
     
     /**
      * Delete point
      */
     public boolean deletePoint(int id) throws JAXBException, XMLValidationException {
-        PointsCollecteWrapper wrapper = xmlHandler.loadFromXML(POINTS_FILE, PointsCollecteWrapper.class);
-        List<PointCollecte> points = wrapper.getPoints();
-        
-        boolean removed = points.removeIf(p -> p.getId() == id);
-        
-        if (removed) {
-            wrapper.setPoints(points);
-            xmlHandler.saveToXML(wrapper, POINTS_FILE);
-        }
-        
-        return removed;
+        return store.write(tx -> {
+            levelMeasuredAt.remove(id);
+            return tx.remove(id);
+        });
     }
     
     /**
      * Get points by waste type
      */
     public List<PointCollecte> getPointsByType(String typeName) throws JAXBException {
-        return getAllPoints().stream()
-            .filter(p -> p.getTypeDechet() != null && 
-                        typeName.equalsIgnoreCase(p.getTypeDechet().getNom()))
-            .collect(Collectors.toList());
+        return indexes.find("typeDechet", typeName);
     }
     
     /**
-     * Get critical points (above threshold)
+     * Get critical points (above threshold), fullest first, from the fill-level index
      */
     public List<PointCollecte> getCriticalPoints(float threshold) throws JAXBException {
-        return getAllPoints().stream()
-            .filter(p -> p.getNiveauRemplissage() > threshold)
-            .sorted(Comparator.comparingDouble(PointCollecte::getNiveauRemplissage).reversed())
-            .collect(Collectors.toList());
+        // The index is filled when the store loads, which happens on first access
+        store.getVersion();
+        return fillLevelIndex.above(threshold);
+    }
+    
+    /**
+     * The k fullest points
+     */
+    public List<PointCollecte> getFullestPoints(int k) throws JAXBException {
+        store.getVersion();
+        return fillLevelIndex.fullest(k);
+    }
+    
+    /**
+     * Defined zone designated by its name (case-insensitive) or its id
+     */
+    public Optional<Zone> resolveZone(String zone) throws JAXBException {
+        // Points are assigned to zones as the store loads
+        store.getVersion();
+        return Optional.ofNullable(zoneAssignment.resolve(zone));
+    }
+    
+    /**
+     * Test for the points of a zone: membership of a defined zone (by name or id), or for
+     * any other text the localisation containing it (case-insensitive). Null matches all.
+     */
+    public Predicate<PointCollecte> zoneFilter(String zone) throws JAXBException {
+        if (zone == null) {
+            return p -> true;
+        }
+        Optional<Zone> defined = resolveZone(zone);
+        if (defined.isPresent()) {
+            BitSet members = zoneAssignment.memberIds(defined.get().getId());
+            return p -> members.get(p.getId());
+        }
+        String text = zone.toLowerCase();
+        return p -> p.getLocalisation() != null && p.getLocalisation().toLowerCase().contains(text);
+    }
+    
+    /**
+     * Zone a point lies in, if any
+     */
+    public Optional<Integer> getZoneOf(int pointId) throws JAXBException {
+        store.getVersion();
+        return Optional.ofNullable(zoneAssignment.zoneOf(pointId));
+    }
+    
+    /**
+     * Points inside a zone, by id
+     */
+    public List<PointCollecte> getPointsInZone(int zoneId) throws JAXBException {
+        store.getVersion();
+        return zoneAssignment.pointsIn(zoneId);
+    }
+    
+    /**
+     * Statistics of the points of a zone (same keys as {@link #getStatistics()}), empty for an unknown zone
+     */
+    public Optional<Map<String, Object>> getZoneStatistics(int zoneId) throws JAXBException {
+        store.getVersion();
+        return Optional.ofNullable(zoneAssignment.statistics(zoneId));
+    }
+    
+    /**
+     * Ids of the points inside a zone (a copy), for zone filters on other entities
+     */
+    BitSet getPointIdsInZone(int zoneId) throws JAXBException {
+        store.getVersion();
+        return zoneAssignment.memberIds(zoneId);
+    }
+    
+    ZoneAssignment getZoneAssignment() {
+        return zoneAssignment;
     }
     
     /**
      * Get points by state
      */
     public List<PointCollecte> getPointsByEtat(String etat) throws JAXBException {
-        return getAllPoints().stream()
-            .filter(p -> etat.equalsIgnoreCase(p.getEtatConteneur()))
+        return indexes.find("etatConteneur", etat);
+    }
+    
+    /**
+     * Points matching the export filters; null filters are ignored.
+     * The date range applies to the last collection date, the zone as in {@link #zoneFilter}.
+     */
+    public List<PointCollecte> findPoints(LocalDate from, LocalDate to, String zone, String etat) throws JAXBException {
+        Optional<Zone> definedZone = zone != null ? resolveZone(zone) : Optional.empty();
+        List<PointCollecte> candidates = definedZone.isPresent()
+            ? getPointsInZone(definedZone.get().getId()) : getAllPoints();
+        return candidates.stream()
+            .filter(p -> etat == null || etat.equalsIgnoreCase(p.getEtatConteneur()))
+            .filter(definedZone.isPresent() ? p -> true : zoneFilter(zone))
+            .filter(p -> {
+                if (from == null && to == null) return true;
+                if (p.getDateDerniereCollecte() == null) return false;
+                LocalDate day = p.getDateDerniereCollecte().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+                return (from == null || !day.isBefore(from)) && (to == null || !day.isAfter(to));
+            })
             .collect(Collectors.toList());
     }
     
@@ -211,105 +303,183 @@ public class CollectionPointService {
     }
     
     /**
-     * Update fill level
+     * Update fill level, measured now. The point is returned unchanged if a sensor reading
+     * measured later (e.g. by a clock running ahead) was already applied.
      */
     public Optional<PointCollecte> updateFillLevel(int id, float newLevel) throws JAXBException, XMLValidationException {
-        PointsCollecteWrapper wrapper = xmlHandler.loadFromXML(POINTS_FILE, PointsCollecteWrapper.class);
-        List<PointCollecte> points = wrapper.getPoints();
-        
-        Optional<PointCollecte> pointOpt = points.stream()
-            .filter(p -> p.getId() == id)
-            .findFirst();
-        
-        if (pointOpt.isEmpty()) {
-            return Optional.empty();
+        Date now = new Date();
+        boolean[] applied = {false};
+        Optional<PointCollecte> updated = store.write(tx -> {
+            Optional<PointCollecte> current = tx.find(id);
+            if (current.isEmpty() || !claimNewer(id, now.getTime())) {
+                return current;
+            }
+            
+            PointCollecte point = tx.edit(id).get();
+            applyFillLevel(point, newLevel);
+            applied[0] = true;
+            
+            return Optional.of(point);
+        });
+        if (applied[0]) {
+            fillHistoryService.record(id, now, newLevel);
+            fillForecaster.observe(id, now, newLevel);
         }
-        
-        PointCollecte point = pointOpt.get();
+        return updated;
+    }
+    
+    /**
+     * Apply the newest reading of many points in a single write (sensor telemetry), at most
+     * one reading per point. Unknown points are skipped, and so are readings measured before
+     * the level already applied, by telemetry or by hand.
+     */
+    public FillLevelUpdate updateFillLevels(Collection<TelemetryReading> readings) throws JAXBException, XMLValidationException {
+        FillLevelUpdate result = store.write(tx -> {
+            FillLevelUpdate update = new FillLevelUpdate(readings.size());
+            for (TelemetryReading reading : readings) {
+                Optional<PointCollecte> current = tx.find(reading.getPointId());
+                if (current.isEmpty()) {
+                    update.unknown++;
+                    continue;
+                }
+                if (!claimNewer(reading.getPointId(), reading.getTimestamp().getTime())) {
+                    update.stale++;
+                    continue;
+                }
+                update.applied.add(reading);
+                float level = reading.getLevel();
+                // Most readings repeat the stored value: no copy, no listener notification
+                if (current.get().getNiveauRemplissage() == level && !becomesMaintenance(current.get(), level)) {
+                    continue;
+                }
+                applyFillLevel(tx.edit(reading.getPointId()).get(), level);
+            }
+            return update;
+        });
+        for (TelemetryReading reading : result.applied) {
+            fillHistoryService.record(reading.getPointId(), reading.getTimestamp(), reading.getLevel());
+            fillForecaster.observe(reading.getPointId(), reading.getTimestamp(), reading.getLevel());
+        }
+        return result;
+    }
+    
+    // Called inside a store write: whether a level measured at that time is not older than
+    // the applied one, in which case it becomes the applied one
+    private boolean claimNewer(int id, long measuredAt) {
+        Long appliedAt = levelMeasuredAt.get(id);
+        if (appliedAt != null && measuredAt < appliedAt) {
+            return false;
+        }
+        levelMeasuredAt.put(id, measuredAt);
+        return true;
+    }
+    
+    private static void applyFillLevel(PointCollecte point, float newLevel) {
         point.setNiveauRemplissage(newLevel);
         
         // Auto update state if critical (Business Rule: if over 90% and not already maintenance, set to maintenance)
-        if (newLevel > 90 && !"MAINTENANCE".equals(point.getEtatConteneur())) {
+        if (becomesMaintenance(point, newLevel)) {
             point.setEtatConteneur("MAINTENANCE");
         }
-        
-        wrapper.setPoints(points);
-        xmlHandler.saveToXML(wrapper, POINTS_FILE);
-        
-        return Optional.of(point);
+    }
+    
+    private static boolean becomesMaintenance(PointCollecte point, float newLevel) {
+        return newLevel > 90 && !"MAINTENANCE".equals(point.getEtatConteneur());
     }
     
     /**
-     * Get statistics
+     * Get statistics (maintained on every commit, not recomputed)
      */
     public Map<String, Object> getStatistics() throws JAXBException {
+        // The aggregates are filled when the store loads, which happens on first access
+        store.getVersion();
+        return statistics.toMap();
+    }
+    
+    /**
+     * Compare the maintained statistics with a full recomputation over the points
+     */
+    public Map<String, Object> verifyStatistics() throws JAXBException {
         List<PointCollecte> points = getAllPoints();
-        
-        Map<String, Object> stats = new HashMap<>();
-        stats.put("total", points.size());
-        stats.put("actifs", points.stream().filter(p -> "ACTIF".equals(p.getEtatConteneur())).count());
-        stats.put("maintenance", points.stream().filter(p -> "MAINTENANCE".equals(p.getEtatConteneur())).count());
-        stats.put("horsService", points.stream().filter(p -> "HORS_SERVICE".equals(p.getEtatConteneur())).count());
-        stats.put("critiques", points.stream().filter(p -> p.getNiveauRemplissage() > 80).count());
-        
-        double avgFill = points.stream()
-            .mapToDouble(PointCollecte::getNiveauRemplissage)
-            .average()
-            .orElse(0.0);
-        stats.put("remplissageMoyen", Math.round(avgFill * 100) / 100.0);
-        
-        return stats;
+        Map<String, Object> maintained = statistics.toMap();
+        Map<String, Object> recomputed = statistics.recompute(points);
+        Map<String, Object> result = new HashMap<>();
+        result.put("consistent", maintained.equals(recomputed));
+        result.put("maintained", maintained);
+        result.put("recomputed", recomputed);
+        return result;
     }
     
     /**
      * Merge imported points with existing points (avoiding duplicates by ID)
      * Returns the number of points actually imported (new points only)
      */
-    public synchronized int mergePoints(List<PointCollecte> importedPoints) throws JAXBException, XMLValidationException {
-        PointsCollecteWrapper wrapper = xmlHandler.loadFromXML(POINTS_FILE, PointsCollecteWrapper.class);
-        if (wrapper == null) {
-            wrapper = new PointsCollecteWrapper();
-        }
-        List<PointCollecte> existingPoints = wrapper.getPoints();
-        if (existingPoints == null) {
-            existingPoints = new ArrayList<>();
+    public int mergePoints(List<PointCollecte> importedPoints) throws JAXBException, XMLValidationException {
+        return store.write(tx -> {
+            int importedCount = 0;
+            
+            // Add only points that don't already exist (by ID)
+            for (PointCollecte importedPoint : importedPoints) {
+                if (!tx.contains(importedPoint.getId())) {
+                    // Assign new ID if ID is 0; an explicit one is kept, and later ids go past it
+                    if (importedPoint.getId() == 0) {
+                        importedPoint.setId(nextId(tx));
+                    } else {
+                        idCounter.accumulateAndGet(importedPoint.getId() + 1, Math::max);
+                    }
+                    
+                    // Set default values if not provided
+                    if (importedPoint.getEtatConteneur() == null) {
+                        importedPoint.setEtatConteneur("ACTIF");
+                    }
+                    if (importedPoint.getDateDerniereCollecte() == null) {
+                        importedPoint.setDateDerniereCollecte(new Date());
+                    }
+                    if (importedPoint.getTypeDechet() == null) {
+                        importedPoint.setTypeDechet(new TypeDechet(1, "MIXTE"));
+                    }
+                    
+                    tx.put(importedPoint);
+                    importedCount++;
+                }
+            }
+            
+            return importedCount;
+        });
+    }
+    
+    // Next unused id: imported records keep their own ids, which the counter may not have reached
+    private int nextId(EntityStore.Transaction<PointCollecte> tx) {
+        int id = idCounter.getAndIncrement();
+        while (tx.contains(id)) {
+            id = idCounter.getAndIncrement();
         }
+        return id;
+    }
+    
+    /**
+     * Outcome of a telemetry batch: the readings applied, and how many were dropped
+     */
+    public static final class FillLevelUpdate {
+        private final List<TelemetryReading> applied;
+        private int stale;
+        private int unknown;
         
-        // Create a set of existing IDs for quick lookup
-        Set<Integer> existingIds = existingPoints.stream()
-            .map(PointCollecte::getId)
-            .collect(Collectors.toSet());
-        
-        int importedCount = 0;
+        FillLevelUpdate(int capacity) {
+            this.applied = new ArrayList<>(capacity);
+        }
         
-        // Add only points that don't already exist (by ID)
-        for (PointCollecte importedPoint : importedPoints) {
-            if (!existingIds.contains(importedPoint.getId())) {
-                // Assign new ID if ID is 0 or conflicts
-                if (importedPoint.getId() == 0 || existingIds.contains(importedPoint.getId())) {
-                    importedPoint.setId(idCounter.getAndIncrement());
-                }
-                
-                // Set default values if not provided
-                if (importedPoint.getEtatConteneur() == null) {
-                    importedPoint.setEtatConteneur("ACTIF");
-                }
-                if (importedPoint.getDateDerniereCollecte() == null) {
-                    importedPoint.setDateDerniereCollecte(new Date());
-                }
-                if (importedPoint.getTypeDechet() == null) {
-                    importedPoint.setTypeDechet(new TypeDechet(1, "MIXTE"));
-                }
-                
-                existingPoints.add(importedPoint);
-                existingIds.add(importedPoint.getId());
-                importedCount++;
-            }
+        public List<TelemetryReading> getApplied() {
+            return applied;
         }
         
-        wrapper.setPoints(existingPoints);
-        xmlHandler.saveToXML(wrapper, POINTS_FILE);
+        // Measured before the level already applied to their point
+        public int getStale() {
+            return stale;
+        }
         
-        return importedCount;
+        public int getUnknown() {
+            return unknown;
+        }
     }
-}
\ No newline at end of file
+}
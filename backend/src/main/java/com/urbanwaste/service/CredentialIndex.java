@@ -0,0 +1,147 @@
+package com.urbanwaste.service;
+
+import com.urbanwaste.model.Utilisateur;
+import com.urbanwaste.util.EntityStore;
+import com.urbanwaste.util.IntObjectHashMap;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Credentials of the users of every account file, by mail, so that a login is a single
+ * lookup instead of a scan of each file in turn.
+ *
+ * Each source (admins, superviseurs, techniciens, employees) is followed through the
+ * listener returned by {@link #source}. A mail found in several places keeps its
+ * candidates in the order the login checks them: by source, then by id within a source.
+ */
+class CredentialIndex {
+
+    private static final Comparator<Credential> CHAIN_ORDER =
+        Comparator.comparingInt((Credential c) -> c.source).thenComparingInt(c -> c.id);
+
+    private static final Credential[] NONE = new Credential[0];
+
+    // Arrays are never modified once published, so lookups need no lock
+    private final ConcurrentHashMap<String, Credential[]> byMail = new ConcurrentHashMap<>();
+
+    // Guarded by this
+    private final IntObjectHashMap<Credential>[] bySource;
+    private final boolean[] loaded;
+
+    @SuppressWarnings("unchecked")
+    CredentialIndex(int sources) {
+        bySource = new IntObjectHashMap[sources];
+        for (int i = 0; i < sources; i++) {
+            bySource[i] = new IntObjectHashMap<>();
+        }
+        loaded = new boolean[sources];
+    }
+
+    /**
+     * Listener to register on the store of a source; the lower the source, the earlier
+     * its users are checked. The role is the one the login gives them (null to keep theirs).
+     */
+    <T extends Utilisateur> EntityStore.Listener<T> source(int source, String role) {
+        return new EntityStore.Listener<>() {
+            @Override
+            public void loaded(List<T> users) {
+                synchronized (CredentialIndex.this) {
+                    bySource[source].forEachValue(CredentialIndex.this::unindex);
+                    bySource[source].clear();
+                    for (T user : users) {
+                        add(new Credential(source, role, user));
+                    }
+                    loaded[source] = true;
+                }
+            }
+
+            @Override
+            public void changed(T before, T after) {
+                synchronized (CredentialIndex.this) {
+                    Credential previous = bySource[source].remove(after != null ? after.getId() : before.getId());
+                    if (previous != null) {
+                        unindex(previous);
+                    }
+                    if (after != null) {
+                        add(new Credential(source, role, after));
+                    }
+                }
+            }
+        };
+    }
+
+    synchronized boolean isLoaded(int source) {
+        return loaded[source];
+    }
+
+    /**
+     * Users registered with this mail, in the order the login checks them
+     */
+    Credential[] candidates(String mail) {
+        Credential[] found = mail != null ? byMail.get(mail) : null;
+        return found != null ? found : NONE;
+    }
+
+    // Called with the monitor held
+    private void add(Credential credential) {
+        bySource[credential.source].put(credential.id, credential);
+        if (credential.user.getMail() == null) {
+            return;
+        }
+        byMail.compute(credential.user.getMail(), (mail, current) -> {
+            if (current == null) {
+                return new Credential[] {credential};
+            }
+            Credential[] next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = credential;
+            Arrays.sort(next, CHAIN_ORDER);
+            return next;
+        });
+    }
+
+    // Called with the monitor held
+    private void unindex(Credential credential) {
+        if (credential.user.getMail() == null) {
+            return;
+        }
+        byMail.computeIfPresent(credential.user.getMail(), (mail, current) -> {
+            int at = Arrays.asList(current).indexOf(credential);
+            if (at < 0) {
+                return current;
+            }
+            if (current.length == 1) {
+                return null;
+            }
+            Credential[] next = new Credential[current.length - 1];
+            System.arraycopy(current, 0, next, 0, at);
+            System.arraycopy(current, at + 1, next, at, next.length - at);
+            return next;
+        });
+    }
+
+    /**
+     * A user of one source with the password stored for them
+     */
+    static final class Credential {
+        final int source;
+        final String role;
+        final int id;
+        final String storedPassword;
+        final Utilisateur user;
+
+        Credential(int source, String role, Utilisateur user) {
+            this.source = source;
+            this.role = role;
+            this.id = user.getId();
+            this.user = user;
+            String stored = user.getMotDePasse();
+            if (stored == null || stored.isEmpty()) {
+                stored = user.getPassword();
+            }
+            this.storedPassword = stored;
+        }
+    }
+}
@@ -0,0 +1,469 @@
+package com.urbanwaste.service;
+
+import com.urbanwaste.model.PointCollecte;
+import com.urbanwaste.util.EntityStore;
+import com.urbanwaste.util.GeoUtils;
+import com.urbanwaste.util.IntObjectHashMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * Haversine distances between all collection points, computed once and kept up to date.
+ *
+ * Each point gets a slot; the distances are stored as floats in a lower-triangular layout
+ * (row s holds the distances from slot s to slots 0..s-1), so n points take n(n-1)/2
+ * floats. The array is split into chunks of at most 16 MB, on the heap or off-heap
+ * (direct buffers) for large n, so growing it only ever copies the last chunk.
+ *
+ * The matrix is built when the points are loaded and then follows the commits of the
+ * points store: a created or moved point costs one row of n distances, a deleted point
+ * frees its slot for the next one. Lookups are O(1) and k-nearest queries a scan of one
+ * row, with no trigonometry. Points without coordinates are left out.
+ *
+ * The matrix grows with the square of the point count, so above
+ * urbanwaste.distance-matrix.max-points it is not built: only the slots and coordinates
+ * are kept, and every distance is computed by haversine when asked for.
+ */
+@Service
+public class DistanceMatrix implements EntityStore.Listener<PointCollecte> {
+
+    // At most 2^22 floats (16 MB) per chunk
+    private static final int CHUNK_SHIFT = 22;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    @Autowired
+    private CollectionPointService collectionPointService;
+
+    @Value("${urbanwaste.distance-matrix.off-heap:false}")
+    private boolean offHeap;
+
+    // Largest point count for which the matrix is stored rather than computed on demand
+    @Value("${urbanwaste.distance-matrix.max-points:5000}")
+    private int maxPoints;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by lock
+    private final IntObjectHashMap<Integer> slotById = new IntObjectHashMap<>();
+    private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+    private int[] idBySlot = new int[0];
+    private boolean[] used = new boolean[0];
+    private double[] latitude = new double[0];
+    private double[] longitude = new double[0];
+    private int slotCount;
+    private Storage storage;
+    // False when there are more than maxPoints points: storage is then left empty
+    private boolean materialized;
+
+    @PostConstruct
+    public void init() {
+        storage = offHeap ? new DirectStorage() : new HeapStorage();
+        collectionPointService.addListener(this);
+    }
+
+    @Override
+    public void loaded(List<PointCollecte> points) {
+        lock.writeLock().lock();
+        try {
+            slotById.clear();
+            freeSlots.clear();
+            slotCount = 0;
+            storage.reset();
+            List<PointCollecte> located = new ArrayList<>();
+            for (PointCollecte point : points) {
+                if (GeoUtils.isLocated(point)) {
+                    located.add(point);
+                }
+            }
+            ensureSlots(located.size());
+            for (PointCollecte point : located) {
+                assign(slotCount++, point);
+            }
+            materialized = slotCount <= maxPoints;
+            if (!materialized) {
+                System.out.println("[DistanceMatrix] " + slotCount + " points, above max-points (" + maxPoints
+                    + "): distances computed on demand");
+                return;
+            }
+            storage.ensure(triangle(slotCount));
+            // Rows are independent, so they are filled in parallel
+            IntStream.range(1, slotCount).parallel().forEach(this::fillRow);
+            System.out.println("[DistanceMatrix] Built " + slotCount + " points ("
+                + storage.bytes() / (1024 * 1024) + " MB " + (offHeap ? "off-heap" : "on heap") + ")");
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void changed(PointCollecte before, PointCollecte after) {
+        lock.writeLock().lock();
+        try {
+            int id = after != null ? after.getId() : before.getId();
+            Integer slot = slotById.get(id);
+            if (after == null || !GeoUtils.isLocated(after)) {
+                if (slot != null) {
+                    slotById.remove(id);
+                    used[slot] = false;
+                    freeSlots.push(slot);
+                }
+                return;
+            }
+            if (slot != null && latitude[slot] == after.getLatitude() && longitude[slot] == after.getLongitude()) {
+                return;
+            }
+            if (slot == null) {
+                if (freeSlots.isEmpty()) {
+                    ensureSlots(slotCount + 1);
+                    slot = slotCount++;
+                    if (materialized && slotCount > maxPoints) {
+                        materialized = false;
+                        storage.reset();
+                        System.out.println("[DistanceMatrix] " + slotCount + " slots, above max-points (" + maxPoints
+                            + "): matrix dropped, distances computed on demand");
+                    }
+                    if (materialized) {
+                        storage.ensure(triangle(slotCount));
+                    }
+                } else {
+                    slot = freeSlots.pop();
+                }
+            }
+            assign(slot, after);
+            if (materialized) {
+                fillRow(slot);
+                fillColumn(slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Distance in km between two points, or NaN if either is unknown (or has no coordinates)
+     */
+    public float distanceKm(int idA, int idB) {
+        lock.readLock().lock();
+        try {
+            Integer a = slotById.get(idA);
+            Integer b = slotById.get(idB);
+            if (a == null || b == null) {
+                return Float.NaN;
+            }
+            return get(a, b);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Pairwise distances between the given points, from the matrix when it knows a point at
+     * the same coordinates and by haversine otherwise (always, above max-points)
+     */
+    public double[][] distancesFor(List<PointCollecte> points) {
+        int n = points.size();
+        double[][] dist = new double[n][n];
+        lock.readLock().lock();
+        try {
+            int[] slots = new int[n];
+            for (int i = 0; i < n; i++) {
+                PointCollecte point = points.get(i);
+                Integer slot = slotById.get(point.getId());
+                slots[i] = slot != null && latitude[slot] == point.getLatitude()
+                    && longitude[slot] == point.getLongitude() ? slot : -1;
+            }
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    dist[i][j] = dist[j][i] = slots[i] >= 0 && slots[j] >= 0
+                        ? get(slots[i], slots[j])
+                        : GeoUtils.haversineKm(points.get(i), points.get(j));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return dist;
+    }
+
+    /**
+     * The k points closest to the given one, nearest first (empty if the point is unknown)
+     */
+    public List<Neighbour> nearest(int id, int k) {
+        lock.readLock().lock();
+        try {
+            Integer origin = slotById.get(id);
+            if (origin == null || k <= 0) {
+                return List.of();
+            }
+            // Bounded selection: keep the k best, replacing the farthest kept one
+            int[] best = new int[k];
+            float[] bestDist = new float[k];
+            int size = 0;
+            int worst = 0;
+            for (int s = 0; s < slotCount; s++) {
+                if (s == origin || !used[s]) {
+                    continue;
+                }
+                float d = get(origin, s);
+                if (size < k) {
+                    best[size] = s;
+                    bestDist[size] = d;
+                    if (d > bestDist[worst]) {
+                        worst = size;
+                    }
+                    size++;
+                } else if (d < bestDist[worst]) {
+                    best[worst] = s;
+                    bestDist[worst] = d;
+                    for (int t = 0; t < k; t++) {
+                        if (bestDist[t] > bestDist[worst]) {
+                            worst = t;
+                        }
+                    }
+                }
+            }
+            List<Neighbour> result = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                result.add(new Neighbour(idBySlot[best[i]], bestDist[i]));
+            }
+            result.sort((a, b) -> Float.compare(a.distanceKm, b.distanceKm));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Size of the matrix, for monitoring
+     */
+    public Map<String, Object> getStats() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("mode", materialized ? "matrix" : "on-demand");
+            stats.put("maxPoints", maxPoints);
+            stats.put("points", slotById.size());
+            stats.put("slots", slotCount);
+            stats.put("bytes", storage.bytes());
+            stats.put("offHeap", offHeap);
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void assign(int slot, PointCollecte point) {
+        slotById.put(point.getId(), slot);
+        idBySlot[slot] = point.getId();
+        used[slot] = true;
+        latitude[slot] = point.getLatitude();
+        longitude[slot] = point.getLongitude();
+    }
+
+    private void ensureSlots(int count) {
+        if (count > idBySlot.length) {
+            int capacity = Math.max(count, idBySlot.length * 2);
+            idBySlot = Arrays.copyOf(idBySlot, capacity);
+            used = Arrays.copyOf(used, capacity);
+            latitude = Arrays.copyOf(latitude, capacity);
+            longitude = Arrays.copyOf(longitude, capacity);
+        }
+    }
+
+    // Distances from slot s to every lower slot
+    private void fillRow(int s) {
+        long base = triangle(s);
+        for (int j = 0; j < s; j++) {
+            storage.set(base + j, distance(s, j));
+        }
+    }
+
+    // Distances from every higher slot to slot s
+    private void fillColumn(int s) {
+        for (int i = s + 1; i < slotCount; i++) {
+            storage.set(triangle(i) + s, distance(i, s));
+        }
+    }
+
+    private float distance(int a, int b) {
+        return (float) GeoUtils.haversineKm(latitude[a], longitude[a], latitude[b], longitude[b]);
+    }
+
+    private float get(int a, int b) {
+        if (a == b) {
+            return 0f;
+        }
+        if (!materialized) {
+            return distance(a, b);
+        }
+        return a > b ? storage.get(triangle(a) + b) : storage.get(triangle(b) + a);
+    }
+
+    // Number of cells in rows 0..n-1, i.e. the offset of row n
+    private static long triangle(int n) {
+        return (long) n * (n - 1) / 2;
+    }
+
+    /**
+     * A point near another one and its distance
+     */
+    public static final class Neighbour {
+        private final int id;
+        private final float distanceKm;
+
+        Neighbour(int id, float distanceKm) {
+            this.id = id;
+            this.distanceKm = distanceKm;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public float getDistanceKm() {
+            return distanceKm;
+        }
+    }
+
+    /**
+     * Float array addressed by a long index, split in chunks of CHUNK_SIZE. Only the last
+     * chunk may be shorter; it grows by doubling, so small matrices stay small.
+     */
+    private abstract static class Storage {
+        private long bytes;
+
+        abstract float get(long index);
+
+        abstract void set(long index, float value);
+
+        abstract int chunkCount();
+
+        abstract int chunkLength(int chunk);
+
+        // Replace (or add) a chunk with a larger one holding the same leading values
+        abstract void resize(int chunk, int length);
+
+        abstract void clear();
+
+        void ensure(long size) {
+            int needed = (int) ((size + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+            for (int c = 0; c < needed; c++) {
+                long want = c < needed - 1 ? CHUNK_SIZE : size - ((long) c << CHUNK_SHIFT);
+                int current = c < chunkCount() ? chunkLength(c) : 0;
+                if (current < want) {
+                    int length = (int) Math.min(CHUNK_SIZE, Math.max(want, current * 2L));
+                    resize(c, length);
+                    bytes += (long) (length - current) * Float.BYTES;
+                }
+            }
+        }
+
+        void reset() {
+            clear();
+            bytes = 0;
+        }
+
+        long bytes() {
+            return bytes;
+        }
+    }
+
+    private static final class HeapStorage extends Storage {
+        private float[][] chunks = new float[0][];
+
+        @Override
+        float get(long index) {
+            return chunks[(int) (index >>> CHUNK_SHIFT)][(int) (index & (CHUNK_SIZE - 1))];
+        }
+
+        @Override
+        void set(long index, float value) {
+            chunks[(int) (index >>> CHUNK_SHIFT)][(int) (index & (CHUNK_SIZE - 1))] = value;
+        }
+
+        @Override
+        int chunkCount() {
+            return chunks.length;
+        }
+
+        @Override
+        int chunkLength(int chunk) {
+            return chunks[chunk].length;
+        }
+
+        @Override
+        void resize(int chunk, int length) {
+            if (chunk >= chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunk + 1);
+                chunks[chunk] = new float[length];
+            } else {
+                chunks[chunk] = Arrays.copyOf(chunks[chunk], length);
+            }
+        }
+
+        @Override
+        void clear() {
+            chunks = new float[0][];
+        }
+    }
+
+    private static final class DirectStorage extends Storage {
+        private FloatBuffer[] chunks = new FloatBuffer[0];
+
+        @Override
+        float get(long index) {
+            return chunks[(int) (index >>> CHUNK_SHIFT)].get((int) (index & (CHUNK_SIZE - 1)));
+        }
+
+        @Override
+        void set(long index, float value) {
+            chunks[(int) (index >>> CHUNK_SHIFT)].put((int) (index & (CHUNK_SIZE - 1)), value);
+        }
+
+        @Override
+        int chunkCount() {
+            return chunks.length;
+        }
+
+        @Override
+        int chunkLength(int chunk) {
+            return chunks[chunk].capacity();
+        }
+
+        @Override
+        void resize(int chunk, int length) {
+            FloatBuffer buffer = ByteBuffer.allocateDirect(length * Float.BYTES)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+            if (chunk >= chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunk + 1);
+            } else {
+                FloatBuffer old = chunks[chunk].duplicate();
+                old.clear();
+                buffer.put(old);
+                buffer.clear();
+            }
+            chunks[chunk] = buffer;
+        }
+
+        @Override
+        void clear() {
+            // The direct buffers are released when collected
+            chunks = new FloatBuffer[0];
+        }
+    }
+}
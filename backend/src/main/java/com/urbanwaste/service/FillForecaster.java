@@ -0,0 +1,204 @@
+package com.urbanwaste.service;
+
+import com.urbanwaste.model.PointCollecte;
+import com.urbanwaste.util.TimeSeriesStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Predicts when each collection point will reach a fill threshold.
+ *
+ * Every reading updates, in constant time, an exponentially weighted moving average of
+ * the point's fill rate (% per hour), plus one such average per weekday so that busy
+ * days (markets, week-ends) fill faster than quiet ones. The averages are time weighted:
+ * a reading after a long gap counts more than one a minute after the previous. A drop
+ * of the level (the bin was emptied) starts a new filling cycle without feeding a
+ * negative rate.
+ *
+ * The forecast walks forward from the last reading one day at a time with that
+ * weekday's rate (the overall rate while a weekday has too little data). The models
+ * are kept in memory and rebuilt from the fill-level history the first time a point is
+ * needed after a restart.
+ */
+@Service
+public class FillForecaster {
+
+    // Level drop (points of %) taken as an emptying rather than sensor noise
+    private static final float EMPTIED_DROP = 5f;
+    // Hours of data a weekday needs before its own rate is trusted
+    private static final double MIN_WEEKDAY_HOURS = 6;
+    // Forecasts never look further than this
+    private static final Duration MAX_HORIZON = Duration.ofDays(60);
+
+    @Autowired
+    private FillHistoryService fillHistoryService;
+
+    // Time constant of the moving averages: older rates weigh e^-1 after this many hours
+    @Value("${urbanwaste.forecast.ewma-hours:48}")
+    private double ewmaHours;
+
+    @Value("${urbanwaste.forecast.warmup-days:14}")
+    private int warmupDays;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private final Map<Integer, Model> models = new ConcurrentHashMap<>();
+
+    /**
+     * Feed one reading (O(1)). Readings older than the last one seen are ignored.
+     */
+    public void observe(int pointId, Date measuredAt, float level) {
+        model(pointId).observe(Math.floorDiv(measuredAt.getTime(), 1000L), level);
+    }
+
+    /**
+     * Forecast for one point; predictedFullAt is null when the threshold is not reached
+     * within the horizon (or the fill rate is still unknown)
+     */
+    public Map<String, Object> forecast(PointCollecte point, float threshold, Duration horizon) {
+        Model model = model(point.getId());
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("pointId", point.getId());
+        body.put("localisation", point.getLocalisation());
+        body.put("niveauRemplissage", point.getNiveauRemplissage());
+        synchronized (model) {
+            Instant now = Instant.now();
+            Instant limit = now.plus(horizon.compareTo(MAX_HORIZON) > 0 ? MAX_HORIZON : horizon);
+            Instant fullAt;
+            if (point.getNiveauRemplissage() >= threshold) {
+                // Already critical: since the reading that showed it, or now if unknown
+                fullAt = model.lastTs != Long.MIN_VALUE && model.lastLevel >= threshold
+                    ? Instant.ofEpochSecond(model.lastTs) : now;
+            } else {
+                fullAt = model.predict(threshold, limit);
+            }
+            body.put("ratePerHour", model.hasRate ? Math.round(model.rate * 1000) / 1000.0 : null);
+            body.put("lastReadingAt", model.lastTs != Long.MIN_VALUE ? new Date(model.lastTs * 1000L) : null);
+            body.put("predictedFullAt", fullAt != null ? Date.from(fullAt) : null);
+        }
+        return body;
+    }
+
+    /**
+     * Those of the points expected to reach the threshold within the horizon (including
+     * those already above it), soonest first
+     */
+    public List<Map<String, Object>> forecastAll(List<PointCollecte> points, float threshold, Duration horizon) {
+        Instant limit = Instant.now().plus(horizon);
+        List<Map<String, Object>> due = new ArrayList<>();
+        for (PointCollecte point : points) {
+            Map<String, Object> forecast = forecast(point, threshold, horizon);
+            Date fullAt = (Date) forecast.get("predictedFullAt");
+            if (fullAt != null && !fullAt.toInstant().isAfter(limit)) {
+                due.add(forecast);
+            }
+        }
+        due.sort(Comparator.comparing(f -> (Date) f.get("predictedFullAt")));
+        return due;
+    }
+
+    // Model of a point, rebuilt from the recorded history on first use
+    private Model model(int pointId) {
+        return models.computeIfAbsent(pointId, id -> {
+            Model model = new Model();
+            Instant now = Instant.now();
+            for (TimeSeriesStore.Sample sample : fillHistoryService.getReadings(id, now.minus(Duration.ofDays(warmupDays)), now)) {
+                model.observe(sample.getEpochSecond(), sample.getAverage());
+            }
+            return model;
+        });
+    }
+
+    private int weekday(long epochSecond) {
+        int offset = zone.getRules().getOffset(Instant.ofEpochSecond(epochSecond)).getTotalSeconds();
+        long day = Math.floorDiv(epochSecond + offset, 86400L);
+        // 1970-01-01 was a Thursday: index 0 = Monday
+        return (int) Math.floorMod(day + 3, 7L);
+    }
+
+    // Start of the next local day after the given instant
+    private long nextMidnight(long epochSecond) {
+        ZoneOffset offset = zone.getRules().getOffset(Instant.ofEpochSecond(epochSecond));
+        long local = epochSecond + offset.getTotalSeconds();
+        return (Math.floorDiv(local, 86400L) + 1) * 86400L - offset.getTotalSeconds();
+    }
+
+    /**
+     * Fill-rate estimate of one point. Guarded by its own monitor.
+     */
+    private final class Model {
+        long lastTs = Long.MIN_VALUE;
+        float lastLevel;
+        boolean hasRate;
+        double rate;
+        // Decayed sums of rate x weight and of weight: their ratio is the average without
+        // the bias towards the first readings that a plain EWMA started at 0 would have
+        double rateSum;
+        double weightSum;
+        final double[] weekdayRateSum = new double[7];
+        final double[] weekdayWeightSum = new double[7];
+        final double[] weekdayHours = new double[7];
+
+        synchronized void observe(long ts, float level) {
+            if (ts <= lastTs) {
+                return;
+            }
+            if (lastTs != Long.MIN_VALUE && level >= lastLevel - EMPTIED_DROP) {
+                double hours = (ts - lastTs) / 3600.0;
+                double observed = (level - lastLevel) / hours;
+                double decay = Math.exp(-hours / ewmaHours);
+                rateSum = rateSum * decay + observed * (1 - decay);
+                weightSum = weightSum * decay + (1 - decay);
+                rate = rateSum / weightSum;
+                hasRate = true;
+
+                int day = weekday(lastTs + (ts - lastTs) / 2);
+                weekdayRateSum[day] = weekdayRateSum[day] * decay + observed * (1 - decay);
+                weekdayWeightSum[day] = weekdayWeightSum[day] * decay + (1 - decay);
+                weekdayHours[day] += hours;
+            }
+            lastTs = ts;
+            lastLevel = level;
+        }
+
+        double rateOn(int day) {
+            double r = weekdayHours[day] >= MIN_WEEKDAY_HOURS ? weekdayRateSum[day] / weekdayWeightSum[day] : rate;
+            return Math.max(r, 0);
+        }
+
+        // When the level reaches threshold, walking day by day from the last reading; null past limit
+        Instant predict(float threshold, Instant limit) {
+            if (!hasRate || lastTs == Long.MIN_VALUE) {
+                return null;
+            }
+            double level = lastLevel;
+            long t = lastTs;
+            long end = limit.getEpochSecond();
+            while (t <= end) {
+                long boundary = nextMidnight(t);
+                double r = rateOn(weekday(t));
+                double hours = (boundary - t) / 3600.0;
+                if (r > 0 && level + r * hours >= threshold) {
+                    long at = t + Math.round((threshold - level) / r * 3600);
+                    return at <= end ? Instant.ofEpochSecond(at) : null;
+                }
+                level += r * hours;
+                t = boundary;
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.urbanwaste.service;
+
+import com.urbanwaste.util.TimeSeriesStore;
+import com.urbanwaste.util.TimeSeriesStore.Resolution;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fill-level history of the collection points: every reading is kept in a
+ * {@link TimeSeriesStore} next to the XML data, with hourly and daily rollups
+ * for long ranges.
+ */
+@Service
+public class FillHistoryService {
+
+    @Value("${urbanwaste.history.dir:src/main/resources/data/history}")
+    private String directory;
+
+    @Value("${urbanwaste.history.segment-mb:64}")
+    private int segmentMb;
+
+    @Value("${urbanwaste.history.head-mb:32}")
+    private int headMb;
+
+    @Value("${urbanwaste.history.chunk-samples:512}")
+    private int chunkSamples;
+
+    // Null when the store could not be opened: recording is then skipped
+    private TimeSeriesStore store;
+
+    @PostConstruct
+    public void init() {
+        try {
+            store = new TimeSeriesStore(new File(directory), "fill-levels",
+                segmentMb << 20, headMb << 20, chunkSamples);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[FillHistoryService] History disabled, cannot open " + directory + ": " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    public boolean isAvailable() {
+        return store != null;
+    }
+
+    /**
+     * Record a fill level measured at the given time. Readings older than the last one
+     * recorded for the point are ignored.
+     */
+    public void record(int pointId, Date measuredAt, float level) {
+        if (store != null) {
+            store.append(pointId, Math.floorDiv(measuredAt.getTime(), 1000L), level);
+        }
+    }
+
+    /**
+     * History of a point between two instants. step is "raw", "1h", "1d" or null to pick
+     * one from the length of the range (raw up to 2 days, hourly up to 60 days, daily beyond).
+     */
+    public Map<String, Object> getHistory(int pointId, Instant from, Instant to, String step) {
+        Resolution resolution = step == null ? autoResolution(from, to) : parseStep(step);
+        long fromSecond = resolution.bucketStart(from.getEpochSecond());
+        List<Map<String, Object>> samples = new ArrayList<>();
+        for (TimeSeriesStore.Sample sample : store.query(pointId, resolution, fromSecond, to.getEpochSecond())) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("timestamp", new Date(sample.getEpochSecond() * 1000L));
+            if (resolution == Resolution.RAW) {
+                entry.put("level", sample.getAverage());
+            } else {
+                entry.put("avg", sample.getAverage());
+                entry.put("min", sample.getMin());
+                entry.put("max", sample.getMax());
+                entry.put("count", sample.getCount());
+            }
+            samples.add(entry);
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("pointId", pointId);
+        body.put("from", Date.from(from));
+        body.put("to", Date.from(to));
+        body.put("step", stepName(resolution));
+        body.put("samples", samples);
+        return body;
+    }
+
+    /**
+     * Raw readings of a point recorded in [from, to], oldest first (empty when the
+     * history is not available)
+     */
+    public List<TimeSeriesStore.Sample> getReadings(int pointId, Instant from, Instant to) {
+        if (store == null) {
+            return List.of();
+        }
+        return store.query(pointId, Resolution.RAW, from.getEpochSecond(), to.getEpochSecond());
+    }
+
+    /**
+     * Size and compression of the history store
+     */
+    public Map<String, Object> getStats() {
+        return store != null ? store.getStats() : Map.of("available", false);
+    }
+
+    private static Resolution autoResolution(Instant from, Instant to) {
+        Duration range = Duration.between(from, to);
+        if (range.compareTo(Duration.ofDays(2)) <= 0) {
+            return Resolution.RAW;
+        }
+        return range.compareTo(Duration.ofDays(60)) <= 0 ? Resolution.HOUR : Resolution.DAY;
+    }
+
+    private static Resolution parseStep(String step) {
+        switch (step.toLowerCase()) {
+            case "raw":
+                return Resolution.RAW;
+            case "1h":
+            case "hour":
+                return Resolution.HOUR;
+            case "1d":
+            case "day":
+                return Resolution.DAY;
+            default:
+                throw new IllegalArgumentException("Unknown step '" + step + "' (expected raw, 1h or 1d)");
+        }
+    }
+
+    private static String stepName(Resolution resolution) {
+        switch (resolution) {
+            case HOUR:
+                return "1h";
+            case DAY:
+                return "1d";
+            default:
+                return "raw";
+        }
+    }
+}
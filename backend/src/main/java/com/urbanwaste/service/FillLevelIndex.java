@@ -0,0 +1,103 @@
+package com.urbanwaste.service;
+
+import com.urbanwaste.model.PointCollecte;
+import com.urbanwaste.util.EntityStore;
+import com.urbanwaste.util.IntObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Collection points sorted by fill level, fullest first, following the commits of the
+ * points store. "Points above X" and "the K fullest" walk only the entries they return;
+ * a fill-level change is a removal and an insertion in the skip list, O(log n).
+ *
+ * Readers iterate the skip list without locking: while a point is being moved they may
+ * miss it, never see it twice.
+ */
+class FillLevelIndex implements EntityStore.Listener<PointCollecte> {
+
+    // Fullest first; the id breaks ties so that every point has its own entry
+    private static final Comparator<Entry> ORDER = Comparator
+        .comparingDouble((Entry e) -> e.level).reversed()
+        .thenComparingInt(e -> e.id);
+
+    private final ConcurrentSkipListSet<Entry> sorted = new ConcurrentSkipListSet<>(ORDER);
+
+    // Entry of each point, to find it again on update; only touched by the store's writer
+    private final IntObjectHashMap<Entry> byId = new IntObjectHashMap<>();
+
+    @Override
+    public synchronized void loaded(List<PointCollecte> points) {
+        sorted.clear();
+        byId.clear();
+        for (PointCollecte point : points) {
+            add(point);
+        }
+    }
+
+    @Override
+    public synchronized void changed(PointCollecte before, PointCollecte after) {
+        Entry previous = byId.remove(after != null ? after.getId() : before.getId());
+        if (previous != null) {
+            sorted.remove(previous);
+        }
+        if (after != null) {
+            add(after);
+        }
+    }
+
+    private void add(PointCollecte point) {
+        Entry entry = new Entry(point);
+        byId.put(point.getId(), entry);
+        sorted.add(entry);
+    }
+
+    /**
+     * Points with a fill level strictly above the threshold, fullest first
+     */
+    List<PointCollecte> above(float threshold) {
+        // Sorts before every entry at the threshold level, after every fuller one
+        Entry bound = new Entry(threshold, Integer.MIN_VALUE);
+        List<PointCollecte> result = new ArrayList<>();
+        for (Entry entry : sorted.headSet(bound)) {
+            result.add(entry.point);
+        }
+        return result;
+    }
+
+    /**
+     * The k fullest points
+     */
+    List<PointCollecte> fullest(int k) {
+        List<PointCollecte> result = new ArrayList<>(Math.max(0, Math.min(k, 1024)));
+        for (Entry entry : sorted) {
+            if (result.size() >= k) {
+                break;
+            }
+            result.add(entry.point);
+        }
+        return result;
+    }
+
+    private static final class Entry {
+        final float level;
+        final int id;
+        final PointCollecte point;
+
+        Entry(PointCollecte point) {
+            this.level = point.getNiveauRemplissage();
+            this.id = point.getId();
+            this.point = point;
+        }
+
+        // Search bound only
+        Entry(float level, int id) {
+            this.level = level;
+            this.id = id;
+            this.point = null;
+        }
+    }
+}
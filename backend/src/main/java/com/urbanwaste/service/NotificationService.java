@@ -2,6 +2,8 @@ package com.urbanwaste.service;
 
 import com.urbanwaste.model.Notification;
 import com.urbanwaste.model.NotificationsWrapper;
+import com.urbanwaste.util.EntityStore;
+import com.urbanwaste.util.SecondaryIndex;
 import com.urbanwaste.util.XMLHandler;
 import com.urbanwaste.exception.XMLValidationException;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,11 +11,11 @@ import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.xml.bind.JAXBException;
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
 
 @Service
 public class NotificationService {
@@ -23,17 +25,25 @@ public class NotificationService {
     @Autowired
     private XMLHandler xmlHandler;
     
+    private EntityStore<NotificationsWrapper, Notification> store;
+    
     private AtomicInteger idCounter = new AtomicInteger(1);
     
+    private SecondaryIndex<Notification> indexes;
+    
     @PostConstruct
     public void init() {
+        store = xmlHandler.getStore(NOTIFICATIONS_FILE, NotificationsWrapper.class,
+            NotificationsWrapper::getNotifications, NotificationsWrapper::setNotifications, Notification::getId, Notification::copy);
+        // Roles are matched exactly, as before
+        indexes = new SecondaryIndex<>(store, Notification::getId)
+            .on("roleCible", Notification::getRoleCible, false)
+            .on("lue", Notification::isLue, false)
+            .attach();
+        
         if (xmlHandler.fileExists(NOTIFICATIONS_FILE)) {
             try {
-                List<Notification> notifications = getAllNotifications();
-                if (!notifications.isEmpty()) {
-                    int maxId = notifications.stream().mapToInt(Notification::getId).max().orElse(0);
-                    idCounter.set(maxId + 1);
-                }
+                idCounter.set(store.maxId() + 1);
             } catch (JAXBException e) {
                 System.err.println("Failed to load existing notifications: " + e.getMessage());
             }
@@ -44,58 +54,42 @@ public class NotificationService {
      * Get all notifications
      */
     public List<Notification> getAllNotifications() throws JAXBException {
-        NotificationsWrapper wrapper = xmlHandler.loadFromXML(NOTIFICATIONS_FILE, NotificationsWrapper.class);
-        if (wrapper == null || wrapper.getNotifications() == null) {
-            return new ArrayList<>();
-        }
-        return new ArrayList<>(wrapper.getNotifications());
+        return store.getAll();
     }
     
     /**
      * Get notifications by target role
      */
     public List<Notification> getNotificationsByRole(String role) throws JAXBException {
-        return getAllNotifications().stream()
-            .filter(n -> role.equals(n.getRoleCible()))
-            .collect(Collectors.toList());
+        return indexes.find("roleCible", role);
     }
     
     /**
      * Get unread notifications by role
      */
     public List<Notification> getUnreadNotificationsByRole(String role) throws JAXBException {
-        return getAllNotifications().stream()
-            .filter(n -> role.equals(n.getRoleCible()) && !n.isLue())
-            .collect(Collectors.toList());
+        return indexes.find(Map.of("roleCible", role, "lue", false));
     }
     
     /**
      * Create a new notification
      */
-    public synchronized Notification createNotification(Notification notification) throws JAXBException, XMLValidationException {
-        NotificationsWrapper wrapper = xmlHandler.loadFromXML(NOTIFICATIONS_FILE, NotificationsWrapper.class);
-        List<Notification> notifications = wrapper != null && wrapper.getNotifications() != null 
-            ? new ArrayList<>(wrapper.getNotifications()) 
-            : new ArrayList<>();
-        
-        notification.setId(idCounter.getAndIncrement());
-        if (notification.getDateCreation() == null) {
-            notification.setDateCreation(new Date());
-        }
-        
-        notifications.add(notification);
-        
-        NotificationsWrapper newWrapper = new NotificationsWrapper();
-        newWrapper.setNotifications(notifications);
-        xmlHandler.saveToXML(newWrapper, NOTIFICATIONS_FILE);
-        
-        return notification;
+    public Notification createNotification(Notification notification) throws JAXBException, XMLValidationException {
+        return store.write(tx -> {
+            notification.setId(idCounter.getAndIncrement());
+            if (notification.getDateCreation() == null) {
+                notification.setDateCreation(new Date());
+            }
+            
+            tx.put(notification);
+            return notification;
+        });
     }
     
     /**
      * Create a vehicle breakdown notification for technicians
      */
-    public synchronized Notification createVehicleBreakdownNotification(int vehiculeId, String immatriculation) throws JAXBException, XMLValidationException {
+    public Notification createVehicleBreakdownNotification(int vehiculeId, String immatriculation) throws JAXBException, XMLValidationException {
         Notification notification = new Notification();
         notification.setTitre("Véhicule en panne");
         notification.setMessage("Le véhicule " + immatriculation + " (ID: " + vehiculeId + ") est en panne et nécessite une intervention.");
@@ -109,23 +103,16 @@ public class NotificationService {
     /**
      * Mark notification as read
      */
-    public synchronized boolean markAsRead(int notificationId) throws JAXBException, XMLValidationException {
-        NotificationsWrapper wrapper = xmlHandler.loadFromXML(NOTIFICATIONS_FILE, NotificationsWrapper.class);
-        List<Notification> notifications = wrapper != null && wrapper.getNotifications() != null 
-            ? new ArrayList<>(wrapper.getNotifications()) 
-            : new ArrayList<>();
-        
-        for (Notification notification : notifications) {
-            if (notification.getId() == notificationId) {
-                notification.setLue(true);
-                NotificationsWrapper newWrapper = new NotificationsWrapper();
-                newWrapper.setNotifications(notifications);
-                xmlHandler.saveToXML(newWrapper, NOTIFICATIONS_FILE);
-                return true;
+    public boolean markAsRead(int notificationId) throws JAXBException, XMLValidationException {
+        return store.write(tx -> {
+            Optional<Notification> existing = tx.edit(notificationId);
+            if (existing.isEmpty()) {
+                return false;
             }
-        }
-        
-        return false;
+            
+            existing.get().setLue(true);
+            return true;
+        });
     }
 }
 
@@ -0,0 +1,216 @@
+package com.urbanwaste.service;
+
+import com.urbanwaste.model.Utilisateur;
+import com.urbanwaste.util.EntityStore;
+import com.urbanwaste.util.PasswordHasher;
+import com.urbanwaste.exception.XMLValidationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.xml.bind.JAXBException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Password hashing and verification for the user accounts.
+ *
+ * Hashing is deliberately slow, so it runs on a dedicated pool of verifier threads with
+ * a bounded queue: at most that many hashes are computed at once whatever the number of
+ * request threads, and a login beyond the queue is refused (RejectedExecutionException)
+ * instead of piling up. Passwords still stored in clear are hashed when the store is
+ * opened ({@link #migrate}) and, failing that, at the next successful login.
+ */
+@Service
+public class PasswordService {
+
+    // PBKDF2 work factor; see the PasswordHasherBenchmark to size it for a target latency
+    @Value("${urbanwaste.passwords.pbkdf2-iterations:210000}")
+    private int iterations;
+
+    // Hashing threads; 0 means one per available processor
+    @Value("${urbanwaste.passwords.verifier-threads:0}")
+    private int verifierThreads;
+
+    // Hashes waiting for a thread before new ones are refused
+    @Value("${urbanwaste.passwords.verifier-queue:256}")
+    private int verifierQueue;
+
+    // Hash the clear passwords of each user file when it is opened
+    @Value("${urbanwaste.passwords.migrate-on-startup:true}")
+    private boolean migrateOnStartup;
+
+    private PasswordHasher hasher;
+
+    private ThreadPoolExecutor verifiers;
+
+    // Verified when the mail is unknown, so that a failed login costs the same either way
+    private String decoyHash;
+
+    @PostConstruct
+    public void init() {
+        hasher = new PasswordHasher(iterations);
+        int threads = verifierThreads > 0 ? verifierThreads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger count = new AtomicInteger();
+        verifiers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, verifierQueue)), r -> {
+                Thread thread = new Thread(r, "password-verifier-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        decoyHash = hasher.hash(Long.toHexString(System.nanoTime()));
+        System.out.println("[PasswordService] PBKDF2 with " + iterations + " iterations, " + threads + " verifier threads");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        verifiers.shutdownNow();
+    }
+
+    /**
+     * Value to store for a password given by a client: its hash
+     */
+    public String encode(String password) {
+        if (password == null) {
+            return null;
+        }
+        return await(() -> hasher.hash(password));
+    }
+
+    /**
+     * Check a password against a stored value (null for an unknown account, which never
+     * matches but takes as long)
+     */
+    public Verification verify(String password, String stored) {
+        return await(() -> {
+            if (stored == null) {
+                hasher.matches(password != null ? password : "", decoyHash);
+                return new Verification(false, null);
+            }
+            boolean matched = hasher.matches(password, stored);
+            // The password is known only now: the moment to upgrade its hash
+            String rehashed = matched && hasher.needsRehash(stored) ? hasher.hash(password) : null;
+            return new Verification(matched, rehashed);
+        });
+    }
+
+    /**
+     * Store the new hash of a user's password, unless the password changed since it was
+     * verified. The store must have a copier.
+     */
+    <T extends Utilisateur> boolean replaceHash(EntityStore<?, T> store, int id, String verified, String rehashed)
+            throws JAXBException, XMLValidationException {
+        return store.write(tx -> {
+            Optional<T> current = tx.find(id);
+            if (current.isEmpty() || !Objects.equals(current.get().getPassword(), verified)) {
+                return false;
+            }
+            tx.edit(id).get().setPassword(rehashed);
+            return true;
+        });
+    }
+
+    /**
+     * Hash every password of the store still saved in clear; returns how many were.
+     * The hashes are computed on the verifier threads before the store is locked.
+     * The store must have a copier.
+     */
+    <T extends Utilisateur> int migrate(EntityStore<?, T> store) throws JAXBException, XMLValidationException {
+        if (!migrateOnStartup) {
+            return 0;
+        }
+        List<T> clear = new ArrayList<>();
+        for (T user : store.getAll()) {
+            if (user.getPassword() != null && !PasswordHasher.isHashed(user.getPassword())) {
+                clear.add(user);
+            }
+        }
+        if (clear.isEmpty()) {
+            return 0;
+        }
+        // In windows of the queue size, so the migration is never refused by a full queue
+        int window = Math.max(1, verifierQueue);
+        String[] computed = new String[clear.size()];
+        for (int from = 0; from < clear.size(); from += window) {
+            List<Future<String>> hashes = new ArrayList<>();
+            for (int i = from; i < Math.min(clear.size(), from + window); i++) {
+                String password = clear.get(i).getPassword();
+                hashes.add(submit(() -> hasher.hash(password)));
+            }
+            for (int i = 0; i < hashes.size(); i++) {
+                computed[from + i] = get(hashes.get(i));
+            }
+        }
+        int migrated = store.write(tx -> {
+            int n = 0;
+            for (int i = 0; i < clear.size(); i++) {
+                T user = clear.get(i);
+                // Skip a user changed meanwhile; their next login finishes the job
+                if (tx.find(user.getId()).orElse(null) == user) {
+                    tx.edit(user.getId()).get().setPassword(computed[i]);
+                    n++;
+                }
+            }
+            return n;
+        });
+        System.out.println("[PasswordService] Hashed " + migrated + " clear password(s) in " + store.getFileName());
+        return migrated;
+    }
+
+    // Waits for the result: the calling request thread takes no part in the hashing
+    private <R> R await(Callable<R> task) {
+        return get(submit(task));
+    }
+
+    // Throws RejectedExecutionException when the queue is full
+    private <R> Future<R> submit(Callable<R> task) {
+        return verifiers.submit(task);
+    }
+
+    private static <R> R get(Future<R> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing a password", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    /**
+     * Outcome of a verification: whether it matched, and the new hash to store when the
+     * stored one is outdated (null otherwise)
+     */
+    public static final class Verification {
+        private final boolean matched;
+        private final String rehashed;
+
+        Verification(boolean matched, String rehashed) {
+            this.matched = matched;
+            this.rehashed = rehashed;
+        }
+
+        public boolean isMatched() {
+            return matched;
+        }
+
+        public String getRehashed() {
+            return rehashed;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.urbanwaste.service;
+
+import com.urbanwaste.model.PointCollecte;
+import com.urbanwaste.util.EntityStore;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Running aggregates of the collection points (counts per state, critical count, fill
+ * sum), kept up to date from the commits of the points store so that reading them does
+ * not walk the points.
+ *
+ * Fill levels are summed as hundredths in a long: adding and removing the same point any
+ * number of times leaves no floating-point drift.
+ */
+class PointStatistics implements EntityStore.Listener<PointCollecte> {
+
+    private final float criticalThreshold;
+
+    // Guarded by this
+    private int total;
+    private int critical;
+    private long fillSumHundredths;
+    private final Map<String, Integer> byState = new HashMap<>();
+
+    PointStatistics(float criticalThreshold) {
+        this.criticalThreshold = criticalThreshold;
+    }
+
+    @Override
+    public synchronized void loaded(List<PointCollecte> points) {
+        total = 0;
+        critical = 0;
+        fillSumHundredths = 0;
+        byState.clear();
+        for (PointCollecte point : points) {
+            count(point, 1);
+        }
+    }
+
+    @Override
+    public synchronized void changed(PointCollecte before, PointCollecte after) {
+        if (before != null) {
+            count(before, -1);
+        }
+        if (after != null) {
+            count(after, 1);
+        }
+    }
+
+    private void count(PointCollecte point, int sign) {
+        total += sign;
+        if (point.getNiveauRemplissage() > criticalThreshold) {
+            critical += sign;
+        }
+        fillSumHundredths += sign * Math.round(point.getNiveauRemplissage() * 100.0);
+        // A state whose count falls to zero is dropped
+        byState.merge(String.valueOf(point.getEtatConteneur()), sign, (a, b) -> a + b == 0 ? null : a + b);
+    }
+
+    /**
+     * The dashboard statistics (same keys as when they were computed per request), plus
+     * the count of every state in parEtat
+     */
+    synchronized Map<String, Object> toMap() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("total", total);
+        stats.put("actifs", (long) byState.getOrDefault("ACTIF", 0));
+        stats.put("maintenance", (long) byState.getOrDefault("MAINTENANCE", 0));
+        stats.put("horsService", (long) byState.getOrDefault("HORS_SERVICE", 0));
+        stats.put("critiques", (long) critical);
+        double avgFill = total == 0 ? 0.0 : fillSumHundredths / 100.0 / total;
+        stats.put("remplissageMoyen", Math.round(avgFill * 100) / 100.0);
+        stats.put("parEtat", new TreeMap<>(byState));
+        return stats;
+    }
+
+    /**
+     * The same statistics computed from scratch over the given points
+     */
+    Map<String, Object> recompute(List<PointCollecte> points) {
+        PointStatistics fresh = new PointStatistics(criticalThreshold);
+        fresh.loaded(points);
+        return fresh.toMap();
+    }
+}
@@ -0,0 +1,340 @@
+package com.urbanwaste.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.urbanwaste.model.PointCollecte;
+import com.urbanwaste.model.Tournee;
+import com.urbanwaste.model.Zone;
+import com.urbanwaste.util.EntityStore;
+import com.urbanwaste.util.IntObjectHashMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.xml.bind.JAXBException;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Weekly collection schedule of each zone asked for on the public site, kept ready to
+ * serve: day -> waste type -> start times, rendered once to JSON with its ETag.
+ *
+ * A zone's schedule is computed from the routes on its first request, then maintained
+ * from the commits of the routes store: a route change only touches the zones that
+ * route matches (before or after the change), and their JSON is rendered again on the
+ * next request. Serving a known zone is a map lookup returning the same bytes.
+ *
+ * A route belongs to a zone when any of its points does, and it contributes the waste
+ * types of all its points. For a defined zone that is the point-to-zone assignment; the
+ * schedule is rebuilt when the assignment changed (a point moved, a boundary was edited).
+ * Any other text matches the localisations containing it (case-insensitive), as before.
+ */
+@Service
+public class PublicScheduleCache implements EntityStore.Listener<Tournee> {
+
+    private static final String[] DAY_NAMES = {"Lundi", "Mardi", "Mercredi", "Jeudi", "Vendredi", "Samedi", "Dimanche"};
+
+    @Autowired
+    private RouteService routeService;
+
+    @Autowired
+    private CollectionPointService collectionPointService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Zones kept; the least recently requested one is dropped beyond that
+    @Value("${urbanwaste.public-schedules.max-zones:1024}")
+    private int maxZones;
+
+    private final ZoneId timeZone = ZoneId.systemDefault();
+
+    // Lock-free for readers; entries are changed under this object's monitor
+    private final ConcurrentHashMap<String, ZoneSchedule> zones = new ConcurrentHashMap<>();
+    // Commits seen so far, to detect one landing while a zone is being built. Guarded by this.
+    private long commits;
+
+    @PostConstruct
+    public void init() {
+        routeService.addListener(this);
+    }
+
+    /**
+     * Rendered schedule of a zone: a defined zone (name or id), else text matched
+     * case-insensitively against the localisations
+     */
+    public View get(String zone) throws JAXBException {
+        Optional<Zone> defined = collectionPointService.resolveZone(zone);
+        String key = defined.isPresent()
+            ? "zone:" + defined.get().getId() : "text:" + zone.trim().toLowerCase(Locale.ROOT);
+        ZoneSchedule schedule = zones.get(key);
+        if (schedule == null || isStale(schedule)) {
+            schedule = build(key, defined.map(Zone::getId).orElse(null));
+        }
+        schedule.lastAccess = System.nanoTime();
+        View view = schedule.view;
+        if (view == null) {
+            synchronized (this) {
+                view = schedule.view;
+                if (view == null) {
+                    view = render(schedule);
+                    schedule.view = view;
+                }
+            }
+        }
+        return view;
+    }
+
+    @Override
+    public synchronized void loaded(List<Tournee> routes) {
+        // Rebuilt from the new state on demand
+        commits++;
+        zones.clear();
+    }
+
+    @Override
+    public synchronized void changed(Tournee before, Tournee after) {
+        commits++;
+        int id = after != null ? after.getId() : before.getId();
+        long now = System.currentTimeMillis();
+        for (ZoneSchedule schedule : zones.values()) {
+            boolean touched = schedule.remove(id);
+            if (after != null && schedule.matches(after)) {
+                schedule.add(after, dayOf(after));
+                touched = true;
+            }
+            if (touched) {
+                schedule.lastModified = now;
+                schedule.view = null;
+            }
+        }
+    }
+
+    public int size() {
+        return zones.size();
+    }
+
+    // The points of a defined zone changed since its schedule was built
+    private boolean isStale(ZoneSchedule schedule) {
+        return schedule.members != null
+            && schedule.assignmentVersion != collectionPointService.getZoneAssignment().getVersion();
+    }
+
+    private ZoneSchedule build(String key, Integer zoneId) throws JAXBException {
+        while (true) {
+            long seen;
+            synchronized (this) {
+                ZoneSchedule existing = zones.get(key);
+                if (existing != null && !isStale(existing)) {
+                    return existing;
+                }
+                seen = commits;
+            }
+            // Scanned without the monitor: the store calls the listener with its own lock
+            // held, so waiting for the store here could deadlock
+            ZoneSchedule schedule = zoneId != null
+                ? new ZoneSchedule(null, collectionPointService.getZoneAssignment().getVersion(),
+                    collectionPointService.getPointIdsInZone(zoneId))
+                : new ZoneSchedule(key.substring("text:".length()), 0, null);
+            for (Tournee route : routeService.getAllRoutes()) {
+                if (schedule.matches(route)) {
+                    schedule.add(route, dayOf(route));
+                }
+            }
+            synchronized (this) {
+                // A commit listened to meanwhile may be missing from the scan: start over.
+                // One published but not yet listened to is applied on top by changed().
+                if (commits != seen) {
+                    continue;
+                }
+                schedule.lastModified = System.currentTimeMillis();
+                if (zones.size() >= maxZones) {
+                    evictLeastRecent();
+                }
+                zones.put(key, schedule);
+                return schedule;
+            }
+        }
+    }
+
+    private void evictLeastRecent() {
+        String oldest = null;
+        long oldestAccess = Long.MAX_VALUE;
+        for (Map.Entry<String, ZoneSchedule> entry : zones.entrySet()) {
+            if (entry.getValue().lastAccess < oldestAccess) {
+                oldestAccess = entry.getValue().lastAccess;
+                oldest = entry.getKey();
+            }
+        }
+        if (oldest != null) {
+            zones.remove(oldest);
+        }
+    }
+
+    // Called with the monitor held
+    private View render(ZoneSchedule schedule) {
+        List<Map<String, String>> rows = new ArrayList<>();
+        for (int day = 0; day < 7; day++) {
+            for (Map.Entry<String, TypeSlots> entry : schedule.days[day].entrySet()) {
+                Map<String, String> row = new LinkedHashMap<>();
+                row.put("day", DAY_NAMES[day]);
+                row.put("type", entry.getKey());
+                row.put("time", String.join(", ", entry.getValue().times.keySet()));
+                rows.add(row);
+            }
+        }
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(rows);
+            CRC32 crc = new CRC32();
+            crc.update(json);
+            // Derived from the content, so it stays valid across restarts
+            String etag = "\"" + Long.toHexString(crc.getValue()) + "-" + json.length + "\"";
+            return new View(json, etag, schedule.lastModified);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to render a zone schedule", e);
+        }
+    }
+
+    // 0 = Monday
+    private int dayOf(Tournee route) {
+        return route.getDatePlanifiee().toInstant().atZone(timeZone).getDayOfWeek().getValue() - 1;
+    }
+
+    /**
+     * Schedule of one zone as counts, so that a route can be taken out again
+     */
+    private static final class ZoneSchedule {
+        // Lower-cased text to find in a localisation, or null for a defined zone
+        final String text;
+        // Points of the defined zone, as assigned at that version of the assignment
+        final BitSet members;
+        final long assignmentVersion;
+        // Per day: waste type -> start times, in name order
+        @SuppressWarnings("unchecked")
+        final TreeMap<String, TypeSlots>[] days = new TreeMap[7];
+        // Contribution of each included route, to undo it when the route changes
+        final IntObjectHashMap<Contribution> included = new IntObjectHashMap<>();
+        long lastModified;
+        volatile long lastAccess = System.nanoTime();
+        volatile View view;
+
+        ZoneSchedule(String text, long assignmentVersion, BitSet members) {
+            this.text = text;
+            this.assignmentVersion = assignmentVersion;
+            this.members = members;
+            for (int day = 0; day < 7; day++) {
+                days[day] = new TreeMap<>();
+            }
+        }
+
+        // A route is in the zone when any of its points is
+        boolean matches(Tournee route) {
+            if (route.getDatePlanifiee() == null || route.getPointsCollecte() == null) {
+                return false;
+            }
+            for (PointCollecte point : route.getPointsCollecte()) {
+                boolean inZone = members != null
+                    ? point.getId() >= 0 && members.get(point.getId())
+                    : point.getLocalisation() != null && point.getLocalisation().toLowerCase(Locale.ROOT).contains(text);
+                if (inZone) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void add(Tournee route, int day) {
+            Set<String> types = new LinkedHashSet<>();
+            for (PointCollecte point : route.getPointsCollecte()) {
+                if (point.getTypeDechet() != null && point.getTypeDechet().getNom() != null) {
+                    types.add(point.getTypeDechet().getNom());
+                }
+            }
+            Contribution contribution = new Contribution(day, types, route.getHeureDebut());
+            included.put(route.getId(), contribution);
+            for (String type : types) {
+                TypeSlots slots = days[day].computeIfAbsent(type, t -> new TypeSlots());
+                slots.routes++;
+                if (contribution.time != null) {
+                    slots.times.merge(contribution.time, 1, Integer::sum);
+                }
+            }
+        }
+
+        // False if the route was not part of this zone
+        boolean remove(int routeId) {
+            Contribution contribution = included.remove(routeId);
+            if (contribution == null) {
+                return false;
+            }
+            TreeMap<String, TypeSlots> day = days[contribution.day];
+            for (String type : contribution.types) {
+                TypeSlots slots = day.get(type);
+                if (contribution.time != null) {
+                    slots.times.computeIfPresent(contribution.time, (t, n) -> n > 1 ? n - 1 : null);
+                }
+                if (--slots.routes == 0) {
+                    day.remove(type);
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class TypeSlots {
+        int routes;
+        // Start time -> number of routes at that time
+        final TreeMap<String, Integer> times = new TreeMap<>();
+    }
+
+    private static final class Contribution {
+        final int day;
+        final Set<String> types;
+        final String time;
+
+        Contribution(int day, Set<String> types, String time) {
+            this.day = day;
+            this.types = types;
+            this.time = time;
+        }
+    }
+
+    /**
+     * JSON body of a zone's schedule with its validators
+     */
+    public static final class View {
+        private final byte[] json;
+        private final String etag;
+        private final long lastModified;
+
+        View(byte[] json, String etag, long lastModified) {
+            this.json = json;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+}
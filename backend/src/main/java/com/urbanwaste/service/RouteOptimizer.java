@@ -0,0 +1,318 @@
+package com.urbanwaste.service;
+
+import com.urbanwaste.model.PointCollecte;
+import com.urbanwaste.util.GeoUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Orders the collection points of a tour to shorten the distance driven.
+ *
+ * The tour is an open path starting at its first point (the crew's starting point; there
+ * is no depot in the data). A nearest-neighbour construction is improved by 2-opt
+ * (segment reversal) and Or-opt (moving runs of 1-3 points) until no move helps or the
+ * time budget runs out, so large tours still answer within the latency target and
+ * return the best order found so far. Distances come from the {@link DistanceMatrix}.
+ *
+ * Points without coordinates cannot be placed; they keep their relative order at the end.
+ */
+@Service
+public class RouteOptimizer {
+
+    // Improvements smaller than this (km) are ignored, so rounding cannot make the search loop
+    private static final double EPSILON = 1e-9;
+    private static final int MAX_SEGMENT = 3;
+
+    @Value("${urbanwaste.routing.time-budget-ms:200}")
+    private long timeBudgetMs;
+
+    @Autowired
+    private DistanceMatrix distanceMatrix;
+
+    /**
+     * Optimize the visiting order of the points; the input list is not modified
+     */
+    public Result optimize(List<PointCollecte> points) {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeBudgetMs);
+
+        List<PointCollecte> located = new ArrayList<>();
+        List<PointCollecte> unlocated = new ArrayList<>();
+        for (PointCollecte point : points) {
+            (GeoUtils.isLocated(point) ? located : unlocated).add(point);
+        }
+
+        int n = located.size();
+        double[][] dist = distanceMatrix.distancesFor(located);
+
+        int[] identity = new int[n];
+        for (int i = 0; i < n; i++) {
+            identity[i] = i;
+        }
+        double initialKm = length(identity, dist);
+
+        int[] order = nearestNeighbour(dist);
+        Search search = new Search(order, dist, deadline);
+        search.run();
+
+        // Never hand back something longer than what the client sent
+        int[] best = length(search.order, dist) <= initialKm ? search.order : identity;
+        List<PointCollecte> ordered = new ArrayList<>(points.size());
+        for (int index : best) {
+            ordered.add(located.get(index));
+        }
+        ordered.addAll(unlocated);
+
+        return new Result(ordered, length(best, dist), initialKm, search.moves,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), search.budgetExhausted,
+            unlocated.size());
+    }
+
+    /**
+     * Total length of the open path visiting the points in the given order
+     */
+    static double length(int[] order, double[][] dist) {
+        double km = 0;
+        for (int i = 1; i < order.length; i++) {
+            km += dist[order[i - 1]][order[i]];
+        }
+        return km;
+    }
+
+    // Greedy construction from the first point: always drive to the closest unvisited one
+    private static int[] nearestNeighbour(double[][] dist) {
+        int n = dist.length;
+        int[] order = new int[n];
+        if (n == 0) {
+            return order;
+        }
+        boolean[] visited = new boolean[n];
+        visited[0] = true;
+        for (int pos = 1; pos < n; pos++) {
+            int last = order[pos - 1];
+            int next = -1;
+            for (int candidate = 1; candidate < n; candidate++) {
+                if (!visited[candidate] && (next < 0 || dist[last][candidate] < dist[last][next])) {
+                    next = candidate;
+                }
+            }
+            order[pos] = next;
+            visited[next] = true;
+        }
+        return order;
+    }
+
+    /**
+     * Local search state: the current order improved in place by 2-opt and Or-opt moves.
+     * Position 0 is the fixed start and never moves.
+     */
+    private static final class Search {
+        int[] order;
+        final double[][] dist;
+        final long deadline;
+        int moves;
+        boolean budgetExhausted;
+
+        Search(int[] order, double[][] dist, long deadline) {
+            this.order = order;
+            this.dist = dist;
+            this.deadline = deadline;
+        }
+
+        void run() {
+            boolean improved = order.length > 2;
+            while (improved && !timeUp()) {
+                improved = twoOpt();
+                improved |= !budgetExhausted && orOpt();
+            }
+        }
+
+        boolean timeUp() {
+            if (System.nanoTime() - deadline >= 0) {
+                budgetExhausted = true;
+            }
+            return budgetExhausted;
+        }
+
+        // Distance between the points at two positions; a missing successor (end of path) costs nothing
+        double d(int fromPos, int toPos) {
+            if (toPos >= order.length) {
+                return 0;
+            }
+            return dist[order[fromPos]][order[toPos]];
+        }
+
+        /**
+         * Reverse order[i..j] whenever that shortens the path (first improvement)
+         */
+        boolean twoOpt() {
+            boolean improved = false;
+            int n = order.length;
+            for (int i = 1; i < n - 1; i++) {
+                if (timeUp()) {
+                    return improved;
+                }
+                for (int j = i + 1; j < n; j++) {
+                    double before = d(i - 1, i) + d(j, j + 1);
+                    double after = dist[order[i - 1]][order[j]]
+                        + (j + 1 < n ? dist[order[i]][order[j + 1]] : 0);
+                    if (after < before - EPSILON) {
+                        reverse(i, j);
+                        moves++;
+                        improved = true;
+                    }
+                }
+            }
+            return improved;
+        }
+
+        /**
+         * Move a run of 1-3 consecutive points (possibly reversed) between two other points
+         */
+        boolean orOpt() {
+            boolean improved = false;
+            int n = order.length;
+            for (int len = 1; len <= MAX_SEGMENT; len++) {
+                for (int i = 1; i + len <= n; i++) {
+                    if (timeUp()) {
+                        return improved;
+                    }
+                    int last = i + len - 1;
+                    int first = order[i];
+                    int end = order[last];
+                    int prev = order[i - 1];
+                    boolean hasNext = last + 1 < n;
+                    double removeGain = dist[prev][first]
+                        + (hasNext ? dist[end][order[last + 1]] - dist[prev][order[last + 1]] : 0);
+
+                    int bestPos = -1;
+                    boolean bestReversed = false;
+                    double bestDelta = -EPSILON;
+                    for (int j = 0; j < n; j++) {
+                        if (j >= i - 1 && j <= last) {
+                            continue;
+                        }
+                        // Insert between order[j] and order[j + 1] (or after the last point)
+                        int x = order[j];
+                        boolean hasY = j + 1 < n;
+                        int y = hasY ? order[j + 1] : -1;
+                        double edge = hasY ? dist[x][y] : 0;
+                        double forward = dist[x][first] + (hasY ? dist[end][y] : 0) - edge;
+                        double backward = dist[x][end] + (hasY ? dist[first][y] : 0) - edge;
+                        if (forward - removeGain < bestDelta) {
+                            bestDelta = forward - removeGain;
+                            bestPos = j;
+                            bestReversed = false;
+                        }
+                        if (len > 1 && backward - removeGain < bestDelta) {
+                            bestDelta = backward - removeGain;
+                            bestPos = j;
+                            bestReversed = true;
+                        }
+                    }
+                    if (bestPos >= 0) {
+                        moveSegment(i, len, bestPos, bestReversed);
+                        moves++;
+                        improved = true;
+                    }
+                }
+            }
+            return improved;
+        }
+
+        void reverse(int i, int j) {
+            while (i < j) {
+                int tmp = order[i];
+                order[i++] = order[j];
+                order[j--] = tmp;
+            }
+        }
+
+        // Take order[i..i+len-1] out and put it back right after the point now at position j
+        void moveSegment(int i, int len, int j, boolean reversed) {
+            int n = order.length;
+            int[] segment = new int[len];
+            System.arraycopy(order, i, segment, 0, len);
+            if (reversed) {
+                for (int a = 0, b = len - 1; a < b; a++, b--) {
+                    int tmp = segment[a];
+                    segment[a] = segment[b];
+                    segment[b] = tmp;
+                }
+            }
+            int anchor = order[j];
+            int[] next = new int[n];
+            int pos = 0;
+            for (int k = 0; k < n; k++) {
+                if (k >= i && k < i + len) {
+                    continue;
+                }
+                next[pos++] = order[k];
+                if (order[k] == anchor) {
+                    System.arraycopy(segment, 0, next, pos, len);
+                    pos += len;
+                }
+            }
+            order = next;
+        }
+    }
+
+    /**
+     * Optimized order of a tour and how it was obtained
+     */
+    public static final class Result {
+        private final List<PointCollecte> points;
+        private final double distanceKm;
+        private final double initialDistanceKm;
+        private final int moves;
+        private final long elapsedMs;
+        private final boolean budgetExhausted;
+        private final int unlocatedPoints;
+
+        Result(List<PointCollecte> points, double distanceKm, double initialDistanceKm, int moves,
+               long elapsedMs, boolean budgetExhausted, int unlocatedPoints) {
+            this.points = points;
+            this.distanceKm = distanceKm;
+            this.initialDistanceKm = initialDistanceKm;
+            this.moves = moves;
+            this.elapsedMs = elapsedMs;
+            this.budgetExhausted = budgetExhausted;
+            this.unlocatedPoints = unlocatedPoints;
+        }
+
+        public List<PointCollecte> getPoints() {
+            return points;
+        }
+
+        public double getDistanceKm() {
+            return distanceKm;
+        }
+
+        public double getInitialDistanceKm() {
+            return initialDistanceKm;
+        }
+
+        /**
+         * Summary returned by the optimize endpoint
+         */
+        public Map<String, Object> toMap() {
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("distanceKm", Math.round(distanceKm * 1000) / 1000.0);
+            body.put("initialDistanceKm", Math.round(initialDistanceKm * 1000) / 1000.0);
+            body.put("moves", moves);
+            body.put("elapsedMs", elapsedMs);
+            body.put("budgetExhausted", budgetExhausted);
+            if (unlocatedPoints > 0) {
+                body.put("unlocatedPoints", unlocatedPoints);
+            }
+            return body;
+        }
+    }
+}
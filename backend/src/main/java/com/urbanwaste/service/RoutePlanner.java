@@ -0,0 +1,409 @@
+package com.urbanwaste.service;
+
+import com.urbanwaste.model.Employee;
+import com.urbanwaste.model.PointCollecte;
+import com.urbanwaste.model.Tournee;
+import com.urbanwaste.model.Utilisateur;
+import com.urbanwaste.model.Vehicule;
+import com.urbanwaste.util.GeoUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import jakarta.xml.bind.JAXBException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Builds the day's tours automatically (capacitated vehicle routing).
+ *
+ * The critical points are grouped into tours with the Clarke-Wright savings heuristic:
+ * every point starts in its own tour from a virtual depot (the centroid of the points),
+ * and tours are joined end to end in decreasing order of the distance saved, as long as
+ * the load fits the largest available vehicle. Savings are only computed between each
+ * point and its nearest neighbours, in parallel, so thousands of points are planned in
+ * seconds. Each tour is then assigned the smallest vehicle that can carry it and a free
+ * employee, and its point order is improved by the {@link RouteOptimizer} (tours are
+ * optimized in parallel).
+ *
+ * The tours are built to pass the rules enforced by RouteService: available employee,
+ * no other tour that day for the employee, load within the vehicle capacity.
+ */
+@Service
+public class RoutePlanner {
+
+    // Savings are only considered between a point and this many nearest neighbours
+    private static final int NEIGHBOURS = 40;
+
+    // Pairs are packed into 32 bits (16 per point index) in the savings keys
+    private static final int MAX_POINTS = 1 << 16;
+
+    @Autowired
+    private CollectionPointService collectionPointService;
+
+    @Autowired
+    private VehicleService vehicleService;
+
+    @Autowired
+    private EmployeeService employeeService;
+
+    @Autowired
+    private RouteService routeService;
+
+    @Autowired
+    private RouteOptimizer routeOptimizer;
+
+    /**
+     * Plan tours for the given date covering the points filled above the threshold.
+     * Nothing is saved; pass the tours to RouteService.createRoutes to commit the plan.
+     */
+    public Plan plan(LocalDate date, float threshold, String heureDebut) throws JAXBException {
+        long start = System.nanoTime();
+        Plan plan = new Plan();
+
+        // Points, vehicles and employees already used by an open tour that day are left alone
+        Set<Integer> busyPoints = new HashSet<>();
+        Set<Integer> busyVehicles = new HashSet<>();
+        Set<Integer> busyEmployees = new HashSet<>();
+        for (Tournee route : routeService.getAllRoutes()) {
+            if (route.getDatePlanifiee() == null || "TERMINEE".equals(route.getStatut())
+                    || !toLocalDate(route.getDatePlanifiee()).equals(date)) {
+                continue;
+            }
+            if (route.getPointsCollecte() != null) {
+                route.getPointsCollecte().forEach(p -> busyPoints.add(p.getId()));
+            }
+            if (route.getVehicle() != null) {
+                busyVehicles.add(route.getVehicle().getId());
+            }
+            if (route.getEmploye() != null) {
+                busyEmployees.add(route.getEmploye().getId());
+            }
+        }
+
+        List<Vehicule> vehicles = vehicleService.getAllVehicles().stream()
+            .filter(v -> "DISPONIBLE".equalsIgnoreCase(v.getEtat()))
+            .filter(v -> v.getCapacite() > 0 && !isBlank(v.getImmatriculation()))
+            .filter(v -> !busyVehicles.contains(v.getId()))
+            .sorted(Comparator.comparingDouble(Vehicule::getCapacite))
+            .collect(Collectors.toList());
+
+        List<Employee> employees = new ArrayList<>();
+        for (Utilisateur user : employeeService.getAllEmployees()) {
+            if (user instanceof Employee && ((Employee) user).isDisponible()
+                    && !isBlank(user.getNom()) && !isBlank(user.getPrenom())
+                    && !busyEmployees.contains(user.getId())) {
+                employees.add((Employee) user);
+            }
+        }
+
+        float maxCapacity = vehicles.isEmpty() ? 0 : vehicles.get(vehicles.size() - 1).getCapacite();
+        List<PointCollecte> points = new ArrayList<>();
+        for (PointCollecte point : collectionPointService.getCriticalPoints(threshold)) {
+            if (busyPoints.contains(point.getId())) {
+                plan.alreadyPlanned++;
+            } else if (!GeoUtils.isLocated(point)) {
+                plan.unplanned(point, "no coordinates");
+            } else if (RouteService.pointVolume(point) > maxCapacity) {
+                plan.unplanned(point, vehicles.isEmpty() ? "no vehicle available" : "exceeds every vehicle capacity");
+            } else {
+                points.add(point);
+            }
+        }
+        if (points.size() >= MAX_POINTS) {
+            throw new IllegalArgumentException("Too many points to plan at once: " + points.size());
+        }
+
+        List<int[]> tours = points.isEmpty() ? List.of() : savings(points, maxCapacity);
+
+        // Heaviest tours first, each on the smallest free vehicle that can carry it
+        float[] loads = new float[tours.size()];
+        Integer[] byLoad = new Integer[tours.size()];
+        for (int t = 0; t < tours.size(); t++) {
+            for (int index : tours.get(t)) {
+                loads[t] += RouteService.pointVolume(points.get(index));
+            }
+            byLoad[t] = t;
+        }
+        Arrays.sort(byLoad, (a, b) -> Float.compare(loads[b], loads[a]));
+
+        boolean[] vehicleUsed = new boolean[vehicles.size()];
+        List<Assignment> assignments = new ArrayList<>();
+        for (int t : byLoad) {
+            int vehicle = -1;
+            if (assignments.size() < employees.size()) {
+                for (int v = 0; v < vehicles.size(); v++) {
+                    if (!vehicleUsed[v] && vehicles.get(v).getCapacite() >= loads[t]) {
+                        vehicle = v;
+                        break;
+                    }
+                }
+            }
+            List<PointCollecte> tourPoints = new ArrayList<>();
+            for (int index : tours.get(t)) {
+                tourPoints.add(points.get(index));
+            }
+            if (vehicle < 0) {
+                String reason = assignments.size() >= employees.size() ? "no employee available" : "no vehicle available";
+                tourPoints.forEach(p -> plan.unplanned(p, reason));
+                continue;
+            }
+            vehicleUsed[vehicle] = true;
+            assignments.add(new Assignment(tourPoints, vehicles.get(vehicle), employees.get(assignments.size())));
+        }
+
+        // Order the points of every tour, all tours at once
+        Date planned = Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+        plan.tournees = assignments.parallelStream()
+            .map(a -> toTournee(a, planned, heureDebut))
+            .collect(Collectors.toList());
+        plan.elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        return plan;
+    }
+
+    private Tournee toTournee(Assignment assignment, Date date, String heureDebut) {
+        RouteOptimizer.Result result = routeOptimizer.optimize(assignment.points);
+
+        // Only the fields the tour schema allows for its employee
+        Employee source = assignment.employee;
+        Employee employe = new Employee();
+        employe.setId(source.getId());
+        employe.setNom(source.getNom());
+        employe.setPrenom(source.getPrenom());
+        employe.setTelephone(source.getTelephone());
+        employe.setDisponible(source.isDisponible());
+
+        Tournee tournee = new Tournee();
+        tournee.setDatePlanifiee(date);
+        tournee.setStatut("PLANIFIEE");
+        tournee.setEmploye(employe);
+        tournee.setVehicle(assignment.vehicle);
+        tournee.setPointsCollecte(new ArrayList<>(result.getPoints()));
+        tournee.setHeureDebut(heureDebut);
+        tournee.setDistanceKm((float) result.getDistanceKm());
+        return tournee;
+    }
+
+    /**
+     * Clarke-Wright savings over the nearest-neighbour pairs. Returns the tours as lists of
+     * indexes into points, each in the order the merges chained them.
+     */
+    private List<int[]> savings(List<PointCollecte> points, float capacity) {
+        int n = points.size();
+        double depotLat = points.stream().mapToDouble(PointCollecte::getLatitude).average().orElse(0);
+        double depotLon = points.stream().mapToDouble(PointCollecte::getLongitude).average().orElse(0);
+        double[] toDepot = new double[n];
+        float[] demand = new float[n];
+        IntStream.range(0, n).parallel().forEach(i -> {
+            PointCollecte p = points.get(i);
+            toDepot[i] = GeoUtils.haversineKm(depotLat, depotLon, p.getLatitude(), p.getLongitude());
+            demand[i] = RouteService.pointVolume(p);
+        });
+
+        // saving(i, j) = d(depot, i) + d(depot, j) - d(i, j), packed with the pair into a
+        // sortable long: positive float bits keep their order when compared as ints
+        int k = Math.min(NEIGHBOURS, n - 1);
+        int[] byLatitude = IntStream.range(0, n).boxed()
+            .sorted(Comparator.comparingDouble(i -> points.get(i).getLatitude()))
+            .mapToInt(Integer::intValue)
+            .toArray();
+        int[] rank = new int[n];
+        for (int r = 0; r < n; r++) {
+            rank[byLatitude[r]] = r;
+        }
+        long[] keys = new long[n * k];
+        IntStream.range(0, n).parallel().forEach(i -> {
+            int[] nearest = nearestNeighbours(points, byLatitude, rank, i, k);
+            for (int slot = 0; slot < nearest.length; slot++) {
+                int j = nearest[slot];
+                double saving = toDepot[i] + toDepot[j] - GeoUtils.haversineKm(points.get(i), points.get(j));
+                if (saving > 0) {
+                    int pair = Math.min(i, j) << 16 | Math.max(i, j);
+                    keys[i * k + slot] = (long) Float.floatToIntBits((float) saving) << 32 | (pair & 0xFFFFFFFFL);
+                }
+            }
+        });
+        Arrays.parallelSort(keys);
+
+        // Tours as doubly linked chains of points; a tour is known by its head
+        int[] next = new int[n];
+        int[] prev = new int[n];
+        int[] tourOf = new int[n];
+        int[] tail = new int[n];
+        float[] load = new float[n];
+        for (int i = 0; i < n; i++) {
+            next[i] = prev[i] = -1;
+            tourOf[i] = tail[i] = i;
+            load[i] = demand[i];
+        }
+
+        for (int idx = keys.length - 1; idx >= 0 && keys[idx] != 0; idx--) {
+            int pair = (int) keys[idx];
+            int i = pair >>> 16;
+            int j = pair & 0xFFFF;
+            int ti = tourOf[i];
+            int tj = tourOf[j];
+            if (ti == tj || load[ti] + load[tj] > capacity) {
+                continue;
+            }
+            // Only the ends of two tours can be joined
+            boolean iHead = ti == i;
+            boolean iTail = tail[ti] == i;
+            boolean jHead = tj == j;
+            boolean jTail = tail[tj] == j;
+            if ((!iHead && !iTail) || (!jHead && !jTail)) {
+                continue;
+            }
+            // Orient as [... i] + [j ...]
+            if (!iTail) {
+                ti = reverse(ti, tail, next, prev, tourOf, load);
+            }
+            if (!jHead) {
+                tj = reverse(tj, tail, next, prev, tourOf, load);
+            }
+            next[i] = j;
+            prev[j] = i;
+            for (int p = j; p != -1; p = next[p]) {
+                tourOf[p] = ti;
+            }
+            tail[ti] = tail[tj];
+            load[ti] += load[tj];
+        }
+
+        List<int[]> tours = new ArrayList<>();
+        for (int head = 0; head < n; head++) {
+            if (tourOf[head] != head) {
+                continue;
+            }
+            List<Integer> chain = new ArrayList<>();
+            for (int p = head; p != -1; p = next[p]) {
+                chain.add(p);
+            }
+            tours.add(chain.stream().mapToInt(Integer::intValue).toArray());
+        }
+        return tours;
+    }
+
+    // Reverse the chain starting at head; returns the new head (the old tail)
+    private static int reverse(int head, int[] tail, int[] next, int[] prev, int[] tourOf, float[] load) {
+        int newHead = tail[head];
+        load[newHead] = load[head];
+        for (int p = head; p != -1; ) {
+            int after = next[p];
+            next[p] = prev[p];
+            prev[p] = after;
+            tourOf[p] = newHead;
+            p = after;
+        }
+        tail[newHead] = head;
+        return newHead;
+    }
+
+    /**
+     * The k points closest to point i (unordered). Points are scanned outwards from i in
+     * latitude order; the latitude gap alone is a lower bound of the distance, so the scan
+     * stops once it exceeds the farthest of the k kept points.
+     */
+    private static int[] nearestNeighbours(List<PointCollecte> points, int[] byLatitude, int[] rank, int i, int k) {
+        int[] best = new int[k];
+        double[] bestDist = new double[k];
+        int size = 0;
+        int worst = 0;
+        PointCollecte origin = points.get(i);
+        int lo = rank[i] - 1;
+        int hi = rank[i] + 1;
+        while (lo >= 0 || hi < byLatitude.length) {
+            double gapLo = lo >= 0 ? origin.getLatitude() - points.get(byLatitude[lo]).getLatitude() : Double.MAX_VALUE;
+            double gapHi = hi < byLatitude.length ? points.get(byLatitude[hi]).getLatitude() - origin.getLatitude() : Double.MAX_VALUE;
+            int j = gapLo <= gapHi ? byLatitude[lo--] : byLatitude[hi++];
+            if (size == k && GeoUtils.latitudeGapKm(Math.min(gapLo, gapHi)) >= bestDist[worst]) {
+                break;
+            }
+            double d = GeoUtils.haversineKm(origin, points.get(j));
+            if (size < k) {
+                best[size] = j;
+                bestDist[size] = d;
+                if (d > bestDist[worst]) {
+                    worst = size;
+                }
+                size++;
+            } else if (d < bestDist[worst]) {
+                // Replace the farthest kept point, then find the new farthest
+                best[worst] = j;
+                bestDist[worst] = d;
+                for (int s = 0; s < k; s++) {
+                    if (bestDist[s] > bestDist[worst]) {
+                        worst = s;
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(best, size);
+    }
+
+    private static LocalDate toLocalDate(Date date) {
+        return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    private static final class Assignment {
+        final List<PointCollecte> points;
+        final Vehicule vehicle;
+        final Employee employee;
+
+        Assignment(List<PointCollecte> points, Vehicule vehicle, Employee employee) {
+            this.points = points;
+            this.vehicle = vehicle;
+            this.employee = employee;
+        }
+    }
+
+    /**
+     * Tours proposed for a day and the points that could not be placed in any of them
+     */
+    public static final class Plan {
+        private List<Tournee> tournees = List.of();
+        private final List<Map<String, Object>> unplanned = new ArrayList<>();
+        private int alreadyPlanned;
+        private long elapsedMs;
+
+        void unplanned(PointCollecte point, String reason) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("pointId", point.getId());
+            entry.put("reason", reason);
+            unplanned.add(entry);
+        }
+
+        public List<Tournee> getTournees() {
+            return tournees;
+        }
+
+        /**
+         * Response body of the planning endpoint, with the tours given (planned or created)
+         */
+        public Map<String, Object> toMap(List<Tournee> routes) {
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("tournees", routes);
+            body.put("count", routes.size());
+            body.put("plannedPoints", routes.stream().mapToInt(t -> t.getPointsCollecte().size()).sum());
+            body.put("totalDistanceKm", Math.round(routes.stream().mapToDouble(Tournee::getDistanceKm).sum() * 1000) / 1000.0);
+            body.put("alreadyPlanned", alreadyPlanned);
+            body.put("unplanned", unplanned);
+            body.put("elapsedMs", elapsedMs);
+            return body;
+        }
+    }
+}
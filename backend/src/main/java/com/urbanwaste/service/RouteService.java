@@ -3,6 +3,9 @@ package com.urbanwaste.service;
 import com.urbanwaste.model.Tournee; // Assuming the route model is Tournee
 import com.urbanwaste.model.TourneesWrapper; // Assuming you have this wrapper model
 import com.urbanwaste.model.Employee;
+import com.urbanwaste.model.PointCollecte;
+import com.urbanwaste.util.EntityStore;
+import com.urbanwaste.util.ReadView;
 import com.urbanwaste.util.XMLHandler;
 import com.urbanwaste.exception.XMLValidationException;
 import com.urbanwaste.service.EmployeeService;
@@ -18,6 +21,7 @@ import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 @Service
@@ -37,18 +41,25 @@ public class RouteService {
     @Autowired
     private CollectionPointService collectionPointService;
     
+    @Autowired
+    private RouteOptimizer routeOptimizer;
+    
+    private EntityStore<TourneesWrapper, Tournee> store;
+    
     private AtomicInteger idCounter = new AtomicInteger(1);
     
+    // Slots of the tours per employee and per vehicle, for the conflict rules
+    private final TourSchedule schedule = new TourSchedule();
+    
     @PostConstruct
     public void init() {
+        store = xmlHandler.getStore(ROUTES_FILE, TourneesWrapper.class,
+            TourneesWrapper::getTournees, TourneesWrapper::setTournees, Tournee::getId, Tournee::copy);
+        store.addStagedListener(schedule);
+        
         if (xmlHandler.fileExists(ROUTES_FILE)) {
             try {
-                List<Tournee> routes = getAllRoutes();
-                if (!routes.isEmpty()) {
-                    // Assuming Tournee has an getId() method
-                    int maxId = routes.stream().mapToInt(Tournee::getId).max().orElse(0);
-                    idCounter.set(maxId + 1);
-                }
+                idCounter.set(store.maxId() + 1);
             } catch (JAXBException e) {
                 System.err.println("Failed to load existing routes: " + e.getMessage());
             }
@@ -56,56 +67,157 @@ public class RouteService {
     }
     
     /**
-     * Get all collection routes (Tournees)
+     * Follow committed route changes (used by the public schedule cache)
+     */
+    public void addListener(EntityStore.Listener<Tournee> listener) {
+        store.addListener(listener);
+    }
+    
+    /**
+     * Get all collection routes (Tournees), served from the in-memory store
      */
     public List<Tournee> getAllRoutes() throws JAXBException {
-        // FIX: Replaces XmlList/XMLHandler.read()
-        TourneesWrapper wrapper = xmlHandler.loadFromXML(ROUTES_FILE, TourneesWrapper.class);
-        // Ensure we always return a non-null list
-        if (wrapper == null || wrapper.getTournees() == null) {
-            return new ArrayList<>();
-        }
-        return wrapper.getTournees();
+        return store.getAll();
+    }
+    
+    /**
+     * Get all routes from a consistent multi-store view
+     */
+    public List<Tournee> getAllRoutes(ReadView view) throws JAXBException {
+        return view.getAll(store);
     }
     
     /**
      * Get route by ID
      */
     public Optional<Tournee> getRouteById(int id) throws JAXBException {
-        return getAllRoutes().stream()
-            .filter(t -> t.getId() == id)
-            .findFirst();
+        return store.findById(id);
     }
     
     /**
-     * Get all routes as wrapper (for export)
+     * Routes matching the export filters; null filters are ignored.
+     * A route is in a zone when any of its points is (see CollectionPointService.zoneFilter).
      */
-    public TourneesWrapper getAllRoutesWrapper() throws JAXBException {
-        TourneesWrapper wrapper = xmlHandler.loadFromXML(ROUTES_FILE, TourneesWrapper.class);
-        if (wrapper == null) {
-            wrapper = new TourneesWrapper();
-            wrapper.setTournees(new ArrayList<>());
+    public List<Tournee> findRoutes(LocalDate from, LocalDate to, String zone, String statut) throws JAXBException {
+        Predicate<PointCollecte> inZone = collectionPointService.zoneFilter(zone);
+        return getAllRoutes().stream()
+            .filter(t -> statut == null || statut.equalsIgnoreCase(t.getStatut()))
+            .filter(t -> isWithin(t.getDatePlanifiee(), from, to))
+            .filter(t -> zone == null || (t.getPointsCollecte() != null && t.getPointsCollecte().stream()
+                .anyMatch(inZone)))
+            .collect(Collectors.toList());
+    }
+    
+    private boolean isWithin(Date date, LocalDate from, LocalDate to) {
+        if (from == null && to == null) {
+            return true;
         }
-        if (wrapper.getTournees() == null) {
-            wrapper.setTournees(new ArrayList<>());
+        if (date == null) {
+            return false;
         }
-        return wrapper;
+        LocalDate day = date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+        return (from == null || !day.isBefore(from)) && (to == null || !day.isAfter(to));
     }
     
     /**
      * Create new route with default values for mandatory fields
      */
     public Tournee createRoute(Tournee route) throws JAXBException, XMLValidationException {
-        TourneesWrapper wrapper = xmlHandler.loadFromXML(ROUTES_FILE, TourneesWrapper.class);
-        if (wrapper == null) {
-            wrapper = new TourneesWrapper();
+        return createRoute(route, false);
+    }
+    
+    /**
+     * Create new route, optionally ordering its points and computing distanceKm first.
+     * The optimization runs before the write so it never holds up other route writes.
+     */
+    public Tournee createRoute(Tournee route, boolean optimize) throws JAXBException, XMLValidationException {
+        if (optimize && route.getPointsCollecte() != null && !route.getPointsCollecte().isEmpty()) {
+            RouteOptimizer.Result result = routeOptimizer.optimize(resolvePoints(route.getPointsCollecte()));
+            route.setPointsCollecte(result.getPoints());
+            route.setDistanceKm((float) result.getDistanceKm());
         }
-        List<Tournee> routes = wrapper.getTournees();
-        if (routes == null) {
-            routes = new ArrayList<>();
+        return store.write(tx -> insertRoute(route, tx, schedule.draft()));
+    }
+    
+    /**
+     * Create several routes in one write: either all of them pass the business rules and
+     * are saved together, or none is
+     */
+    public List<Tournee> createRoutes(List<Tournee> routes) throws JAXBException, XMLValidationException {
+        return store.write(tx -> {
+            List<Tournee> created = new ArrayList<>(routes.size());
+            // One draft so that the new routes are also checked against each other
+            TourSchedule.Draft draft = schedule.draft();
+            for (Tournee route : routes) {
+                created.add(insertRoute(route, tx, draft));
+            }
+            return created;
+        });
+    }
+    
+    /**
+     * Reorder the points of an existing route to minimize the distance driven and store
+     * the computed distanceKm. Returns the optimization summary with the updated route.
+     */
+    public Optional<Map<String, Object>> optimizeRoute(int id) throws JAXBException, XMLValidationException {
+        Optional<Tournee> existing = store.findById(id);
+        if (existing.isEmpty()) {
+            return Optional.empty();
         }
         
-        route.setId(idCounter.getAndIncrement());
+        // Search outside the write: it can take up to the time budget
+        List<PointCollecte> points = existing.get().getPointsCollecte();
+        RouteOptimizer.Result result = routeOptimizer.optimize(resolvePoints(points));
+        Set<Integer> optimizedIds = pointIds(points);
+        
+        return store.write(tx -> {
+            Optional<Tournee> routeOpt = tx.edit(id);
+            if (routeOpt.isEmpty()) {
+                return Optional.empty();
+            }
+            Tournee route = routeOpt.get();
+            
+            // The points were changed meanwhile: optimize the current list instead
+            RouteOptimizer.Result applied = result;
+            if (!pointIds(route.getPointsCollecte()).equals(optimizedIds)) {
+                applied = routeOptimizer.optimize(resolvePoints(route.getPointsCollecte()));
+            }
+            
+            route.setPointsCollecte(applied.getPoints());
+            route.setDistanceKm((float) applied.getDistanceKm());
+            
+            Map<String, Object> body = applied.toMap();
+            body.put("route", route);
+            return Optional.of(body);
+        });
+    }
+    
+    /**
+     * Current version of each point from the points store (route copies may lack coordinates)
+     */
+    private List<PointCollecte> resolvePoints(List<PointCollecte> points) throws JAXBException {
+        List<PointCollecte> resolved = new ArrayList<>();
+        if (points == null) {
+            return resolved;
+        }
+        for (PointCollecte point : points) {
+            resolved.add(collectionPointService.getPointById(point.getId()).orElse(point));
+        }
+        return resolved;
+    }
+    
+    private Set<Integer> pointIds(List<PointCollecte> points) {
+        Set<Integer> ids = new HashSet<>();
+        if (points != null) {
+            for (PointCollecte point : points) {
+                ids.add(point.getId());
+            }
+        }
+        return ids;
+    }
+    
+    private Tournee insertRoute(Tournee route, EntityStore.Transaction<Tournee> tx, TourSchedule.Draft draft) throws JAXBException {
+        route.setId(nextId(tx));
         
         // Set default values for mandatory fields if missing
         if (route.getDatePlanifiee() == null) {
@@ -184,15 +296,13 @@ public class RouteService {
         validateEmployeeAvailability(route.getEmploye());
         
         // Business Rule 2: Conflict Detection
-        validateNoEmployeeConflict(route, routes);
+        validateNoConflict(route, draft);
         
         // Business Rule 3: Capacity Validation
         validateVehicleCapacity(route);
         
-        routes.add(route);
-        wrapper.setTournees(routes);
-        
-        xmlHandler.saveToXML(wrapper, ROUTES_FILE);
+        tx.put(route);
+        draft.put(route);
         
         return route;
     }
@@ -201,18 +311,11 @@ public class RouteService {
      * Update existing route with smart merge (preserves existing data for null fields)
      */
     public Optional<Tournee> updateRoute(int id, Tournee updatedRoute) throws JAXBException, XMLValidationException {
-        TourneesWrapper wrapper = xmlHandler.loadFromXML(ROUTES_FILE, TourneesWrapper.class);
-        if (wrapper == null) {
-            wrapper = new TourneesWrapper();
-        }
-        List<Tournee> routes = wrapper.getTournees();
-        if (routes == null) {
-            routes = new ArrayList<>();
-        }
-        
-        Optional<Tournee> existingOpt = routes.stream()
-            .filter(t -> t.getId() == id)
-            .findFirst();
+        return store.write(tx -> replaceRoute(id, updatedRoute, tx));
+    }
+    
+    private Optional<Tournee> replaceRoute(int id, Tournee updatedRoute, EntityStore.Transaction<Tournee> tx) throws JAXBException {
+        Optional<Tournee> existingOpt = tx.find(id);
         
         if (existingOpt.isEmpty()) {
             return Optional.empty();
@@ -269,25 +372,14 @@ public class RouteService {
             validateEmployeeAvailability(updatedRoute.getEmploye());
         }
         
-        // Business Rule 2: Conflict Detection (if employee or date changed)
-        if (updatedRoute.getEmploye() != null && updatedRoute.getEmploye().getId() != 0) {
-            // Create temporary list without current route for conflict check
-            List<Tournee> routesWithoutCurrent = routes.stream()
-                .filter(t -> t.getId() != id)
-                .collect(Collectors.toList());
-            validateNoEmployeeConflict(updatedRoute, routesWithoutCurrent);
-        }
+        // Business Rule 2: Conflict Detection (the route's own current slot does not count)
+        updatedRoute.setId(id);
+        validateNoConflict(updatedRoute, schedule.draft());
         
         // Business Rule 3: Capacity Validation
         validateVehicleCapacity(updatedRoute);
         
-        // Set the ID and replace
-        updatedRoute.setId(id);
-        routes.removeIf(t -> t.getId() == id);
-        routes.add(updatedRoute);
-        
-        wrapper.setTournees(routes);
-        xmlHandler.saveToXML(wrapper, ROUTES_FILE);
+        tx.put(updatedRoute);
         
         return Optional.of(updatedRoute);
     }
@@ -296,106 +388,7 @@ public class RouteService {
      * Delete route
      */
     public boolean deleteRoute(int id) throws JAXBException, XMLValidationException {
-        TourneesWrapper wrapper = xmlHandler.loadFromXML(ROUTES_FILE, TourneesWrapper.class);
-        if (wrapper == null) {
-            wrapper = new TourneesWrapper();
-        }
-        List<Tournee> routes = wrapper.getTournees();
-        if (routes == null) {
-            routes = new ArrayList<>();
-        }
-        
-        boolean removed = routes.removeIf(t -> t.getId() == id);
-        
-        if (removed) {
-            wrapper.setTournees(routes);
-            xmlHandler.saveToXML(wrapper, ROUTES_FILE);
-        }
-        
-        return removed;
-    }
-    
-    /**
-     * Get collection schedules for a zone
-     * Returns recurring weekly schedule based on planned routes
-     */
-    public List<Map<String, String>> getSchedulesByZone(String zone) throws JAXBException {
-        List<Tournee> allRoutes = getAllRoutes();
-        List<Map<String, String>> schedules = new ArrayList<>();
-        
-        // Group routes by day of week and type
-        Map<String, Set<String>> dayTypeMap = new HashMap<>();
-        
-        for (Tournee route : allRoutes) {
-            if (route.getDatePlanifiee() == null || route.getPointsCollecte() == null) {
-                continue;
-            }
-            
-            // Check if any point in this route matches the zone
-            boolean matchesZone = route.getPointsCollecte().stream()
-                .anyMatch(p -> p.getLocalisation() != null && 
-                    p.getLocalisation().toLowerCase().contains(zone.toLowerCase()));
-            
-            if (!matchesZone) {
-                continue;
-            }
-            
-            // Extract day of week from datePlanifiee
-            java.util.Calendar cal = java.util.Calendar.getInstance();
-            cal.setTime(route.getDatePlanifiee());
-            int dayOfWeek = cal.get(java.util.Calendar.DAY_OF_WEEK);
-            String dayName = getDayName(dayOfWeek);
-            
-            // Extract waste types from points
-            Set<String> types = route.getPointsCollecte().stream()
-                .filter(p -> p.getTypeDechet() != null && p.getTypeDechet().getNom() != null)
-                .map(p -> p.getTypeDechet().getNom())
-                .collect(Collectors.toSet());
-            
-            // Add to schedule
-            for (String type : types) {
-                String key = dayName + ":" + type;
-                dayTypeMap.putIfAbsent(key, new HashSet<>());
-                if (route.getHeureDebut() != null) {
-                    dayTypeMap.get(key).add(route.getHeureDebut());
-                }
-            }
-        }
-        
-        // Convert to list of maps
-        for (Map.Entry<String, Set<String>> entry : dayTypeMap.entrySet()) {
-            String[] parts = entry.getKey().split(":", 2);
-            if (parts.length == 2) {
-                Map<String, String> schedule = new HashMap<>();
-                schedule.put("day", parts[0]);
-                schedule.put("type", parts[1]);
-                schedule.put("time", String.join(", ", entry.getValue()));
-                schedules.add(schedule);
-            }
-        }
-        
-        // Sort by day of week
-        String[] dayOrder = {"Lundi", "Mardi", "Mercredi", "Jeudi", "Vendredi", "Samedi", "Dimanche"};
-        schedules.sort((a, b) -> {
-            int indexA = java.util.Arrays.asList(dayOrder).indexOf(a.get("day"));
-            int indexB = java.util.Arrays.asList(dayOrder).indexOf(b.get("day"));
-            return Integer.compare(indexA, indexB);
-        });
-        
-        return schedules;
-    }
-    
-    private String getDayName(int dayOfWeek) {
-        switch (dayOfWeek) {
-            case java.util.Calendar.MONDAY: return "Lundi";
-            case java.util.Calendar.TUESDAY: return "Mardi";
-            case java.util.Calendar.WEDNESDAY: return "Mercredi";
-            case java.util.Calendar.THURSDAY: return "Jeudi";
-            case java.util.Calendar.FRIDAY: return "Vendredi";
-            case java.util.Calendar.SATURDAY: return "Samedi";
-            case java.util.Calendar.SUNDAY: return "Dimanche";
-            default: return "Inconnu";
-        }
+        return store.write(tx -> tx.remove(id));
     }
     
     /**
@@ -424,101 +417,27 @@ public class RouteService {
     }
     
     /**
-     * Business Rule: Validate no employee conflict on same date and hour
-     * Throws IllegalArgumentException if employee is already assigned to another tour on the same date and hour
+     * Business Rule: Validate that neither the employee nor the vehicle is already taken
+     * by another tour (not TERMINEE) whose time slot overlaps the route's.
+     * Throws IllegalArgumentException on the first conflict found.
      */
-    private void validateNoEmployeeConflict(Tournee newRoute, List<Tournee> existingRoutes) {
-        if (newRoute.getEmploye() == null || newRoute.getEmploye().getId() == 0) {
-            return; // No employee assigned, no conflict
-        }
-        
-        if (newRoute.getDatePlanifiee() == null) {
-            return; // No date assigned, no conflict
-        }
-        
-        int employeeId = newRoute.getEmploye().getId();
-        Date newRouteDate = newRoute.getDatePlanifiee();
-        String newRouteHeure = newRoute.getHeureDebut();
-        
-        // Check for conflicts: same employee, same date, same hour, status not TERMINEE
-        boolean hasConflict = existingRoutes.stream()
-            .filter(t -> t.getEmploye() != null && t.getEmploye().getId() == employeeId)
-            .filter(t -> t.getDatePlanifiee() != null)
-            .filter(t -> datesMatch(t.getDatePlanifiee(), newRouteDate))
-            .filter(t -> !"TERMINEE".equals(t.getStatut()))
-            .filter(t -> hoursOverlap(t.getHeureDebut(), t.getHeureFin(), newRouteHeure, newRoute.getHeureFin()))
-            .findAny()
-            .isPresent();
-        
-        if (hasConflict) {
+    private void validateNoConflict(Tournee route, TourSchedule.Draft draft) {
+        Tournee taken = draft.employeeConflict(route);
+        if (taken != null) {
             throw new IllegalArgumentException(
-                "Employee (ID: " + employeeId + ") is already assigned to another tour on " + newRouteDate + 
-                (newRouteHeure != null ? " at " + newRouteHeure : ""));
-        }
-    }
-    
-    /**
-     * Helper method to compare dates (ignoring time)
-     */
-    private boolean datesMatch(Date date1, Date date2) {
-        if (date1 == null || date2 == null) {
-            return false;
-        }
-        
-        // Compare dates ignoring time
-        java.util.Calendar cal1 = java.util.Calendar.getInstance();
-        cal1.setTime(date1);
-        java.util.Calendar cal2 = java.util.Calendar.getInstance();
-        cal2.setTime(date2);
-        
-        return cal1.get(java.util.Calendar.YEAR) == cal2.get(java.util.Calendar.YEAR) &&
-               cal1.get(java.util.Calendar.DAY_OF_YEAR) == cal2.get(java.util.Calendar.DAY_OF_YEAR);
-    }
-    
-    /**
-     * Helper method to check if two time ranges overlap
-     * Returns true if the hours overlap (same hour slot)
-     * Format: "HH:mm" (e.g., "08:30", "14:00")
-     */
-    private boolean hoursOverlap(String heureDebut1, String heureFin1, String heureDebut2, String heureFin2) {
-        // If no hours specified, consider it as a conflict (conservative approach)
-        if (heureDebut1 == null || heureDebut1.trim().isEmpty()) {
-            return true; // Conflict if existing tour has no hour specified
-        }
-        if (heureDebut2 == null || heureDebut2.trim().isEmpty()) {
-            return true; // Conflict if new tour has no hour specified
+                "Employee (ID: " + route.getEmploye().getId() + ") is already assigned to another tour" + describeSlot(taken));
         }
-        
-        try {
-            // Extract hour from "HH:mm" format
-            int hour1 = extractHour(heureDebut1);
-            int hour2 = extractHour(heureDebut2);
-            
-            // Check if they are in the same hour slot
-            // Same hour = conflict (e.g., 08:30 and 08:45 are in the same hour)
-            return hour1 == hour2;
-        } catch (Exception e) {
-            // If parsing fails, consider it as a conflict (conservative approach)
-            return true;
+        taken = draft.vehicleConflict(route);
+        if (taken != null) {
+            throw new IllegalArgumentException(
+                "Vehicle (ID: " + route.getVehicle().getId() + ") is already assigned to another tour" + describeSlot(taken));
         }
     }
     
-    /**
-     * Extract hour from "HH:mm" format
-     * Returns the hour (0-23)
-     */
-    private int extractHour(String heure) {
-        if (heure == null || heure.trim().isEmpty()) {
-            return -1;
-        }
-        
-        // Handle formats like "08:30", "8:30", "14:00"
-        String[] parts = heure.trim().split(":");
-        if (parts.length >= 1) {
-            return Integer.parseInt(parts[0]);
-        }
-        
-        return -1;
+    private String describeSlot(Tournee route) {
+        return " (ID: " + route.getId() + ") on " + route.getDatePlanifiee() +
+            (route.getHeureDebut() != null ? " at " + route.getHeureDebut() : "") +
+            (route.getHeureFin() != null ? "-" + route.getHeureFin() : "");
     }
     
     /**
@@ -547,22 +466,7 @@ public class RouteService {
         float totalVolumeNeeded = 0.0f;
         
         for (com.urbanwaste.model.PointCollecte point : route.getPointsCollecte()) {
-            // If point has capacite field, use it
-            // Otherwise, estimate based on niveauRemplissage if available
-            float pointVolume = 0.0f;
-            
-            if (point.getCapacite() > 0) {
-                // Use actual capacity
-                pointVolume = point.getCapacite();
-            } else {
-                // Estimate: assume standard capacity of 1000L and calculate based on fill level
-                // This is a conservative estimate
-                float estimatedCapacity = 1000.0f; // Default 1000L per bin
-                float fillLevel = point.getNiveauRemplissage();
-                pointVolume = estimatedCapacity * (fillLevel / 100.0f);
-            }
-            
-            totalVolumeNeeded += pointVolume;
+            totalVolumeNeeded += pointVolume(point);
         }
         
         // Check if vehicle capacity is sufficient
@@ -573,77 +477,89 @@ public class RouteService {
         }
     }
     
+    /**
+     * Volume a point adds to a tour, as checked by the capacity rule (also used by the planner)
+     */
+    static float pointVolume(PointCollecte point) {
+        // If point has capacite field, use it
+        if (point.getCapacite() > 0) {
+            return point.getCapacite();
+        }
+        // Otherwise estimate from the fill level: assume a standard 1000L bin (conservative)
+        float estimatedCapacity = 1000.0f;
+        return estimatedCapacity * (point.getNiveauRemplissage() / 100.0f);
+    }
+    
     /**
      * Merge imported routes with existing routes (avoiding duplicates by ID)
      * Returns the number of routes actually imported/updated
      * Also returns validation errors in a list
      */
-    public synchronized int mergeRoutes(List<Tournee> importedRoutes) throws JAXBException, XMLValidationException {
-        TourneesWrapper wrapper = xmlHandler.loadFromXML(ROUTES_FILE, TourneesWrapper.class);
-        if (wrapper == null) {
-            wrapper = new TourneesWrapper();
-        }
-        List<Tournee> existingRoutes = wrapper.getTournees();
-        if (existingRoutes == null) {
-            existingRoutes = new ArrayList<>();
-        }
-        
-        // Create a set of existing IDs for quick lookup
-        Set<Integer> existingIds = existingRoutes.stream()
-            .map(Tournee::getId)
-            .collect(Collectors.toSet());
-        
-        int importedCount = 0;
-        
-        // Merge routes: update existing ones or add new ones
-        for (Tournee importedRoute : importedRoutes) {
-            // Find existing route with same ID
-            Tournee existingRoute = existingRoutes.stream()
-                .filter(r -> r.getId() == importedRoute.getId())
-                .findFirst()
-                .orElse(null);
+    public int mergeRoutes(List<Tournee> importedRoutes) throws JAXBException, XMLValidationException {
+        return store.write(tx -> {
+            int importedCount = 0;
+            // Imported routes are also checked against each other
+            TourSchedule.Draft draft = schedule.draft();
             
-            if (existingRoute != null) {
-                // Update existing route - skip strict validation for imports
-                try {
-                    // Update fields without strict validation (imports are trusted data)
-                    existingRoute.setDatePlanifiee(importedRoute.getDatePlanifiee() != null ? importedRoute.getDatePlanifiee() : existingRoute.getDatePlanifiee());
-                    existingRoute.setStatut(importedRoute.getStatut() != null ? importedRoute.getStatut() : existingRoute.getStatut());
-                    existingRoute.setEmploye(importedRoute.getEmploye() != null ? importedRoute.getEmploye() : existingRoute.getEmploye());
-                    existingRoute.setVehicle(importedRoute.getVehicle() != null ? importedRoute.getVehicle() : existingRoute.getVehicle());
-                    existingRoute.setPointsCollecte(importedRoute.getPointsCollecte() != null && !importedRoute.getPointsCollecte().isEmpty() ? importedRoute.getPointsCollecte() : existingRoute.getPointsCollecte());
-                    existingRoute.setHeureDebut(importedRoute.getHeureDebut() != null ? importedRoute.getHeureDebut() : existingRoute.getHeureDebut());
-                    existingRoute.setHeureFin(importedRoute.getHeureFin() != null ? importedRoute.getHeureFin() : existingRoute.getHeureFin());
-                    existingRoute.setDistanceKm(importedRoute.getDistanceKm() != 0 ? importedRoute.getDistanceKm() : existingRoute.getDistanceKm());
-                    
-                    importedCount++; // Count updated routes
-                } catch (Exception e) {
-                    // Skip routes that fail for any reason
-                    System.err.println("Skipping route update due to error: " + e.getMessage());
-                }
-            } else {
-                // Add new route
-                // Assign new ID if ID is 0 or conflicts
-                if (importedRoute.getId() == 0 || existingIds.contains(importedRoute.getId())) {
-                    importedRoute.setId(idCounter.getAndIncrement());
-                }
+            // Merge routes: update existing ones or add new ones
+            for (Tournee importedRoute : importedRoutes) {
+                // Find existing route with same ID; merged into a copy, kept only if it passes the conflict rule
+                Tournee existingRoute = tx.find(importedRoute.getId()).map(Tournee::copy).orElse(null);
                 
-                // For imports, skip strict validation - just add the route
-                // Validation will happen when the route is actually used
-                try {
-                    existingRoutes.add(importedRoute);
-                    existingIds.add(importedRoute.getId());
-                    importedCount++;
-                } catch (Exception e) {
-                    // Skip routes that fail for any reason
-                    System.err.println("Skipping route due to error: " + e.getMessage());
+                if (existingRoute != null) {
+                    // Update existing route - only the conflict rule applies to imports
+                    try {
+                        // Update fields without strict validation (imports are trusted data)
+                        existingRoute.setDatePlanifiee(importedRoute.getDatePlanifiee() != null ? importedRoute.getDatePlanifiee() : existingRoute.getDatePlanifiee());
+                        existingRoute.setStatut(importedRoute.getStatut() != null ? importedRoute.getStatut() : existingRoute.getStatut());
+                        existingRoute.setEmploye(importedRoute.getEmploye() != null ? importedRoute.getEmploye() : existingRoute.getEmploye());
+                        existingRoute.setVehicle(importedRoute.getVehicle() != null ? importedRoute.getVehicle() : existingRoute.getVehicle());
+                        existingRoute.setPointsCollecte(importedRoute.getPointsCollecte() != null && !importedRoute.getPointsCollecte().isEmpty() ? importedRoute.getPointsCollecte() : existingRoute.getPointsCollecte());
+                        existingRoute.setHeureDebut(importedRoute.getHeureDebut() != null ? importedRoute.getHeureDebut() : existingRoute.getHeureDebut());
+                        existingRoute.setHeureFin(importedRoute.getHeureFin() != null ? importedRoute.getHeureFin() : existingRoute.getHeureFin());
+                        existingRoute.setDistanceKm(importedRoute.getDistanceKm() != 0 ? importedRoute.getDistanceKm() : existingRoute.getDistanceKm());
+                        
+                        validateNoConflict(existingRoute, draft);
+                        tx.put(existingRoute);
+                        draft.put(existingRoute);
+                        importedCount++; // Count updated routes
+                    } catch (Exception e) {
+                        // Skip routes that fail for any reason
+                        System.err.println("Skipping route update due to error: " + e.getMessage());
+                    }
+                } else {
+                    // Add new route
+                    // Assign new ID if ID is 0; an explicit one is kept, and later ids go past it
+                    if (importedRoute.getId() == 0) {
+                        importedRoute.setId(nextId(tx));
+                    } else {
+                        idCounter.accumulateAndGet(importedRoute.getId() + 1, Math::max);
+                    }
+                    
+                    // For imports, skip strict validation except double-booking - just add the route
+                    // Validation will happen when the route is actually used
+                    try {
+                        validateNoConflict(importedRoute, draft);
+                        tx.put(importedRoute);
+                        draft.put(importedRoute);
+                        importedCount++;
+                    } catch (Exception e) {
+                        // Skip routes that fail for any reason
+                        System.err.println("Skipping route due to error: " + e.getMessage());
+                    }
                 }
             }
+            
+            return importedCount;
+        });
+    }
+    
+    // Next unused id: imported records keep their own ids, which the counter may not have reached
+    private int nextId(EntityStore.Transaction<Tournee> tx) {
+        int id = idCounter.getAndIncrement();
+        while (tx.contains(id)) {
+            id = idCounter.getAndIncrement();
         }
-        
-        wrapper.setTournees(existingRoutes);
-        xmlHandler.saveToXML(wrapper, ROUTES_FILE);
-        
-        return importedCount;
+        return id;
     }
 }
\ No newline at end of file
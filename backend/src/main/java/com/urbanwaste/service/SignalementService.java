@@ -2,6 +2,8 @@ package com.urbanwaste.service;
 
 import com.urbanwaste.model.Signalement;
 import com.urbanwaste.model.SignalementsWrapper;
+import com.urbanwaste.util.EntityStore;
+import com.urbanwaste.util.SecondaryIndex;
 import com.urbanwaste.util.XMLHandler;
 import com.urbanwaste.exception.XMLValidationException;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,11 +12,11 @@ import org.springframework.stereotype.Service;
 import jakarta.annotation.PostConstruct;
 import jakarta.xml.bind.JAXBException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
 
 @Service
 public class SignalementService {
@@ -24,17 +26,26 @@ public class SignalementService {
     @Autowired
     private XMLHandler xmlHandler;
 
+    @Autowired
+    private CollectionPointService collectionPointService;
+
+    private EntityStore<SignalementsWrapper, Signalement> store;
+
     private AtomicInteger idCounter = new AtomicInteger(1);
 
+    private SecondaryIndex<Signalement> indexes;
+
     @PostConstruct
     public void init() {
+        store = xmlHandler.getStore(SIGNALEMENTS_FILE, SignalementsWrapper.class,
+            SignalementsWrapper::getSignalements, SignalementsWrapper::setSignalements, Signalement::getId, Signalement::copy);
+        indexes = new SecondaryIndex<>(store, Signalement::getId)
+            .on("employeId", Signalement::getEmployeId, false)
+            .attach();
+
         if (xmlHandler.fileExists(SIGNALEMENTS_FILE)) {
             try {
-                List<Signalement> existing = getAll();
-                if (!existing.isEmpty()) {
-                    int maxId = existing.stream().mapToInt(Signalement::getId).max().orElse(0);
-                    idCounter.set(maxId + 1);
-                }
+                idCounter.set(store.maxId() + 1);
             } catch (JAXBException e) {
                 System.err.println("Failed to load existing signalements: " + e.getMessage());
             }
@@ -42,58 +53,53 @@ public class SignalementService {
     }
 
     public Signalement create(Signalement s) throws JAXBException, XMLValidationException {
-        SignalementsWrapper wrapper = xmlHandler.loadFromXML(SIGNALEMENTS_FILE, SignalementsWrapper.class);
-        if (wrapper == null || wrapper.getSignalements() == null) {
-            wrapper = new SignalementsWrapper();
-        }
-        List<Signalement> list = wrapper.getSignalements();
-
-        s.setId(idCounter.getAndIncrement());
-        s.setDateSignalement(new Date());
-        if (s.getStatut() == null || s.getStatut().isEmpty()) {
-            s.setStatut("NOUVEAU");
-        }
-
-        list.add(s);
-        wrapper.setSignalements(list);
-        xmlHandler.saveToXML(wrapper, SIGNALEMENTS_FILE);
+        return store.write(tx -> {
+            s.setId(idCounter.getAndIncrement());
+            s.setDateSignalement(new Date());
+            if (s.getStatut() == null || s.getStatut().isEmpty()) {
+                s.setStatut("NOUVEAU");
+            }
 
-        return s;
+            tx.put(s);
+            return s;
+        });
     }
 
     public List<Signalement> getAll() throws JAXBException {
-        SignalementsWrapper wrapper = xmlHandler.loadFromXML(SIGNALEMENTS_FILE, SignalementsWrapper.class);
-        if (wrapper == null || wrapper.getSignalements() == null) {
-            return new ArrayList<>();
-        }
-        return wrapper.getSignalements();
+        return store.getAll();
     }
 
     public List<Signalement> getByEmployeId(int employeId) throws JAXBException {
-        return getAll().stream()
-            .filter(s -> s.getEmployeId() != null && s.getEmployeId() == employeId)
-            .collect(Collectors.toList());
+        return indexes.find("employeId", employeId);
     }
 
-    public Optional<Signalement> updateStatut(int id, String newStatut) throws JAXBException, XMLValidationException {
-        SignalementsWrapper wrapper = xmlHandler.loadFromXML(SIGNALEMENTS_FILE, SignalementsWrapper.class);
-        if (wrapper == null || wrapper.getSignalements() == null) {
-            return Optional.empty();
-        }
-
-        List<Signalement> list = wrapper.getSignalements();
-        Optional<Signalement> existing = list.stream().filter(s -> s.getId() == id).findFirst();
-        if (existing.isEmpty()) {
-            return Optional.empty();
+    /**
+     * Reports about a collection point of the zone
+     */
+    public List<Signalement> getByZone(int zoneId) throws JAXBException {
+        BitSet points = collectionPointService.getPointIdsInZone(zoneId);
+        List<Signalement> result = new ArrayList<>();
+        for (Signalement signalement : store.getAll()) {
+            Integer pointId = signalement.getPointCollecteId();
+            if (pointId != null && pointId >= 0 && points.get(pointId)) {
+                result.add(signalement);
+            }
         }
+        return result;
+    }
 
-        Signalement target = existing.get();
-        target.setStatut(newStatut);
+    public Optional<Signalement> updateStatut(int id, String newStatut) throws JAXBException, XMLValidationException {
+        return store.write(tx -> {
+            Optional<Signalement> existing = tx.edit(id);
+            if (existing.isEmpty()) {
+                return Optional.empty();
+            }
 
-        wrapper.setSignalements(list);
-        xmlHandler.saveToXML(wrapper, SIGNALEMENTS_FILE);
+            Signalement target = existing.get();
+            target.setStatut(newStatut);
 
-        return Optional.of(target);
+            return Optional.of(target);
+        });
     }
 }
 
@@ -0,0 +1,279 @@
+package com.urbanwaste.service;
+
+import com.urbanwaste.model.PointCollecte;
+import com.urbanwaste.util.EntityStore;
+import com.urbanwaste.util.GeoUtils;
+import com.urbanwaste.util.IntObjectHashMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Uniform grid over the coordinates of the collection points, for radius, bounding-box
+ * and k-nearest queries.
+ *
+ * The map is cut into square cells of cellSizeDeg degrees; each non-empty cell lists
+ * its points. A query only looks at the cells overlapping the searched area, so its
+ * cost depends on the number of points around, not on the total. The index follows the
+ * commits of the points store (insert, move, delete). Points without coordinates are
+ * not indexed.
+ */
+@Service
+public class SpatialIndex implements EntityStore.Listener<PointCollecte> {
+
+    // Kilometres per degree of latitude
+    private static final double KM_PER_DEGREE = GeoUtils.latitudeGapKm(1.0);
+
+    @Autowired
+    private CollectionPointService collectionPointService;
+
+    // About 1.1 km: a few dozen bins per cell in a dense city centre
+    @Value("${urbanwaste.spatial.cell-size-deg:0.01}")
+    private double cellSizeDeg;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by lock
+    private final HashMap<Long, List<PointCollecte>> cells = new HashMap<>();
+    private final IntObjectHashMap<PointCollecte> byId = new IntObjectHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        collectionPointService.addListener(this);
+    }
+
+    @Override
+    public void loaded(List<PointCollecte> points) {
+        lock.writeLock().lock();
+        try {
+            cells.clear();
+            byId.clear();
+            for (PointCollecte point : points) {
+                add(point);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void changed(PointCollecte before, PointCollecte after) {
+        lock.writeLock().lock();
+        try {
+            PointCollecte indexed = byId.get(after != null ? after.getId() : before.getId());
+            if (indexed != null) {
+                remove(indexed);
+            }
+            if (after != null) {
+                add(after);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Points within radiusKm of a position, nearest first
+     */
+    public List<Hit> within(double lat, double lon, double radiusKm) {
+        double dLat = radiusKm / KM_PER_DEGREE;
+        double dLon = dLat / Math.max(Math.cos(Math.toRadians(Math.min(89.9, Math.abs(lat) + dLat))), 1e-6);
+        List<Hit> hits = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (PointCollecte point : candidates(lat - dLat, lon - dLon, lat + dLat, lon + dLon)) {
+                double d = GeoUtils.haversineKm(lat, lon, point.getLatitude(), point.getLongitude());
+                if (d <= radiusKm) {
+                    hits.add(new Hit(point, d));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        hits.sort(Comparator.comparingDouble(Hit::getDistanceKm));
+        return hits;
+    }
+
+    /**
+     * Points inside a latitude/longitude rectangle
+     */
+    public List<PointCollecte> inBox(double minLat, double minLon, double maxLat, double maxLon) {
+        List<PointCollecte> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (PointCollecte point : candidates(minLat, minLon, maxLat, maxLon)) {
+                if (point.getLatitude() >= minLat && point.getLatitude() <= maxLat
+                        && point.getLongitude() >= minLon && point.getLongitude() <= maxLon) {
+                    result.add(point);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * The k points closest to a position, nearest first. Cells are searched in growing
+     * square rings around the position until no unsearched cell can hold a closer point.
+     */
+    public List<Hit> nearest(double lat, double lon, int k) {
+        List<Hit> hits = new ArrayList<>();
+        if (k <= 0) {
+            return hits;
+        }
+        lock.readLock().lock();
+        try {
+            int total = byId.size();
+            int seen = 0;
+            long row = cell(lat);
+            long col = cell(lon);
+            for (int ring = 0; seen < total; ring++) {
+                if (8L * ring > cells.size()) {
+                    // Far from every point: the next ring has more cells than are occupied,
+                    // so scanning all of them is cheaper than growing further
+                    hits.clear();
+                    for (List<PointCollecte> cellPoints : cells.values()) {
+                        for (PointCollecte point : cellPoints) {
+                            hits.add(new Hit(point, GeoUtils.haversineKm(lat, lon, point.getLatitude(), point.getLongitude())));
+                        }
+                    }
+                    break;
+                }
+                for (long r = row - ring; r <= row + ring; r++) {
+                    for (long c = col - ring; c <= col + ring; c++) {
+                        // Only the border of the square is new in this ring
+                        if (r != row - ring && r != row + ring && c != col - ring && c != col + ring) {
+                            continue;
+                        }
+                        List<PointCollecte> cellPoints = cells.get(key(r, c));
+                        if (cellPoints == null) {
+                            continue;
+                        }
+                        for (PointCollecte point : cellPoints) {
+                            hits.add(new Hit(point, GeoUtils.haversineKm(lat, lon, point.getLatitude(), point.getLongitude())));
+                        }
+                        seen += cellPoints.size();
+                    }
+                }
+                if (hits.size() >= k) {
+                    hits.sort(Comparator.comparingDouble(Hit::getDistanceKm));
+                    hits.subList(k, hits.size()).clear();
+                    // Anything outside the searched square is at least this far away
+                    double reachedLat = Math.min(89.9, Math.abs(lat) + (ring + 1) * cellSizeDeg);
+                    double boundKm = ring * cellSizeDeg * KM_PER_DEGREE * Math.cos(Math.toRadians(reachedLat));
+                    if (hits.get(k - 1).getDistanceKm() <= boundKm) {
+                        break;
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        hits.sort(Comparator.comparingDouble(Hit::getDistanceKm));
+        return hits.size() > k ? new ArrayList<>(hits.subList(0, k)) : hits;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return byId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Points of the cells overlapping the rectangle (not filtered yet). Called with the read lock held.
+    private List<PointCollecte> candidates(double minLat, double minLon, double maxLat, double maxLon) {
+        List<PointCollecte> result = new ArrayList<>();
+        if (minLat > maxLat || minLon > maxLon) {
+            return result;
+        }
+        long rowFrom = cell(minLat);
+        long rowTo = cell(maxLat);
+        long colFrom = cell(minLon);
+        long colTo = cell(maxLon);
+        // A huge rectangle covers more cells than exist: walk the occupied ones instead
+        if ((rowTo - rowFrom + 1) * (colTo - colFrom + 1) > cells.size()) {
+            for (Map.Entry<Long, List<PointCollecte>> entry : cells.entrySet()) {
+                long r = entry.getKey() >> 32;
+                long c = (int) (long) entry.getKey();
+                if (r >= rowFrom && r <= rowTo && c >= colFrom && c <= colTo) {
+                    result.addAll(entry.getValue());
+                }
+            }
+            return result;
+        }
+        for (long r = rowFrom; r <= rowTo; r++) {
+            for (long c = colFrom; c <= colTo; c++) {
+                List<PointCollecte> cellPoints = cells.get(key(r, c));
+                if (cellPoints != null) {
+                    result.addAll(cellPoints);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void add(PointCollecte point) {
+        if (!GeoUtils.isLocated(point)) {
+            return;
+        }
+        cells.computeIfAbsent(cellOf(point), k -> new ArrayList<>()).add(point);
+        byId.put(point.getId(), point);
+    }
+
+    private void remove(PointCollecte point) {
+        Long key = cellOf(point);
+        List<PointCollecte> cellPoints = cells.get(key);
+        if (cellPoints != null) {
+            cellPoints.removeIf(p -> p.getId() == point.getId());
+            if (cellPoints.isEmpty()) {
+                cells.remove(key);
+            }
+        }
+        byId.remove(point.getId());
+    }
+
+    private long cellOf(PointCollecte point) {
+        return key(cell(point.getLatitude()), cell(point.getLongitude()));
+    }
+
+    private long cell(double degrees) {
+        return (long) Math.floor(degrees / cellSizeDeg);
+    }
+
+    // Row in the high 32 bits, column in the low 32 bits
+    private static long key(long row, long col) {
+        return row << 32 | (col & 0xFFFFFFFFL);
+    }
+
+    /**
+     * A point found by a proximity query and its distance from the searched position
+     */
+    public static final class Hit {
+        private final PointCollecte point;
+        private final double distanceKm;
+
+        Hit(PointCollecte point, double distanceKm) {
+            this.point = point;
+            this.distanceKm = distanceKm;
+        }
+
+        public PointCollecte getPoint() {
+            return point;
+        }
+
+        public double getDistanceKm() {
+            return distanceKm;
+        }
+    }
+}
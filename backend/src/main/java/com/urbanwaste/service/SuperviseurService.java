@@ -3,6 +3,7 @@ package com.urbanwaste.service;
 import com.urbanwaste.model.SuperviseurZone;
 import com.urbanwaste.model.SuperviseursWrapper;
 import com.urbanwaste.model.Utilisateur;
+import com.urbanwaste.util.EntityStore;
 import com.urbanwaste.util.XMLHandler;
 import com.urbanwaste.exception.XMLValidationException;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,7 +11,7 @@ import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.xml.bind.JAXBException;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -23,111 +24,95 @@ public class SuperviseurService {
     @Autowired
     private XMLHandler xmlHandler;
     
+    @Autowired
+    private PasswordService passwordService;
+    
+    private EntityStore<SuperviseursWrapper, SuperviseurZone> store;
+    
     private AtomicInteger idCounter = new AtomicInteger(1);
     
     @PostConstruct
     public void init() {
+        store = xmlHandler.getStore(SUPERVISEURS_FILE, SuperviseursWrapper.class,
+            SuperviseursWrapper::getSuperviseurs, SuperviseursWrapper::setSuperviseurs, SuperviseurZone::getId, SuperviseurZone::copy);
+        
         if (xmlHandler.fileExists(SUPERVISEURS_FILE)) {
             try {
-                List<Utilisateur> superviseurs = getAllSuperviseurs();
-                if (!superviseurs.isEmpty()) {
-                    int maxId = superviseurs.stream().mapToInt(Utilisateur::getId).max().orElse(0);
-                    idCounter.set(maxId + 1);
-                }
-            } catch (JAXBException e) {
+                idCounter.set(store.maxId() + 1);
+                passwordService.migrate(store);
+            } catch (JAXBException | XMLValidationException e) {
                 System.err.println("Failed to load existing superviseurs: " + e.getMessage());
             }
         }
     }
     
+    /**
+     * Follow committed changes of the superviseurs (used by the login's credential index)
+     */
+    public void addListener(EntityStore.Listener<SuperviseurZone> listener) {
+        store.addListener(listener);
+    }
+    
+    /**
+     * Store the upgraded hash of a password checked at login, unless it changed meanwhile
+     */
+    public boolean replacePasswordHash(int id, String verified, String rehashed) throws JAXBException, XMLValidationException {
+        return passwordService.replaceHash(store, id, verified, rehashed);
+    }
+    
     public List<Utilisateur> getAllSuperviseurs() throws JAXBException {
-        SuperviseursWrapper wrapper = xmlHandler.loadFromXML(SUPERVISEURS_FILE, SuperviseursWrapper.class);
-        if (wrapper == null || wrapper.getSuperviseurs() == null) {
-            return new ArrayList<>();
-        }
-        return new ArrayList<>(wrapper.getSuperviseurs());
+        return Collections.unmodifiableList(store.getAll());
     }
     
     public Optional<Utilisateur> getSuperviseurById(int id) throws JAXBException {
-        return getAllSuperviseurs().stream()
-            .filter(s -> s.getId() == id)
-            .findFirst();
+        return store.findById(id).map(Utilisateur.class::cast);
     }
     
     public Utilisateur createSuperviseur(Utilisateur user) throws JAXBException, XMLValidationException {
-        SuperviseursWrapper wrapper = xmlHandler.loadFromXML(SUPERVISEURS_FILE, SuperviseursWrapper.class);
-        List<SuperviseurZone> superviseurs = wrapper != null && wrapper.getSuperviseurs() != null 
-            ? new ArrayList<>(wrapper.getSuperviseurs()) 
-            : new ArrayList<>();
-        
-        SuperviseurZone superviseur = new SuperviseurZone();
-        superviseur.setId(idCounter.getAndIncrement());
-        superviseur.setMail(user.getMail());
-        superviseur.setNom(user.getNom());
-        superviseur.setPrenom(user.getPrenom());
-        superviseur.setTelephone(user.getTelephone());
-        superviseur.setMotDePasse(user.getMotDePasse());
-        superviseur.setRole("SUPERVISEUR");
-        
-        superviseurs.add(superviseur);
-        
-        SuperviseursWrapper newWrapper = new SuperviseursWrapper();
-        newWrapper.setSuperviseurs(superviseurs);
-        xmlHandler.saveToXML(newWrapper, SUPERVISEURS_FILE);
-        
-        return superviseur;
+        String password = passwordService.encode(user.getMotDePasse());
+        return store.write(tx -> {
+            SuperviseurZone superviseur = new SuperviseurZone();
+            superviseur.setId(idCounter.getAndIncrement());
+            superviseur.setMail(user.getMail());
+            superviseur.setNom(user.getNom());
+            superviseur.setPrenom(user.getPrenom());
+            superviseur.setTelephone(user.getTelephone());
+            superviseur.setMotDePasse(password);
+            superviseur.setRole("SUPERVISEUR");
+            
+            tx.put(superviseur);
+            return superviseur;
+        });
     }
     
     public Optional<Utilisateur> updateSuperviseur(int id, Utilisateur updatedUser) throws JAXBException, XMLValidationException {
-        SuperviseursWrapper wrapper = xmlHandler.loadFromXML(SUPERVISEURS_FILE, SuperviseursWrapper.class);
-        List<SuperviseurZone> superviseurs = wrapper != null && wrapper.getSuperviseurs() != null 
-            ? new ArrayList<>(wrapper.getSuperviseurs()) 
-            : new ArrayList<>();
-        
-        Optional<SuperviseurZone> existing = superviseurs.stream()
-            .filter(s -> s.getId() == id)
-            .findFirst();
-        
-        if (existing.isEmpty()) {
-            return Optional.empty();
-        }
-        
-        SuperviseurZone existingSuperviseur = existing.get();
-        SuperviseurZone updatedSuperviseur = new SuperviseurZone();
-        updatedSuperviseur.setId(id);
-        // Smart merge: use incoming value if provided, otherwise keep existing
-        updatedSuperviseur.setMail(updatedUser.getMail() != null ? updatedUser.getMail() : existingSuperviseur.getMail());
-        updatedSuperviseur.setNom(updatedUser.getNom() != null ? updatedUser.getNom() : existingSuperviseur.getNom());
-        updatedSuperviseur.setPrenom(updatedUser.getPrenom() != null ? updatedUser.getPrenom() : existingSuperviseur.getPrenom());
-        updatedSuperviseur.setTelephone(updatedUser.getTelephone() != 0 ? updatedUser.getTelephone() : existingSuperviseur.getTelephone());
-        updatedSuperviseur.setMotDePasse(updatedUser.getMotDePasse() != null ? updatedUser.getMotDePasse() : existingSuperviseur.getMotDePasse());
-        updatedSuperviseur.setRole("SUPERVISEUR");
-        
-        superviseurs.removeIf(s -> s.getId() == id);
-        superviseurs.add(updatedSuperviseur);
-        
-        SuperviseursWrapper newWrapper = new SuperviseursWrapper();
-        newWrapper.setSuperviseurs(superviseurs);
-        xmlHandler.saveToXML(newWrapper, SUPERVISEURS_FILE);
-        
-        return Optional.of(updatedSuperviseur);
+        // Clients never see the stored hash: a null password keeps it, anything else is a new one
+        String password = passwordService.encode(updatedUser.getMotDePasse());
+        return store.write(tx -> {
+            Optional<SuperviseurZone> existing = tx.find(id);
+            
+            if (existing.isEmpty()) {
+                return Optional.empty();
+            }
+            
+            SuperviseurZone existingSuperviseur = existing.get();
+            SuperviseurZone updatedSuperviseur = new SuperviseurZone();
+            updatedSuperviseur.setId(id);
+            // Smart merge: use incoming value if provided, otherwise keep existing
+            updatedSuperviseur.setMail(updatedUser.getMail() != null ? updatedUser.getMail() : existingSuperviseur.getMail());
+            updatedSuperviseur.setNom(updatedUser.getNom() != null ? updatedUser.getNom() : existingSuperviseur.getNom());
+            updatedSuperviseur.setPrenom(updatedUser.getPrenom() != null ? updatedUser.getPrenom() : existingSuperviseur.getPrenom());
+            updatedSuperviseur.setTelephone(updatedUser.getTelephone() != 0 ? updatedUser.getTelephone() : existingSuperviseur.getTelephone());
+            updatedSuperviseur.setMotDePasse(password != null ? password : existingSuperviseur.getMotDePasse());
+            updatedSuperviseur.setRole("SUPERVISEUR");
+            
+            tx.put(updatedSuperviseur);
+            return Optional.of(updatedSuperviseur);
+        });
     }
     
     public boolean deleteSuperviseur(int id) throws JAXBException, XMLValidationException {
-        SuperviseursWrapper wrapper = xmlHandler.loadFromXML(SUPERVISEURS_FILE, SuperviseursWrapper.class);
-        List<SuperviseurZone> superviseurs = wrapper != null && wrapper.getSuperviseurs() != null 
-            ? new ArrayList<>(wrapper.getSuperviseurs()) 
-            : new ArrayList<>();
-        
-        boolean removed = superviseurs.removeIf(s -> s.getId() == id);
-        
-        if (removed) {
-            SuperviseursWrapper newWrapper = new SuperviseursWrapper();
-            newWrapper.setSuperviseurs(superviseurs);
-            xmlHandler.saveToXML(newWrapper, SUPERVISEURS_FILE);
-        }
-        
-        return removed;
+        return store.write(tx -> tx.remove(id));
     }
 }
 
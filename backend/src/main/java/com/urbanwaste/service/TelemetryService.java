@@ -0,0 +1,185 @@
+package com.urbanwaste.service;
+
+import com.urbanwaste.exception.XMLValidationException;
+import com.urbanwaste.model.TelemetryReading;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.xml.bind.JAXBException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bulk ingestion of the fill levels reported by bin sensors.
+ *
+ * Request threads only validate readings and push them on a lock-free queue. A single
+ * applier thread drains the queue every flush interval, keeps the newest reading of
+ * each point and applies the whole batch in one write of the points store, so the
+ * points file is saved once per batch instead of once per reading. The store's rules
+ * (over 90% puts the container in MAINTENANCE) apply as for a single update, as does
+ * its "newer wins" check against manual updates; the applied readings feed the
+ * fill-level history and forecasts with their sensor timestamps.
+ *
+ * Readings are acknowledged once queued: a crash before the next flush loses them, as
+ * the next sensor report will carry a fresh level anyway.
+ */
+@Service
+public class TelemetryService {
+
+    @Autowired
+    private CollectionPointService pointService;
+
+    // Readings waiting beyond this are refused (the sensors will report again)
+    @Value("${urbanwaste.telemetry.queue-capacity:1000000}")
+    private int queueCapacity;
+
+    @Value("${urbanwaste.telemetry.flush-interval-ms:500}")
+    private long flushIntervalMs;
+
+    // Upper bound of readings folded into one store write
+    @Value("${urbanwaste.telemetry.max-batch:50000}")
+    private int maxBatch;
+
+    private final ConcurrentLinkedQueue<TelemetryReading> queue = new ConcurrentLinkedQueue<>();
+    // ConcurrentLinkedQueue.size() walks the whole queue
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong applied = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+    private final AtomicLong unknownPoints = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private volatile long lastBatchSize;
+    private volatile long lastBatchMs;
+
+    private ScheduledExecutorService applier;
+
+    @PostConstruct
+    public void init() {
+        applier = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "telemetry-applier");
+            thread.setDaemon(true);
+            return thread;
+        });
+        applier.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Apply what is still queued before shutting down
+     */
+    @PreDestroy
+    public void shutdown() {
+        applier.shutdown();
+        try {
+            applier.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * Validate and queue one reading. Returns false if it is invalid or the queue is full.
+     */
+    public boolean submit(TelemetryReading reading) {
+        received.incrementAndGet();
+        if (reading == null || reading.getPointId() <= 0 || Float.isNaN(reading.getLevel())
+                || reading.getLevel() < 0 || reading.getLevel() > 100) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        if (queued.incrementAndGet() > queueCapacity) {
+            queued.decrementAndGet();
+            dropped.incrementAndGet();
+            return false;
+        }
+        if (reading.getTimestamp() == null) {
+            reading.setTimestamp(new Date());
+        }
+        queue.offer(reading);
+        return true;
+    }
+
+    /**
+     * Drain the queue into the points store, one write per batch.
+     * Runs on the applier thread (and once more at shutdown).
+     */
+    synchronized void flush() {
+        try {
+            while (!queue.isEmpty()) {
+                applyBatch();
+            }
+        } catch (RuntimeException e) {
+            // Keep the scheduled task alive
+            System.err.println("[TelemetryService] Batch failed: " + e.getMessage());
+        }
+    }
+
+    private void applyBatch() {
+        long start = System.nanoTime();
+        // Newest reading per point; older ones in the same batch are superseded
+        Map<Integer, TelemetryReading> latest = new HashMap<>();
+        int taken = 0;
+        TelemetryReading reading;
+        while (taken < maxBatch && (reading = queue.poll()) != null) {
+            taken++;
+            TelemetryReading previous = latest.get(reading.getPointId());
+            if (previous == null || !reading.getTimestamp().before(previous.getTimestamp())) {
+                latest.put(reading.getPointId(), reading);
+            }
+        }
+        queued.addAndGet(-taken);
+
+        stale.addAndGet(taken - latest.size());
+
+        try {
+            // The store refuses a late delivery measured before the applied level, manual or not
+            CollectionPointService.FillLevelUpdate update = latest.isEmpty() ? null
+                : pointService.updateFillLevels(latest.values());
+            if (update != null) {
+                applied.addAndGet(update.getApplied().size());
+                stale.addAndGet(update.getStale());
+                unknownPoints.addAndGet(update.getUnknown());
+            }
+            batches.incrementAndGet();
+        } catch (JAXBException | XMLValidationException e) {
+            failedBatches.incrementAndGet();
+            System.err.println("[TelemetryService] Failed to apply " + latest.size() + " fill levels: " + e.getMessage());
+        }
+        lastBatchSize = taken;
+        lastBatchMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /**
+     * Ingestion counters since startup
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("received", received.get());
+        stats.put("rejected", rejected.get());
+        stats.put("dropped", dropped.get());
+        stats.put("queued", queued.get());
+        stats.put("applied", applied.get());
+        stats.put("superseded", stale.get());
+        stats.put("unknownPoints", unknownPoints.get());
+        stats.put("batches", batches.get());
+        stats.put("failedBatches", failedBatches.get());
+        stats.put("lastBatchSize", lastBatchSize);
+        stats.put("lastBatchMs", lastBatchMs);
+        return stats;
+    }
+}
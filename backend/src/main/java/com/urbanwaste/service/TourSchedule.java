@@ -0,0 +1,232 @@
+package com.urbanwaste.service;
+
+import com.urbanwaste.model.Tournee;
+import com.urbanwaste.util.EntityStore;
+import com.urbanwaste.util.IntObjectHashMap;
+import com.urbanwaste.util.IntervalTree;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Time slots of the tours still to be driven, per employee and per vehicle, for the
+ * double-booking rules.
+ *
+ * Each tour that is not TERMINEE occupies [start, end) in epoch minutes, from its
+ * planned day and its heureDebut/heureFin. Every employee and every vehicle has an
+ * interval tree of the slots of its tours, so a conflict check costs O(log n + k)
+ * instead of a scan of all the tours. The schedule follows the routes store as writes
+ * are accepted (not only once durable), so that a write sees those queued before it.
+ */
+class TourSchedule implements EntityStore.Listener<Tournee> {
+
+    private static final long MINUTES_PER_DAY = 24 * 60;
+    // A tour with a start but no end is taken to last one hour
+    private static final long DEFAULT_DURATION = 60;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    // Guarded by this
+    private final IntObjectHashMap<IntervalTree<Slot>> byEmployee = new IntObjectHashMap<>();
+    private final IntObjectHashMap<IntervalTree<Slot>> byVehicle = new IntObjectHashMap<>();
+    private final IntObjectHashMap<Slot> byRoute = new IntObjectHashMap<>();
+
+    @Override
+    public synchronized void loaded(List<Tournee> routes) {
+        byEmployee.clear();
+        byVehicle.clear();
+        byRoute.clear();
+        for (Tournee route : routes) {
+            add(route);
+        }
+    }
+
+    @Override
+    public synchronized void changed(Tournee before, Tournee after) {
+        remove(after != null ? after.getId() : before.getId());
+        if (after != null) {
+            add(after);
+        }
+    }
+
+    /**
+     * Overlay for one write: the routes it puts are checked against each other and
+     * replace their stored version in the checks
+     */
+    Draft draft() {
+        return new Draft();
+    }
+
+    /**
+     * Slot a route occupies, or null if it is not scheduled (no date, or TERMINEE)
+     */
+    Slot slotOf(Tournee route) {
+        if (route.getDatePlanifiee() == null || "TERMINEE".equals(route.getStatut())) {
+            return null;
+        }
+        LocalDate day = route.getDatePlanifiee().toInstant().atZone(zone).toLocalDate();
+        long dayStart = day.atStartOfDay(zone).toEpochSecond() / 60;
+        int from = minuteOfDay(route.getHeureDebut());
+        if (from < 0) {
+            // No usable start hour: the whole day is taken (conservative)
+            return new Slot(route, dayStart, dayStart + MINUTES_PER_DAY);
+        }
+        int to = minuteOfDay(route.getHeureFin());
+        long end;
+        if (to < 0) {
+            end = dayStart + from + DEFAULT_DURATION;
+        } else if (to <= from) {
+            // Ends after midnight
+            end = dayStart + MINUTES_PER_DAY + to;
+        } else {
+            end = dayStart + to;
+        }
+        return new Slot(route, dayStart + from, end);
+    }
+
+    // "HH:mm" or "H:mm" (a bare hour is accepted); -1 if missing or invalid
+    private static int minuteOfDay(String heure) {
+        if (heure == null || heure.trim().isEmpty()) {
+            return -1;
+        }
+        String[] parts = heure.trim().split(":");
+        try {
+            int hours = Integer.parseInt(parts[0]);
+            int minutes = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+            if (hours < 0 || hours > 23 || minutes < 0 || minutes > 59) {
+                return -1;
+            }
+            return hours * 60 + minutes;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int employeeId(Tournee route) {
+        return route.getEmploye() != null ? route.getEmploye().getId() : 0;
+    }
+
+    private static int vehicleId(Tournee route) {
+        return route.getVehicle() != null ? route.getVehicle().getId() : 0;
+    }
+
+    private void add(Tournee route) {
+        Slot slot = slotOf(route);
+        if (slot == null) {
+            return;
+        }
+        byRoute.put(route.getId(), slot);
+        insert(byEmployee, employeeId(route), slot);
+        insert(byVehicle, vehicleId(route), slot);
+    }
+
+    private void remove(int routeId) {
+        Slot slot = byRoute.remove(routeId);
+        if (slot == null) {
+            return;
+        }
+        delete(byEmployee, employeeId(slot.route), slot);
+        delete(byVehicle, vehicleId(slot.route), slot);
+    }
+
+    private static void insert(IntObjectHashMap<IntervalTree<Slot>> trees, int key, Slot slot) {
+        if (key == 0) {
+            return;
+        }
+        IntervalTree<Slot> tree = trees.get(key);
+        if (tree == null) {
+            tree = new IntervalTree<>();
+            trees.put(key, tree);
+        }
+        tree.put(slot.start, slot.end, slot.route.getId(), slot);
+    }
+
+    private static void delete(IntObjectHashMap<IntervalTree<Slot>> trees, int key, Slot slot) {
+        IntervalTree<Slot> tree = key != 0 ? trees.get(key) : null;
+        if (tree != null) {
+            tree.remove(slot.start, slot.route.getId());
+            if (tree.isEmpty()) {
+                trees.remove(key);
+            }
+        }
+    }
+
+    // First slot of the tree overlapping the given one, skipping the ids to ignore
+    private static Tournee firstOverlap(IntervalTree<Slot> tree, Slot slot, Set<Integer> ignored) {
+        if (tree == null) {
+            return null;
+        }
+        for (Slot other : tree.overlapping(slot.start, slot.end)) {
+            int id = other.route.getId();
+            if (id != slot.route.getId() && !ignored.contains(id)) {
+                return other.route;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Time taken by a scheduled route, in epoch minutes
+     */
+    static final class Slot {
+        final Tournee route;
+        final long start;
+        final long end;
+
+        Slot(Tournee route, long start, long end) {
+            this.route = route;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Conflict checks of one write. Routes put in the draft shadow their stored version.
+     */
+    final class Draft {
+        private final TourSchedule local = new TourSchedule();
+        private final Set<Integer> shadowed = new HashSet<>();
+
+        /**
+         * Record a route written by this write (after its checks)
+         */
+        void put(Tournee route) {
+            shadowed.add(route.getId());
+            local.changed(null, route);
+        }
+
+        /**
+         * Another tour of the same employee overlapping the route's slot, or null
+         */
+        Tournee employeeConflict(Tournee route) {
+            return conflict(route, employeeId(route), true);
+        }
+
+        /**
+         * Another tour of the same vehicle overlapping the route's slot, or null
+         */
+        Tournee vehicleConflict(Tournee route) {
+            return conflict(route, vehicleId(route), false);
+        }
+
+        private Tournee conflict(Tournee route, int key, boolean employee) {
+            Slot slot = slotOf(route);
+            if (slot == null || key == 0) {
+                return null;
+            }
+            Tournee found;
+            synchronized (local) {
+                found = firstOverlap((employee ? local.byEmployee : local.byVehicle).get(key), slot, Set.of());
+            }
+            if (found != null) {
+                return found;
+            }
+            synchronized (TourSchedule.this) {
+                return firstOverlap((employee ? byEmployee : byVehicle).get(key), slot, shadowed);
+            }
+        }
+    }
+}
@@ -2,6 +2,9 @@ package com.urbanwaste.service;
 
 import com.urbanwaste.model.Vehicule;
 import com.urbanwaste.model.VehiculesWrapper; // Assuming you have this wrapper model
+import com.urbanwaste.util.EntityStore;
+import com.urbanwaste.util.ReadView;
+import com.urbanwaste.util.SecondaryIndex;
 import com.urbanwaste.util.XMLHandler;
 import com.urbanwaste.exception.XMLValidationException;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,7 +14,6 @@ import jakarta.annotation.PostConstruct;
 import jakarta.xml.bind.JAXBException;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
 
 @Service
 public class VehicleService {
@@ -21,19 +23,24 @@ public class VehicleService {
     @Autowired
     private XMLHandler xmlHandler;
     
+    private EntityStore<VehiculesWrapper, Vehicule> store;
+    
     // Using a separate counter for vehicles
     private AtomicInteger idCounter = new AtomicInteger(1);
     
+    private SecondaryIndex<Vehicule> indexes;
+    
     @PostConstruct
     public void init() {
+        store = xmlHandler.getStore(VEHICLES_FILE, VehiculesWrapper.class,
+            VehiculesWrapper::getVehicules, VehiculesWrapper::setVehicules, Vehicule::getId, Vehicule::copy);
+        indexes = new SecondaryIndex<>(store, Vehicule::getId)
+            .on("etat", Vehicule::getEtat, true)
+            .attach();
+        
         if (xmlHandler.fileExists(VEHICLES_FILE)) {
             try {
-                List<Vehicule> vehicles = getAllVehicles();
-                if (!vehicles.isEmpty()) {
-                    // Assuming Vehicule has an getId() method
-                    int maxId = vehicles.stream().mapToInt(Vehicule::getId).max().orElse(0);
-                    idCounter.set(maxId + 1);
-                }
+                idCounter.set(store.maxId() + 1);
             } catch (JAXBException e) {
                 System.err.println("Failed to load existing vehicles: " + e.getMessage());
             }
@@ -41,177 +48,103 @@ public class VehicleService {
     }
     
     /**
-     * Get all vehicles
+     * Get all vehicles (served from the in-memory store)
      */
     public List<Vehicule> getAllVehicles() throws JAXBException {
-        // FIX: Replaces XmlList/XMLHandler.read()
-        VehiculesWrapper wrapper = xmlHandler.loadFromXML(VEHICLES_FILE, VehiculesWrapper.class);
-        // Ensure we always return a non-null list
-        if (wrapper == null || wrapper.getVehicules() == null) {
-            return new ArrayList<>();
-        }
-        return wrapper.getVehicules();
+        return store.getAll();
+    }
+    
+    /**
+     * Get all vehicles as of a consistent view (see XMLHandler.view())
+     */
+    public List<Vehicule> getAllVehicles(ReadView view) throws JAXBException {
+        return view.getAll(store);
     }
     
     /**
      * Get vehicle by ID
      */
     public Optional<Vehicule> getVehicleById(int id) throws JAXBException {
-        return getAllVehicles().stream()
-            .filter(v -> v.getId() == id)
-            .findFirst();
+        return store.findById(id);
     }
     
     /**
-     * Create new vehicle - synchronized write operation
+     * Create new vehicle - writes are serialized by the store
      */
-    public synchronized Vehicule createVehicle(Vehicule vehicle) throws JAXBException, XMLValidationException {
-        VehiculesWrapper wrapper = xmlHandler.loadFromXML(VEHICLES_FILE, VehiculesWrapper.class);
-        
-        // Ensure wrapper and list are initialized
-        if (wrapper == null) {
-            wrapper = new VehiculesWrapper();
-        }
-        List<Vehicule> vehicles = wrapper.getVehicules();
-        if (vehicles == null) {
-            vehicles = new ArrayList<>();
-            wrapper.setVehicules(vehicles);
-        }
-        
-        vehicle.setId(idCounter.getAndIncrement());
-        
-        // Add default status if not set
-        if (vehicle.getEtat() == null) {
-            vehicle.setEtat("DISPONIBLE");
-        }
-        if (vehicle.getStatut() == null) {
-            vehicle.setStatut(vehicle.getEtat());
-        }
-        
-        vehicles.add(vehicle);
-        wrapper.setVehicules(vehicles);
-        
-        xmlHandler.saveToXML(wrapper, VEHICLES_FILE);
-        
-        return vehicle;
+    public Vehicule createVehicle(Vehicule vehicle) throws JAXBException, XMLValidationException {
+        return store.write(tx -> {
+            vehicle.setId(nextId(tx));
+            
+            // Add default status if not set
+            if (vehicle.getEtat() == null) {
+                vehicle.setEtat("DISPONIBLE");
+            }
+            if (vehicle.getStatut() == null) {
+                vehicle.setStatut(vehicle.getEtat());
+            }
+            
+            tx.put(vehicle);
+            return vehicle;
+        });
     }
     
     /**
-     * Update existing vehicle - synchronized write operation
+     * Update existing vehicle - writes are serialized by the store
      */
-    public synchronized Optional<Vehicule> updateVehicle(int id, Vehicule updatedVehicle) throws JAXBException, XMLValidationException {
-        VehiculesWrapper wrapper = xmlHandler.loadFromXML(VEHICLES_FILE, VehiculesWrapper.class);
-        
-        // Ensure wrapper and list are initialized
-        if (wrapper == null) {
-            wrapper = new VehiculesWrapper();
-        }
-        List<Vehicule> vehicles = wrapper.getVehicules();
-        if (vehicles == null) {
-            vehicles = new ArrayList<>();
-            wrapper.setVehicules(vehicles);
-        }
-        
-        Optional<Vehicule> existing = vehicles.stream()
-            .filter(v -> v.getId() == id)
-            .findFirst();
-        
-        if (existing.isEmpty()) {
-            return Optional.empty();
-        }
-        
-        vehicles.removeIf(v -> v.getId() == id);
-        updatedVehicle.setId(id);
-        vehicles.add(updatedVehicle);
-        
-        wrapper.setVehicules(vehicles);
-        xmlHandler.saveToXML(wrapper, VEHICLES_FILE);
-        
-        return Optional.of(updatedVehicle);
+    public Optional<Vehicule> updateVehicle(int id, Vehicule updatedVehicle) throws JAXBException, XMLValidationException {
+        return store.write(tx -> {
+            if (tx.find(id).isEmpty()) {
+                return Optional.empty();
+            }
+            
+            updatedVehicle.setId(id);
+            tx.put(updatedVehicle);
+            
+            return Optional.of(updatedVehicle);
+        });
     }
     
     /**
-     * Delete vehicle - synchronized write operation
+     * Delete vehicle - writes are serialized by the store
      */
-    public synchronized boolean deleteVehicle(int id) throws JAXBException, XMLValidationException {
-        VehiculesWrapper wrapper = xmlHandler.loadFromXML(VEHICLES_FILE, VehiculesWrapper.class);
-        
-        // Ensure wrapper and list are initialized
-        if (wrapper == null) {
-            wrapper = new VehiculesWrapper();
-        }
-        List<Vehicule> vehicles = wrapper.getVehicules();
-        if (vehicles == null) {
-            vehicles = new ArrayList<>();
-            wrapper.setVehicules(vehicles);
-        }
-        
-        boolean removed = vehicles.removeIf(v -> v.getId() == id);
-        
-        if (removed) {
-            wrapper.setVehicules(vehicles);
-            xmlHandler.saveToXML(wrapper, VEHICLES_FILE);
-        }
-        
-        return removed;
+    public boolean deleteVehicle(int id) throws JAXBException, XMLValidationException {
+        return store.write(tx -> tx.remove(id));
     }
     
     /**
      * Get vehicles by status
      */
     public List<Vehicule> getVehiclesByStatus(String status) throws JAXBException {
-        return getAllVehicles().stream()
-            .filter(v -> status.equalsIgnoreCase(v.getEtat()))
-            .collect(Collectors.toList());
+        return indexes.find("etat", status);
     }
     
     /**
-     * Update vehicle status - synchronized to prevent race conditions
+     * Update vehicle status (copy-on-write: readers keep the previous version until the commit)
      * Valid statuses: DISPONIBLE, EN_PANNE, EN_REPARATION
      */
-    public synchronized Optional<Vehicule> updateVehicleStatus(int id, String newStatus) throws JAXBException, XMLValidationException {
+    public Optional<Vehicule> updateVehicleStatus(int id, String newStatus) throws JAXBException, XMLValidationException {
         // Validate status
         if (!isValidStatus(newStatus)) {
             throw new IllegalArgumentException("Invalid status: " + newStatus + ". Must be DISPONIBLE, EN_PANNE, or EN_REPARATION");
         }
         
-        VehiculesWrapper wrapper = xmlHandler.loadFromXML(VEHICLES_FILE, VehiculesWrapper.class);
-        
-        // Ensure wrapper and list are initialized
-        if (wrapper == null) {
-            wrapper = new VehiculesWrapper();
-        }
-        List<Vehicule> vehicles = wrapper.getVehicules();
-        if (vehicles == null) {
-            vehicles = new ArrayList<>();
-            wrapper.setVehicules(vehicles);
-        }
-        
-        Optional<Vehicule> existing = vehicles.stream()
-            .filter(v -> v.getId() == id)
-            .findFirst();
-        
-        if (existing.isEmpty()) {
-            return Optional.empty();
-        }
-        
-        Vehicule vehicle = existing.get();
-        String oldStatus = vehicle.getStatut() != null ? vehicle.getStatut() : vehicle.getEtat();
-        
-        // Update status
-        vehicle.setStatut(newStatus);
-        vehicle.setEtat(newStatus);
-        
-        // Update disponibilite based on status
-        vehicle.setDisponibilite("DISPONIBLE".equals(newStatus));
-        
-        vehicles.removeIf(v -> v.getId() == id);
-        vehicles.add(vehicle);
-        
-        wrapper.setVehicules(vehicles);
-        xmlHandler.saveToXML(wrapper, VEHICLES_FILE);
-        
-        return Optional.of(vehicle);
+        return store.write(tx -> {
+            Optional<Vehicule> existing = tx.edit(id);
+            if (existing.isEmpty()) {
+                return Optional.empty();
+            }
+            
+            Vehicule vehicle = existing.get();
+            
+            // Update status
+            vehicle.setStatut(newStatus);
+            vehicle.setEtat(newStatus);
+            
+            // Update disponibilite based on status
+            vehicle.setDisponibilite("DISPONIBLE".equals(newStatus));
+            
+            return Optional.of(vehicle);
+        });
     }
     
     /**
@@ -228,66 +161,58 @@ public class VehicleService {
      * Merge imported vehicles with existing vehicles (avoiding duplicates by ID)
      * Returns the number of vehicles actually imported (new vehicles only)
      */
-    public synchronized int mergeVehicles(List<Vehicule> importedVehicles) throws JAXBException, XMLValidationException {
-        VehiculesWrapper wrapper = xmlHandler.loadFromXML(VEHICLES_FILE, VehiculesWrapper.class);
-        if (wrapper == null) {
-            wrapper = new VehiculesWrapper();
-        }
-        List<Vehicule> existingVehicles = wrapper.getVehicules();
-        if (existingVehicles == null) {
-            existingVehicles = new ArrayList<>();
-        }
-        
-        // Create a set of existing IDs for quick lookup
-        Set<Integer> existingIds = existingVehicles.stream()
-            .map(Vehicule::getId)
-            .collect(Collectors.toSet());
-        
-        int importedCount = 0;
-        
-        // Merge vehicles: update existing ones or add new ones
-        for (Vehicule importedVehicle : importedVehicles) {
-            // Find existing vehicle with same ID
-            Vehicule existingVehicle = existingVehicles.stream()
-                .filter(v -> v.getId() == importedVehicle.getId())
-                .findFirst()
-                .orElse(null);
+    public int mergeVehicles(List<Vehicule> importedVehicles) throws JAXBException, XMLValidationException {
+        return store.write(tx -> {
+            int importedCount = 0;
             
-            if (existingVehicle != null) {
-                // Update existing vehicle
-                existingVehicle.setTypeVehicule(importedVehicle.getTypeVehicule() != null ? importedVehicle.getTypeVehicule() : existingVehicle.getTypeVehicule());
-                existingVehicle.setCapacite(importedVehicle.getCapacite() != 0 ? importedVehicle.getCapacite() : existingVehicle.getCapacite());
-                existingVehicle.setDisponibilite(importedVehicle.isDisponibilite());
-                existingVehicle.setImmatriculation(importedVehicle.getImmatriculation() != null ? importedVehicle.getImmatriculation() : existingVehicle.getImmatriculation());
-                existingVehicle.setStatut(importedVehicle.getStatut() != null ? importedVehicle.getStatut() : existingVehicle.getStatut());
-                existingVehicle.setEtat(importedVehicle.getEtat() != null ? importedVehicle.getEtat() : existingVehicle.getEtat());
-                existingVehicle.setConducteur(importedVehicle.getConducteur() != null ? importedVehicle.getConducteur() : existingVehicle.getConducteur());
+            // Merge vehicles: update existing ones or add new ones
+            for (Vehicule importedVehicle : importedVehicles) {
+                // Find existing vehicle with same ID
+                Vehicule existingVehicle = tx.edit(importedVehicle.getId()).orElse(null);
                 
-                importedCount++; // Count updated vehicles too
-            } else {
-                // Add new vehicle
-                // Assign new ID if ID is 0 or conflicts
-                if (importedVehicle.getId() == 0 || existingIds.contains(importedVehicle.getId())) {
-                    importedVehicle.setId(idCounter.getAndIncrement());
+                if (existingVehicle != null) {
+                    // Update existing vehicle
+                    existingVehicle.setTypeVehicule(importedVehicle.getTypeVehicule() != null ? importedVehicle.getTypeVehicule() : existingVehicle.getTypeVehicule());
+                    existingVehicle.setCapacite(importedVehicle.getCapacite() != 0 ? importedVehicle.getCapacite() : existingVehicle.getCapacite());
+                    existingVehicle.setDisponibilite(importedVehicle.isDisponibilite());
+                    existingVehicle.setImmatriculation(importedVehicle.getImmatriculation() != null ? importedVehicle.getImmatriculation() : existingVehicle.getImmatriculation());
+                    existingVehicle.setStatut(importedVehicle.getStatut() != null ? importedVehicle.getStatut() : existingVehicle.getStatut());
+                    existingVehicle.setEtat(importedVehicle.getEtat() != null ? importedVehicle.getEtat() : existingVehicle.getEtat());
+                    existingVehicle.setConducteur(importedVehicle.getConducteur() != null ? importedVehicle.getConducteur() : existingVehicle.getConducteur());
+                    
+                    importedCount++; // Count updated vehicles too
+                } else {
+                    // Add new vehicle
+                    // Assign new ID if ID is 0; an explicit one is kept, and later ids go past it
+                    if (importedVehicle.getId() == 0) {
+                        importedVehicle.setId(nextId(tx));
+                    } else {
+                        idCounter.accumulateAndGet(importedVehicle.getId() + 1, Math::max);
+                    }
+                    
+                    // Set default values if not provided
+                    if (importedVehicle.getEtat() == null) {
+                        importedVehicle.setEtat("DISPONIBLE");
+                    }
+                    if (importedVehicle.getStatut() == null) {
+                        importedVehicle.setStatut(importedVehicle.getEtat());
+                    }
+                    
+                    tx.put(importedVehicle);
+                    importedCount++;
                 }
-                
-                // Set default values if not provided
-                if (importedVehicle.getEtat() == null) {
-                    importedVehicle.setEtat("DISPONIBLE");
-                }
-                if (importedVehicle.getStatut() == null) {
-                    importedVehicle.setStatut(importedVehicle.getEtat());
-                }
-                
-                existingVehicles.add(importedVehicle);
-                existingIds.add(importedVehicle.getId());
-                importedCount++;
             }
+            
+            return importedCount;
+        });
+    }
+    
+    // Next unused id: imported records keep their own ids, which the counter may not have reached
+    private int nextId(EntityStore.Transaction<Vehicule> tx) {
+        int id = idCounter.getAndIncrement();
+        while (tx.contains(id)) {
+            id = idCounter.getAndIncrement();
         }
-        
-        wrapper.setVehicules(existingVehicles);
-        xmlHandler.saveToXML(wrapper, VEHICLES_FILE);
-        
-        return importedCount;
+        return id;
     }
 }
\ No newline at end of file
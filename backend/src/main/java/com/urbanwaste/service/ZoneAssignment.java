@@ -0,0 +1,296 @@
+package com.urbanwaste.service;
+
+import com.urbanwaste.model.PointCollecte;
+import com.urbanwaste.model.Sommet;
+import com.urbanwaste.model.Zone;
+import com.urbanwaste.util.EntityStore;
+import com.urbanwaste.util.GeoUtils;
+import com.urbanwaste.util.IntObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Zone of every collection point, computed once when the point is created or moved
+ * (point-in-polygon against the zones whose bounding box holds it), and recomputed for
+ * all points when a zone boundary changes. Zone-scoped queries then read the members
+ * of a zone instead of matching text against every localisation.
+ *
+ * Follows the points store directly, and the zones store through {@link #zones()}. A
+ * point inside several overlapping zones belongs to the one with the lowest id. Each
+ * zone also keeps its own {@link PointStatistics}.
+ */
+class ZoneAssignment implements EntityStore.Listener<PointCollecte> {
+
+    private final float criticalThreshold;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by lock
+    private final IntObjectHashMap<PointCollecte> points = new IntObjectHashMap<>();
+    private final IntObjectHashMap<Area> zoneOfPoint = new IntObjectHashMap<>();
+    private final IntObjectHashMap<Area> areas = new IntObjectHashMap<>();
+    private final Map<String, Area> areasByName = new HashMap<>();
+    // Areas by id, the order in which a point's zone is searched
+    private List<Area> searchOrder = new ArrayList<>();
+
+    // Bumped whenever some point changes zone
+    private volatile long version;
+
+    ZoneAssignment(float criticalThreshold) {
+        this.criticalThreshold = criticalThreshold;
+    }
+
+    @Override
+    public void loaded(List<PointCollecte> loaded) {
+        lock.writeLock().lock();
+        try {
+            points.clear();
+            for (PointCollecte point : loaded) {
+                points.put(point.getId(), point);
+            }
+            reassignAll();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void changed(PointCollecte before, PointCollecte after) {
+        lock.writeLock().lock();
+        try {
+            int id = after != null ? after.getId() : before.getId();
+            PointCollecte indexed = after != null ? points.put(id, after) : points.remove(id);
+            Area previous = zoneOfPoint.remove(id);
+            if (previous != null) {
+                previous.members.clear(id);
+                previous.statistics.changed(indexed, null);
+            }
+            Area current = null;
+            if (after != null) {
+                // Only a move needs a new point-in-polygon test
+                boolean moved = indexed == null || indexed.getLatitude() != after.getLatitude()
+                    || indexed.getLongitude() != after.getLongitude();
+                current = moved ? locate(after) : previous;
+                if (current != null) {
+                    assign(after, current);
+                }
+            }
+            if (previous != current) {
+                version++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Listener to register on the zones store
+     */
+    EntityStore.Listener<Zone> zones() {
+        return new EntityStore.Listener<>() {
+            @Override
+            public void loaded(List<Zone> zones) {
+                lock.writeLock().lock();
+                try {
+                    areas.clear();
+                    for (Zone zone : zones) {
+                        areas.put(zone.getId(), new Area(zone, criticalThreshold));
+                    }
+                    zonesChanged();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+
+            @Override
+            public void changed(Zone before, Zone after) {
+                lock.writeLock().lock();
+                try {
+                    if (after != null) {
+                        areas.put(after.getId(), new Area(after, criticalThreshold));
+                    } else {
+                        areas.remove(before.getId());
+                    }
+                    zonesChanged();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        };
+    }
+
+    /**
+     * Zone a point belongs to, or null if it is outside every zone (or unknown)
+     */
+    Integer zoneOf(int pointId) {
+        lock.readLock().lock();
+        try {
+            Area area = zoneOfPoint.get(pointId);
+            return area != null ? area.zone.getId() : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Zone designated by its name (case-insensitive) or its id, or null
+     */
+    Zone resolve(String nameOrId) {
+        String key = nameOrId.trim();
+        lock.readLock().lock();
+        try {
+            Area area = areasByName.get(key.toUpperCase(Locale.ROOT));
+            if (area == null && !key.isEmpty() && key.chars().allMatch(Character::isDigit) && key.length() < 10) {
+                area = areas.get(Integer.parseInt(key));
+            }
+            return area != null ? area.zone : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Points of a zone, by id (empty for an unknown zone)
+     */
+    List<PointCollecte> pointsIn(int zoneId) {
+        lock.readLock().lock();
+        try {
+            Area area = areas.get(zoneId);
+            List<PointCollecte> result = new ArrayList<>(area != null ? area.members.cardinality() : 0);
+            if (area != null) {
+                for (int id = area.members.nextSetBit(0); id >= 0; id = area.members.nextSetBit(id + 1)) {
+                    result.add(points.get(id));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Snapshot of the ids of the points in a zone (empty for an unknown zone)
+     */
+    BitSet memberIds(int zoneId) {
+        lock.readLock().lock();
+        try {
+            Area area = areas.get(zoneId);
+            return area != null ? (BitSet) area.members.clone() : new BitSet();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Statistics of the points of a zone, or null for an unknown zone
+     */
+    Map<String, Object> statistics(int zoneId) {
+        lock.readLock().lock();
+        try {
+            Area area = areas.get(zoneId);
+            return area != null ? area.statistics.toMap() : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    // Called with the write lock held
+    private void zonesChanged() {
+        List<Area> order = new ArrayList<>();
+        areas.forEachValue(order::add);
+        order.sort(Comparator.comparingInt(a -> a.zone.getId()));
+        searchOrder = order;
+        areasByName.clear();
+        // The lowest id wins a name used twice, as for overlapping boundaries
+        for (int i = order.size() - 1; i >= 0; i--) {
+            Area area = order.get(i);
+            if (area.zone.getNom() != null) {
+                areasByName.put(area.zone.getNom().trim().toUpperCase(Locale.ROOT), area);
+            }
+        }
+        reassignAll();
+    }
+
+    // Called with the write lock held
+    private void reassignAll() {
+        zoneOfPoint.clear();
+        for (Area area : searchOrder) {
+            area.members.clear();
+            area.statistics.loaded(List.of());
+        }
+        points.forEachValue(point -> {
+            Area area = locate(point);
+            if (area != null) {
+                assign(point, area);
+            }
+        });
+        version++;
+    }
+
+    private void assign(PointCollecte point, Area area) {
+        zoneOfPoint.put(point.getId(), area);
+        area.members.set(point.getId());
+        area.statistics.changed(null, point);
+    }
+
+    private Area locate(PointCollecte point) {
+        if (!GeoUtils.isLocated(point)) {
+            return null;
+        }
+        double lat = point.getLatitude();
+        double lon = point.getLongitude();
+        for (Area area : searchOrder) {
+            if (area.contains(lat, lon)) {
+                return area;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A zone with its boundary unpacked for fast tests, its members and their statistics
+     */
+    private static final class Area {
+        final Zone zone;
+        final double[] lats;
+        final double[] lons;
+        double minLat = Double.POSITIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+        double minLon = Double.POSITIVE_INFINITY;
+        double maxLon = Double.NEGATIVE_INFINITY;
+        final BitSet members = new BitSet();
+        final PointStatistics statistics;
+
+        Area(Zone zone, float criticalThreshold) {
+            this.zone = zone;
+            List<Sommet> polygon = zone.getPolygone() != null ? zone.getPolygone() : List.of();
+            lats = new double[polygon.size()];
+            lons = new double[polygon.size()];
+            for (int i = 0; i < polygon.size(); i++) {
+                lats[i] = polygon.get(i).getLatitude();
+                lons[i] = polygon.get(i).getLongitude();
+                minLat = Math.min(minLat, lats[i]);
+                maxLat = Math.max(maxLat, lats[i]);
+                minLon = Math.min(minLon, lons[i]);
+                maxLon = Math.max(maxLon, lons[i]);
+            }
+            statistics = new PointStatistics(criticalThreshold);
+        }
+
+        boolean contains(double lat, double lon) {
+            return lats.length >= 3 && lat >= minLat && lat <= maxLat && lon >= minLon && lon <= maxLon
+                && GeoUtils.polygonContains(lats, lons, lat, lon);
+        }
+    }
+}
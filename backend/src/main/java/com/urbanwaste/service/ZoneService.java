@@ -0,0 +1,119 @@
+package com.urbanwaste.service;
+
+import com.urbanwaste.model.Sommet;
+import com.urbanwaste.model.Zone;
+import com.urbanwaste.model.ZonesWrapper;
+import com.urbanwaste.util.EntityStore;
+import com.urbanwaste.util.XMLHandler;
+import com.urbanwaste.exception.XMLValidationException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.xml.bind.JAXBException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collection zones and their boundaries. Every change of a boundary reassigns the
+ * collection points to their zone (see {@link CollectionPointService#getZoneOf}).
+ */
+@Service
+public class ZoneService {
+
+    private static final String ZONES_FILE = "zones.xml";
+
+    @Autowired
+    private XMLHandler xmlHandler;
+
+    @Autowired
+    private CollectionPointService collectionPointService;
+
+    private EntityStore<ZonesWrapper, Zone> store;
+
+    private AtomicInteger idCounter = new AtomicInteger(1);
+
+    @PostConstruct
+    public void init() {
+        store = xmlHandler.getStore(ZONES_FILE, ZonesWrapper.class,
+            ZonesWrapper::getZones, ZonesWrapper::setZones, Zone::getId, Zone::copy);
+        store.addListener(collectionPointService.getZoneAssignment().zones());
+
+        // Loading now also assigns the points, so zone names resolve from the first request
+        if (xmlHandler.fileExists(ZONES_FILE)) {
+            try {
+                idCounter.set(store.maxId() + 1);
+            } catch (JAXBException e) {
+                System.err.println("Failed to load existing zones: " + e.getMessage());
+            }
+        }
+    }
+
+    public List<Zone> getAllZones() throws JAXBException {
+        return store.getAll();
+    }
+
+    public Optional<Zone> getZoneById(int id) throws JAXBException {
+        return store.findById(id);
+    }
+
+    /**
+     * Create a zone; throws IllegalArgumentException for an invalid boundary or a name in use
+     */
+    public Zone createZone(Zone zone) throws JAXBException, XMLValidationException {
+        validate(zone);
+        return store.write(tx -> {
+            checkNameFree(zone.getNom(), 0, tx);
+            zone.setId(idCounter.getAndIncrement());
+            tx.put(zone);
+            return zone;
+        });
+    }
+
+    public Optional<Zone> updateZone(int id, Zone zone) throws JAXBException, XMLValidationException {
+        validate(zone);
+        return store.write(tx -> {
+            if (tx.find(id).isEmpty()) {
+                return Optional.empty();
+            }
+            checkNameFree(zone.getNom(), id, tx);
+            zone.setId(id);
+            tx.put(zone);
+            return Optional.of(zone);
+        });
+    }
+
+    public boolean deleteZone(int id) throws JAXBException, XMLValidationException {
+        return store.write(tx -> tx.remove(id));
+    }
+
+    private void validate(Zone zone) {
+        if (zone.getNom() == null || zone.getNom().trim().isEmpty()) {
+            throw new IllegalArgumentException("Zone must have a nom (name)");
+        }
+        if (zone.getNom().trim().chars().allMatch(Character::isDigit)) {
+            // Zone filters accept an id as well as a name
+            throw new IllegalArgumentException("Zone name cannot be a number");
+        }
+        List<Sommet> polygon = zone.getPolygone();
+        if (polygon == null || polygon.size() < 3) {
+            throw new IllegalArgumentException("Zone boundary (polygone) needs at least 3 vertices");
+        }
+        for (Sommet sommet : polygon) {
+            if (sommet == null || Math.abs(sommet.getLatitude()) > 90 || Math.abs(sommet.getLongitude()) > 180) {
+                throw new IllegalArgumentException("Invalid vertex in zone boundary");
+            }
+        }
+    }
+
+    // Names designate zones in filters, so two zones cannot share one (whatever the case)
+    private void checkNameFree(String nom, int ownId, EntityStore.Transaction<Zone> tx) {
+        String name = nom.trim();
+        for (Zone other : tx.all()) {
+            if (other.getId() != ownId && other.getNom() != null && other.getNom().trim().equalsIgnoreCase(name)) {
+                throw new IllegalArgumentException("A zone named " + name + " already exists");
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.urbanwaste.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of entity mutations for one XML file (the "journal" persistence mode).
+ *
+ * Each record holds the full state of one entity after a put, or just its id after a
+ * delete, so replaying the log over any older snapshot of the file gives the current
+ * state. The records of one transaction are written as a single frame (length, record
+ * count, records, CRC32), so a transaction is replayed entirely or not at all.
+ * A torn frame at the tail (crash during append) is dropped on read.
+ */
+class EntityJournal {
+
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+
+    private final File file;
+    private final XMLHandler.Durability durability;
+    private FileChannel channel;
+    private int records;
+    private long committedLength = -1;
+
+    EntityJournal(File file, XMLHandler.Durability durability) {
+        this.file = file;
+        this.durability = durability;
+    }
+
+    /**
+     * Number of records appended since the last truncate (or replayed on startup)
+     */
+    int size() {
+        return records;
+    }
+
+    boolean exists() {
+        return file.exists() && file.length() > 0;
+    }
+
+    /**
+     * Encode one record into a batch buffer; the batch is written by {@link #append}
+     */
+    static void encode(DataOutputStream batch, byte op, int id, String type, byte[] xml) throws IOException {
+        batch.writeByte(op);
+        batch.writeInt(id);
+        batch.writeUTF(type);
+        batch.writeInt(xml.length);
+        batch.write(xml);
+    }
+
+    /**
+     * Append a batch of encoded records as one frame and force it to disk
+     * (unless the durability level is NONE).
+     * On failure the file is cut back to its previous length.
+     */
+    synchronized void append(byte[] batch, int count) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(batch, 0, batch.length);
+        ByteBuffer frame = ByteBuffer.allocate(batch.length + 12);
+        frame.putInt(batch.length + 4).putInt(count).put(batch).putInt((int) crc.getValue());
+        frame.flip();
+
+        FileChannel ch = openChannel();
+        if (committedLength < 0) {
+            committedLength = ch.size();
+        }
+        try {
+            while (frame.hasRemaining()) {
+                ch.write(frame);
+            }
+            force(ch);
+        } catch (IOException e) {
+            try {
+                ch.truncate(committedLength);
+            } catch (IOException truncateError) {
+                e.addSuppressed(truncateError);
+            }
+            throw e;
+        }
+        committedLength += frame.limit();
+        records += count;
+    }
+
+    /**
+     * Read every intact record. A torn or corrupt tail is cut off the file so later
+     * appends start on a record boundary.
+     */
+    synchronized List<Record> readAll() throws IOException {
+        List<Record> result = new ArrayList<>();
+        if (!file.exists()) {
+            records = 0;
+            return result;
+        }
+
+        byte[] content = Files.readAllBytes(file.toPath());
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(content));
+        long validLength = 0;
+        try {
+            while (validLength < content.length) {
+                int length = in.readInt();
+                if (length < 4 || length > content.length - validLength - 8) {
+                    break;
+                }
+                int count = in.readInt();
+                byte[] bytes = new byte[length - 4];
+                in.readFully(bytes);
+                int expected = in.readInt();
+
+                CRC32 crc = new CRC32();
+                crc.update(bytes, 0, bytes.length);
+                if ((int) crc.getValue() != expected) {
+                    break;
+                }
+
+                DataInputStream body = new DataInputStream(new ByteArrayInputStream(bytes));
+                for (int i = 0; i < count; i++) {
+                    byte op = body.readByte();
+                    int id = body.readInt();
+                    String type = body.readUTF();
+                    byte[] xml = new byte[body.readInt()];
+                    body.readFully(xml);
+                    result.add(new Record(op, id, type, xml));
+                }
+                validLength += 4 + length + 4;
+            }
+        } catch (EOFException e) {
+            // Torn tail, handled below
+        }
+
+        if (validLength < content.length) {
+            System.err.println("[EntityJournal] Dropping " + (content.length - validLength)
+                + " bytes of incomplete records at the end of " + file.getName());
+            FileChannel ch = openChannel();
+            ch.truncate(validLength);
+            force(ch);
+        }
+        committedLength = validLength;
+        records = result.size();
+        return result;
+    }
+
+    /**
+     * Empty the log once its records have been folded into the XML snapshot
+     */
+    synchronized void truncate() throws IOException {
+        if (channel == null && !file.exists()) {
+            records = 0;
+            return;
+        }
+        FileChannel ch = openChannel();
+        ch.truncate(0);
+        force(ch);
+        committedLength = 0;
+        records = 0;
+    }
+
+    synchronized void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("[EntityJournal] Failed to close " + file.getName() + ": " + e.getMessage());
+            }
+            channel = null;
+        }
+    }
+
+    private void force(FileChannel ch) throws IOException {
+        if (durability != XMLHandler.Durability.NONE) {
+            ch.force(false);
+        }
+    }
+
+    private FileChannel openChannel() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            File parent = file.getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+            boolean created = !file.exists();
+            channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            // A new log file is only durable once its directory entry is
+            if (created && durability == XMLHandler.Durability.FULL && parent != null) {
+                XMLHandler.syncDirectory(parent);
+            }
+        }
+        return channel;
+    }
+
+    /**
+     * One decoded log record
+     */
+    static final class Record {
+        final byte op;
+        final int id;
+        final String type;
+        final byte[] xml;
+
+        Record(byte op, int id, String type, byte[] xml) {
+            this.op = op;
+            this.id = id;
+            this.type = type;
+            this.xml = xml;
+        }
+    }
+}
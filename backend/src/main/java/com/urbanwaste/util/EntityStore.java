@@ -0,0 +1,695 @@
+package com.urbanwaste.util;
+
+import com.urbanwaste.exception.XMLValidationException;
+
+import jakarta.xml.bind.JAXBException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Resident, versioned copy of the entities held in one XML file.
+ *
+ * The file is unmarshalled once (on first access) and every read is then served
+ * from memory. Writes go through {@link #write(Mutation)}: the mutation works on a
+ * private copy of the list, the result is written through to the XML file, and only
+ * once the save succeeded is the new list published to readers.
+ *
+ * Readers never lock: they read the volatile snapshot, a list and index that are never
+ * modified after publication, tagged with the version it was committed as. Mutations
+ * never change a published entity either; {@link Transaction#edit(int)} hands out a
+ * private copy, so a reader holding an older snapshot keeps a stable view.
+ *
+ * In journal mode the save is replaced by appending one record per changed entity to
+ * the store's {@link EntityJournal}; {@link #compact()} later folds the journal into
+ * the XML file, and loading replays the journal over the file.
+ *
+ * @param <W> JAXB wrapper type of the file (e.g. TourneesWrapper)
+ * @param <T> entity type held by the wrapper (e.g. Tournee)
+ */
+public class EntityStore<W, T> {
+
+    private final XMLHandler xmlHandler;
+    private final String fileName;
+    private final Class<W> wrapperClass;
+    private final Function<W, List<T>> listGetter;
+    private final BiConsumer<W, List<T>> listSetter;
+    private final ToIntFunction<T> idGetter;
+    private final UnaryOperator<T> copier;
+    private final EntityJournal journal;
+
+    // writeLock guards head and openBatch; flushLock lets one batch reach the disk at a time
+    private final Object writeLock = new Object();
+    private final Object flushLock = new Object();
+    private final AtomicBoolean compactionRequested = new AtomicBoolean();
+    private final List<Listener<T>> listeners = new CopyOnWriteArrayList<>();
+    private final List<Listener<T>> stagedListeners = new CopyOnWriteArrayList<>();
+
+    // Published, read-only, durable state. Replaced as a whole on every commit.
+    private volatile Snapshot<T> snapshot;
+    private long lastVersion;
+
+    // Latest state including writes not yet durable (null when equal to snapshot)
+    private Snapshot<T> head;
+    private Batch openBatch;
+
+    EntityStore(XMLHandler xmlHandler, String fileName, Class<W> wrapperClass,
+                Function<W, List<T>> listGetter, BiConsumer<W, List<T>> listSetter,
+                ToIntFunction<T> idGetter, UnaryOperator<T> copier, EntityJournal journal) {
+        this.xmlHandler = xmlHandler;
+        this.fileName = fileName;
+        this.wrapperClass = wrapperClass;
+        this.listGetter = listGetter;
+        this.listSetter = listSetter;
+        this.idGetter = idGetter;
+        this.copier = copier;
+        this.journal = journal;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Number of journal records not yet folded into the XML file (0 in snapshot mode)
+     */
+    public int getJournalSize() {
+        return journal != null ? journal.size() : 0;
+    }
+
+    /**
+     * Version of the published state, incremented on every successful commit
+     */
+    public long getVersion() throws JAXBException {
+        return current().version;
+    }
+
+    /**
+     * All entities, read-only. Never touches the disk once the store is loaded.
+     */
+    public List<T> getAll() throws JAXBException {
+        return current().entities;
+    }
+
+    /**
+     * Find an entity by its id through the primary-key index (O(1))
+     */
+    public Optional<T> findById(int id) throws JAXBException {
+        return Optional.ofNullable(current().byId.get(id));
+    }
+
+    /**
+     * Entity with the given id, or null. Same as findById without the Optional.
+     */
+    public T get(int id) throws JAXBException {
+        return current().byId.get(id);
+    }
+
+    /**
+     * Highest id currently stored (0 when empty), used to seed id counters
+     */
+    public int maxId() throws JAXBException {
+        int max = 0;
+        for (T entity : getAll()) {
+            max = Math.max(max, idGetter.applyAsInt(entity));
+        }
+        return max;
+    }
+
+    /**
+     * Build a fresh wrapper holding the current entities (for export/marshalling)
+     */
+    public W toWrapper() throws JAXBException {
+        W wrapper = newWrapper();
+        listSetter.accept(wrapper, new ArrayList<>(getAll()));
+        return wrapper;
+    }
+
+    /**
+     * Apply a mutation and write the result through to the XML file.
+     *
+     * Writes are group-committed: the mutation is applied to the in-memory head state
+     * right away (so later writers see it), and joins the open batch. The first writer
+     * of a batch waits up to the commit window (or until the batch is full), then
+     * persists the whole batch with one save/append. Every caller returns only once its
+     * batch is durable; readers keep seeing the last durable state until then.
+     */
+    public <R> R write(Mutation<T, R> mutation) throws JAXBException, XMLValidationException {
+        Batch batch;
+        boolean leader = false;
+        R result;
+        synchronized (writeLock) {
+            Snapshot<T> base = head != null ? head : current();
+            Transaction<T> tx = new Transaction<>(new ArrayList<>(base.entities), base.byId.copy(), idGetter, copier);
+            // A failed mutation only touched its private copies, so there is nothing to undo
+            result = mutation.apply(tx);
+            if (!tx.touched) {
+                return result;
+            }
+            // Checked per write so one invalid entity cannot fail a whole batch
+            validateChanged(tx);
+
+            Snapshot<T> staged = new Snapshot<>(Collections.unmodifiableList(tx.items), tx.byId, 0);
+            notifyStaged(base, staged, tx.changed);
+            head = staged;
+            if (openBatch == null) {
+                openBatch = new Batch(System.nanoTime());
+                leader = true;
+            }
+            batch = openBatch;
+            batch.changed.addAll(tx.changed);
+            if (++batch.writes >= xmlHandler.getGroupCommitMaxBatch()) {
+                writeLock.notifyAll();
+            }
+        }
+
+        if (leader) {
+            awaitWindow(batch);
+            synchronized (flushLock) {
+                flush(batch);
+            }
+        }
+        awaitDurable(batch);
+        return result;
+    }
+
+    // Let more writers join the batch until the window elapses or the batch is full
+    private void awaitWindow(Batch batch) {
+        long windowNanos = TimeUnit.MILLISECONDS.toNanos(xmlHandler.getGroupCommitWindowMs());
+        synchronized (writeLock) {
+            long remaining;
+            while (openBatch == batch && batch.writes < xmlHandler.getGroupCommitMaxBatch()
+                    && (remaining = batch.openedAt + windowNanos - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(writeLock, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Seal the batch and persist it. Called with flushLock held, so batches reach the
+     * disk one at a time and in order.
+     */
+    private void flush(Batch batch) {
+        if (batch.done.isDone()) {
+            return;
+        }
+        Snapshot<T> state;
+        synchronized (writeLock) {
+            if (openBatch == batch) {
+                openBatch = null;
+            }
+            state = head;
+        }
+
+        try {
+            persist(state, batch.changed);
+            synchronized (writeLock) {
+                publish(state, batch.changed);
+                if (head == state) {
+                    head = null;
+                }
+            }
+            batch.done.complete(null);
+        } catch (JAXBException | XMLValidationException | RuntimeException e) {
+            synchronized (writeLock) {
+                // Writes queued since the seal were applied on top of this batch, so they
+                // cannot be kept either: go back to the last durable state and fail them all.
+                Batch next = openBatch;
+                openBatch = null;
+                head = null;
+                try {
+                    reload();
+                } catch (JAXBException reloadError) {
+                    e.addSuppressed(reloadError);
+                }
+                batch.done.completeExceptionally(e);
+                if (next != null) {
+                    next.done.completeExceptionally(
+                        new JAXBException("Write to " + fileName + " discarded: an earlier batch failed to save", e));
+                }
+            }
+        }
+
+        if (journal != null) {
+            xmlHandler.requestCompaction(this);
+        }
+    }
+
+    private void persist(Snapshot<T> state, Set<Integer> changed) throws JAXBException, XMLValidationException {
+        if (journal != null) {
+            appendToJournal(state, changed);
+        } else {
+            W wrapper = newWrapper();
+            listSetter.accept(wrapper, new ArrayList<>(state.entities));
+            xmlHandler.saveToXML(wrapper, fileName);
+        }
+    }
+
+    private void awaitDurable(Batch batch) throws JAXBException, XMLValidationException {
+        try {
+            batch.done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JAXBException("Interrupted while waiting for " + fileName + " to be saved", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof JAXBException) {
+                throw (JAXBException) cause;
+            }
+            if (cause instanceof XMLValidationException) {
+                throw (XMLValidationException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new JAXBException("Failed to save " + fileName, cause);
+        }
+    }
+
+    /**
+     * Fold the journal into the XML file and empty it. Batches wait meanwhile, so the
+     * file and the truncated journal always describe the same durable state. If we crash
+     * between the save and the truncate, replaying the old records over the new file
+     * is harmless: every record carries the full entity state.
+     */
+    public void compact() throws JAXBException, XMLValidationException {
+        if (journal == null) {
+            return;
+        }
+        synchronized (flushLock) {
+            try {
+                if (journal.size() == 0 && !journal.exists()) {
+                    return;
+                }
+                W wrapper = newWrapper();
+                listSetter.accept(wrapper, new ArrayList<>(current().entities));
+                xmlHandler.saveToXML(wrapper, fileName);
+                journal.truncate();
+                System.out.println("[EntityStore] Compacted journal of " + fileName);
+            } catch (IOException e) {
+                throw new JAXBException("Failed to truncate journal of " + fileName, e);
+            } finally {
+                compactionRequested.set(false);
+            }
+        }
+    }
+
+    /**
+     * Mark a compaction as queued; false if one is already pending
+     */
+    boolean markCompactionRequested() {
+        return compactionRequested.compareAndSet(false, true);
+    }
+
+    void close() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Drop the in-memory state and unmarshal the file again
+     */
+    public void reload() throws JAXBException {
+        synchronized (writeLock) {
+            snapshot = null;
+            head = null;
+            load();
+        }
+    }
+
+    /**
+     * Make a state visible to readers under the next version and tell the listeners what
+     * changed (changed is null when the whole state was loaded). Called with writeLock held.
+     */
+    private void publish(Snapshot<T> state, Set<Integer> changed) {
+        Snapshot<T> previous = snapshot;
+        Snapshot<T> published = new Snapshot<>(state.entities, state.byId, ++lastVersion);
+        snapshot = published;
+        xmlHandler.publish(this, published);
+
+        if (changed == null || previous == null) {
+            // Staged listeners resynchronize too, e.g. after a failed batch was dropped
+            for (Listener<T> listener : stagedListeners) {
+                try {
+                    listener.loaded(published.entities);
+                } catch (RuntimeException e) {
+                    System.err.println("[EntityStore] Listener failed on " + fileName + ": " + e.getMessage());
+                }
+            }
+        }
+        for (Listener<T> listener : listeners) {
+            try {
+                if (changed == null || previous == null) {
+                    listener.loaded(published.entities);
+                } else {
+                    for (Integer id : changed) {
+                        T before = previous.byId.get(id);
+                        T after = published.byId.get(id);
+                        if (before != after) {
+                            listener.changed(before, after);
+                        }
+                    }
+                }
+            } catch (RuntimeException e) {
+                // A derived index must not fail a commit that is already durable
+                System.err.println("[EntityStore] Listener failed on " + fileName + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Follow the committed state of the store, e.g. to maintain a derived index. The
+     * listener gets the current entities right away if the store is already loaded.
+     */
+    public void addListener(Listener<T> listener) {
+        synchronized (writeLock) {
+            listeners.add(listener);
+            if (snapshot != null) {
+                listener.loaded(snapshot.entities);
+            }
+        }
+    }
+
+    /**
+     * Follow the latest state of the store including writes not yet durable: the
+     * listener sees each write as soon as it is accepted, inside the write lock, so the
+     * next mutation can already check against it. If a batch then fails to save, the
+     * listener is reloaded with the durable state.
+     */
+    public void addStagedListener(Listener<T> listener) {
+        synchronized (writeLock) {
+            stagedListeners.add(listener);
+            if (snapshot != null) {
+                listener.loaded((head != null ? head : snapshot).entities);
+            }
+        }
+    }
+
+    // Called with writeLock held
+    private void notifyStaged(Snapshot<T> base, Snapshot<T> staged, Set<Integer> changed) {
+        for (Listener<T> listener : stagedListeners) {
+            try {
+                for (Integer id : changed) {
+                    T before = base.byId.get(id);
+                    T after = staged.byId.get(id);
+                    if (before != after) {
+                        listener.changed(before, after);
+                    }
+                }
+            } catch (RuntimeException e) {
+                System.err.println("[EntityStore] Listener failed on " + fileName + ": " + e.getMessage());
+            }
+        }
+    }
+
+    Snapshot<T> current() throws JAXBException {
+        Snapshot<T> current = snapshot;
+        if (current == null) {
+            current = load();
+        }
+        return current;
+    }
+
+    private Snapshot<T> load() throws JAXBException {
+        synchronized (writeLock) {
+            if (snapshot == null) {
+                W wrapper = xmlHandler.loadFromXML(fileName, wrapperClass);
+                List<T> loaded = wrapper != null ? listGetter.apply(wrapper) : null;
+                List<T> items = loaded != null ? new ArrayList<>(loaded) : new ArrayList<>();
+                IntObjectHashMap<T> byId = new IntObjectHashMap<>(items.size());
+                for (T entity : items) {
+                    byId.put(idGetter.applyAsInt(entity), entity);
+                }
+                if (journal != null) {
+                    Transaction<T> replay = new Transaction<>(items, byId, idGetter, copier);
+                    replayJournal(replay);
+                }
+                publish(new Snapshot<>(Collections.unmodifiableList(items), byId, 0), null);
+            }
+            return snapshot;
+        }
+    }
+
+    private void replayJournal(Transaction<T> tx) throws JAXBException {
+        List<EntityJournal.Record> records;
+        try {
+            records = journal.readAll();
+        } catch (IOException e) {
+            throw new JAXBException("Failed to read journal of " + fileName, e);
+        }
+        for (EntityJournal.Record record : records) {
+            if (record.op == EntityJournal.DELETE) {
+                tx.remove(record.id);
+            } else {
+                tx.put(xmlHandler.unmarshalFragment(record.xml, entityType(record.type), wrapperClass));
+            }
+        }
+        if (!records.isEmpty()) {
+            System.out.println("[EntityStore] Replayed " + records.size() + " journal records for " + fileName);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Class<T> entityType(String name) throws JAXBException {
+        try {
+            return (Class<T>) Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new JAXBException("Unknown entity type in journal of " + fileName + ": " + name, e);
+        }
+    }
+
+    /**
+     * Check the entities put by a transaction against the XSD (not the whole file)
+     */
+    private void validateChanged(Transaction<T> tx) throws JAXBException, XMLValidationException {
+        List<T> puts = new ArrayList<>();
+        for (Integer id : tx.changed) {
+            T entity = tx.byId.get(id);
+            if (entity != null) {
+                puts.add(entity);
+            }
+        }
+        if (!puts.isEmpty()) {
+            W wrapper = newWrapper();
+            listSetter.accept(wrapper, puts);
+            xmlHandler.validate(wrapper, fileName);
+        }
+    }
+
+    /**
+     * Append one record per changed id, all in a single journal frame
+     */
+    private void appendToJournal(Snapshot<T> state, Set<Integer> changed) throws JAXBException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream batch = new DataOutputStream(bytes);
+            for (Integer id : changed) {
+                T entity = state.byId.get(id);
+                if (entity != null) {
+                    byte[] xml = xmlHandler.marshalFragment(entity, wrapperClass);
+                    EntityJournal.encode(batch, EntityJournal.PUT, id, entity.getClass().getName(), xml);
+                } else {
+                    EntityJournal.encode(batch, EntityJournal.DELETE, id, "", new byte[0]);
+                }
+            }
+            batch.flush();
+            journal.append(bytes.toByteArray(), changed.size());
+        } catch (IOException e) {
+            throw new JAXBException("Failed to append to journal of " + fileName, e);
+        }
+    }
+
+    private W newWrapper() throws JAXBException {
+        try {
+            return wrapperClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new JAXBException("Failed to create new instance of " + wrapperClass.getName(), e);
+        }
+    }
+
+    /**
+     * Entity list and its primary-key index, published together with the version they
+     * were committed as. None of them is modified after publication.
+     */
+    static final class Snapshot<T> {
+        final List<T> entities;
+        final IntObjectHashMap<T> byId;
+        final long version;
+
+        Snapshot(List<T> entities, IntObjectHashMap<T> byId, long version) {
+            this.entities = entities;
+            this.byId = byId;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Writes committed together by one save/append
+     */
+    private static final class Batch {
+        final long openedAt;
+        final Set<Integer> changed = new LinkedHashSet<>();
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        int writes;
+
+        Batch(long openedAt) {
+            this.openedAt = openedAt;
+        }
+    }
+
+    /**
+     * Notified after each commit, in commit order, with the store's write lock held:
+     * keep the work short.
+     */
+    public interface Listener<T> {
+        /**
+         * The store was (re)loaded; replaces any state built so far
+         */
+        void loaded(List<T> entities);
+
+        /**
+         * One entity was inserted (before is null), replaced, or deleted (after is null)
+         */
+        void changed(T before, T after);
+    }
+
+    /**
+     * Unit of work applied by {@link #write(Mutation)}
+     */
+    @FunctionalInterface
+    public interface Mutation<T, R> {
+        R apply(Transaction<T> tx) throws JAXBException, XMLValidationException;
+    }
+
+    /**
+     * Private working copy of the entity list handed to a mutation
+     */
+    public static class Transaction<T> {
+        private final List<T> items;
+        private final IntObjectHashMap<T> byId;
+        private final ToIntFunction<T> idGetter;
+        private final UnaryOperator<T> copier;
+        private final Set<Integer> changed = new LinkedHashSet<>();
+        private final Set<Integer> copied = new LinkedHashSet<>();
+        // Id -> index in items, built on the first replacement so that large batches of
+        // edits stay linear; dropped on remove, which shifts the following entities
+        private IntObjectHashMap<Integer> positions;
+        private boolean touched;
+
+        Transaction(List<T> items, IntObjectHashMap<T> byId, ToIntFunction<T> idGetter, UnaryOperator<T> copier) {
+            this.items = items;
+            this.byId = byId;
+            this.idGetter = idGetter;
+            this.copier = copier;
+        }
+
+        /**
+         * Current working list, read-only (use put/remove to change it)
+         */
+        public List<T> all() {
+            return Collections.unmodifiableList(items);
+        }
+
+        /**
+         * Entity as currently stored. It may be shared with readers: do not modify it,
+         * use {@link #edit(int)} to change an existing entity.
+         */
+        public Optional<T> find(int id) {
+            return Optional.ofNullable(byId.get(id));
+        }
+
+        /**
+         * Private copy of the entity, already put in place of the stored one (copy-on-write).
+         * Changes made to it are committed with the transaction.
+         */
+        public Optional<T> edit(int id) {
+            T current = byId.get(id);
+            if (current == null) {
+                return Optional.empty();
+            }
+            if (copied.add(id)) {
+                if (copier == null) {
+                    throw new IllegalStateException("Store has no copier: replace the entity with put instead");
+                }
+                current = copier.apply(current);
+                put(current);
+            }
+            return Optional.of(current);
+        }
+
+        public boolean contains(int id) {
+            return byId.containsKey(id);
+        }
+
+        /**
+         * Insert the entity, or replace the one with the same id
+         */
+        public void put(T entity) {
+            T previous = byId.put(idGetter.applyAsInt(entity), entity);
+            if (previous == null) {
+                items.add(entity);
+                if (positions != null) {
+                    positions.put(idGetter.applyAsInt(entity), items.size() - 1);
+                }
+            } else if (previous != entity) {
+                items.set(positionOf(previous), entity);
+            }
+            changed.add(idGetter.applyAsInt(entity));
+            touched = true;
+        }
+
+        public boolean remove(int id) {
+            T previous = byId.remove(id);
+            if (previous == null) {
+                return false;
+            }
+            items.remove(positionOf(previous));
+            positions = null;
+            changed.add(id);
+            touched = true;
+            return true;
+        }
+
+        // Only reached for entities known to be in the list; the list order is the file order
+        private int positionOf(T entity) {
+            if (positions == null) {
+                positions = new IntObjectHashMap<>();
+                for (int i = 0; i < items.size(); i++) {
+                    positions.put(idGetter.applyAsInt(items.get(i)), i);
+                }
+            }
+            Integer position = positions.get(idGetter.applyAsInt(entity));
+            if (position != null && items.get(position) == entity) {
+                return position;
+            }
+            for (int i = 0; i < items.size(); i++) {
+                if (items.get(i) == entity) {
+                    return i;
+                }
+            }
+            throw new IllegalStateException("Index out of sync with entity list in transaction");
+        }
+    }
+}
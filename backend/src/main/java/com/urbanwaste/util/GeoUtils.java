@@ -0,0 +1,62 @@
+package com.urbanwaste.util;
+
+import com.urbanwaste.model.PointCollecte;
+
+/**
+ * Great-circle distances between collection points and polygon containment
+ */
+public final class GeoUtils {
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+
+    private GeoUtils() {
+    }
+
+    /**
+     * Haversine distance in kilometres between two latitude/longitude pairs (degrees)
+     */
+    public static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double sinLat = Math.sin(dLat / 2);
+        double sinLon = Math.sin(dLon / 2);
+        double a = sinLat * sinLat
+            + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * sinLon * sinLon;
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    /**
+     * Distance covered by a latitude difference (degrees) along a meridian: a lower bound
+     * of the distance between any two points that far apart in latitude
+     */
+    public static double latitudeGapKm(double degrees) {
+        return Math.toRadians(Math.abs(degrees)) * EARTH_RADIUS_KM;
+    }
+
+    public static double haversineKm(PointCollecte a, PointCollecte b) {
+        return haversineKm(a.getLatitude(), a.getLongitude(), b.getLatitude(), b.getLongitude());
+    }
+
+    /**
+     * Whether a position lies inside a polygon given by its vertices (closed implicitly),
+     * by ray casting: a horizontal ray from the position crosses the boundary an odd
+     * number of times when it is inside. Points exactly on an edge may go either way.
+     */
+    public static boolean polygonContains(double[] lats, double[] lons, double lat, double lon) {
+        boolean inside = false;
+        for (int i = 0, j = lats.length - 1; i < lats.length; j = i++) {
+            if ((lats[i] > lat) != (lats[j] > lat)
+                    && lon < (lons[j] - lons[i]) * (lat - lats[i]) / (lats[j] - lats[i]) + lons[i]) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * False for points whose coordinates were never filled in (stored as 0/0)
+     */
+    public static boolean isLocated(PointCollecte point) {
+        return point.getLatitude() != 0.0 || point.getLongitude() != 0.0;
+    }
+}
@@ -0,0 +1,114 @@
+package com.urbanwaste.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a streaming XML import: counts plus the errors of the records that were rejected
+ */
+public class ImportReport {
+
+    // Only the first errors are kept so a bad multi-GB file cannot fill the heap with messages
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private int total;
+    private int imported;
+    private int failed;
+    private String fatalError;
+    private boolean errorsTruncated;
+    private final List<Map<String, Object>> errors = new ArrayList<>();
+
+    void recordSeen() {
+        total++;
+    }
+
+    void addImported(int count) {
+        imported += count;
+    }
+
+    /**
+     * A record rejected by XSD validation or unmarshalling
+     */
+    void recordError(int record, int line, int column, String message) {
+        failed++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            Map<String, Object> error = new LinkedHashMap<>();
+            error.put("record", record);
+            error.put("line", line);
+            if (column > 0) {
+                error.put("column", column);
+            }
+            error.put("error", message);
+            errors.add(error);
+        } else {
+            errorsTruncated = true;
+        }
+    }
+
+    /**
+     * A chunk of valid records that could not be merged into the store
+     */
+    void chunkError(int firstRecord, int lastRecord, int count, String message) {
+        failed += count;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            Map<String, Object> error = new LinkedHashMap<>();
+            error.put("records", firstRecord + "-" + lastRecord);
+            error.put("error", message);
+            errors.add(error);
+        } else {
+            errorsTruncated = true;
+        }
+    }
+
+    void setFatalError(String fatalError) {
+        this.fatalError = fatalError;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getImported() {
+        return imported;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    /**
+     * Set when the document itself is broken (not well-formed, wrong root); records
+     * merged before that point stay imported
+     */
+    public String getFatalError() {
+        return fatalError;
+    }
+
+    public List<Map<String, Object>> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Response body for the import endpoints
+     */
+    public Map<String, Object> toMap(String message) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        if (fatalError != null) {
+            body.put("error", fatalError);
+        } else {
+            body.put("message", message);
+        }
+        body.put("imported", imported);
+        body.put("total", total);
+        body.put("failed", failed);
+        if (!errors.isEmpty()) {
+            body.put("errors", errors);
+            if (errorsTruncated) {
+                body.put("errorsTruncated", true);
+            }
+        }
+        return body;
+    }
+}
@@ -0,0 +1,158 @@
+package com.urbanwaste.util;
+
+import jakarta.xml.bind.JAXBException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Pools of reusable, pre-configured JAXB marshallers/unmarshallers and schema validators.
+ *
+ * Instances are not thread-safe, so each one is leased to a single caller at a time and
+ * handed back when the lease is closed. The pools are lock-free queues: borrowing never
+ * blocks (an empty pool creates a new instance) and nothing synchronizes on a monitor,
+ * so virtual threads are never pinned.
+ */
+public class JaxbPool {
+
+    private final ConcurrentHashMap<String, Pool<?>> pools = new ConcurrentHashMap<>();
+    private final int maxIdle;
+
+    public JaxbPool(int maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Borrow an instance from the pool registered under key, creating one on a miss.
+     * The reset action runs when the lease is closed, before the instance is reused.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Lease<T> lease(String key, Factory<T> factory, Consumer<T> reset) throws JAXBException {
+        Pool<T> pool = (Pool<T>) pools.computeIfAbsent(key, k -> new Pool<>(k, maxIdle));
+        long start = System.nanoTime();
+        T instance = pool.idle.poll();
+        if (instance != null) {
+            pool.idleCount.decrementAndGet();
+            pool.hits.increment();
+        } else {
+            pool.misses.increment();
+            instance = factory.create();
+        }
+        pool.acquireNanos.add(System.nanoTime() - start);
+        return new Lease<>(pool, instance, reset);
+    }
+
+    /**
+     * Drop the pools whose key contains the given text (e.g. an XSD file that was reloaded)
+     */
+    public void evict(String keyPart) {
+        pools.keySet().removeIf(key -> key.contains(keyPart));
+    }
+
+    /**
+     * Hit/miss counts and acquire time per pool, for monitoring
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long totalHits = 0;
+        long totalMisses = 0;
+        for (Pool<?> pool : pools.values()) {
+            long hits = pool.hits.sum();
+            long misses = pool.misses.sum();
+            long acquires = hits + misses;
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("hits", hits);
+            entry.put("misses", misses);
+            entry.put("idle", pool.idleCount.get());
+            entry.put("discarded", pool.discarded.sum());
+            entry.put("avgAcquireMicros", acquires == 0 ? 0.0
+                : Math.round(pool.acquireNanos.sum() / (double) acquires / 10.0) / 100.0);
+            metrics.put(pool.key, entry);
+            totalHits += hits;
+            totalMisses += misses;
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("hits", totalHits);
+        result.put("misses", totalMisses);
+        result.put("hitRate", totalHits + totalMisses == 0 ? 0.0
+            : Math.round(totalHits * 10000.0 / (totalHits + totalMisses)) / 100.0);
+        result.put("pools", metrics);
+        return result;
+    }
+
+    /**
+     * Creates a configured instance on a pool miss
+     */
+    @FunctionalInterface
+    public interface Factory<T> {
+        T create() throws JAXBException;
+    }
+
+    /**
+     * Exclusive use of one pooled instance; close it to give the instance back
+     */
+    public static final class Lease<T> implements AutoCloseable {
+        private final Pool<T> pool;
+        private final Consumer<T> reset;
+        private T instance;
+
+        private Lease(Pool<T> pool, T instance, Consumer<T> reset) {
+            this.pool = pool;
+            this.instance = instance;
+            this.reset = reset;
+        }
+
+        public T get() {
+            if (instance == null) {
+                throw new IllegalStateException("Lease already closed");
+            }
+            return instance;
+        }
+
+        @Override
+        public void close() {
+            T released = instance;
+            if (released == null) {
+                return;
+            }
+            instance = null;
+            try {
+                if (reset != null) {
+                    reset.accept(released);
+                }
+            } catch (RuntimeException e) {
+                // An instance that cannot be reset is not worth keeping
+                pool.discarded.increment();
+                return;
+            }
+            if (pool.idleCount.incrementAndGet() <= pool.maxIdle) {
+                pool.idle.offer(released);
+            } else {
+                pool.idleCount.decrementAndGet();
+                pool.discarded.increment();
+            }
+        }
+    }
+
+    private static final class Pool<T> {
+        final String key;
+        final int maxIdle;
+        final ConcurrentLinkedQueue<T> idle = new ConcurrentLinkedQueue<>();
+        final AtomicInteger idleCount = new AtomicInteger();
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder discarded = new LongAdder();
+        final LongAdder acquireNanos = new LongAdder();
+
+        Pool(String key, int maxIdle) {
+            this.key = key;
+            this.maxIdle = maxIdle;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.urbanwaste.util;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.regex.Pattern;
+
+/**
+ * Salted PBKDF2-HMAC-SHA256 password hashes, stored as
+ * {@code pbkdf2-sha256$<iterations>$<salt>$<hash>} (salt and hash in Base64).
+ *
+ * The iteration count is kept in each hash, so raising it leaves the existing hashes
+ * valid; {@link #needsRehash} tells which ones to hash again at the next login. A stored
+ * value not in this format is a password saved in clear before hashing was introduced:
+ * it still verifies, and always needs a rehash. Comparisons are constant-time.
+ */
+public class PasswordHasher {
+
+    public static final String PREFIX = "pbkdf2-sha256$";
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BYTES = 32;
+    private static final Pattern HASH_FORMAT =
+        Pattern.compile("pbkdf2-sha256\\$[1-9][0-9]{0,8}\\$[A-Za-z0-9+/]+\\$[A-Za-z0-9+/]+");
+
+    private final int iterations;
+    private final SecureRandom random = new SecureRandom();
+
+    public PasswordHasher(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("PBKDF2 needs at least one iteration");
+        }
+        this.iterations = iterations;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Hash a password with a new random salt and the current iteration count
+     */
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + base64.encodeToString(salt)
+            + "$" + base64.encodeToString(derive(password, salt, iterations, HASH_BYTES));
+    }
+
+    /**
+     * Whether the password matches the stored value (a hash, or a legacy clear password)
+     */
+    public boolean matches(String password, String stored) {
+        if (password == null || stored == null) {
+            return false;
+        }
+        if (!isHashed(stored)) {
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8),
+                stored.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = stored.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 3) {
+            return false;
+        }
+        try {
+            int storedIterations = Integer.parseInt(parts[0]);
+            byte[] salt = Base64.getDecoder().decode(parts[1]);
+            byte[] expected = Base64.getDecoder().decode(parts[2]);
+            if (storedIterations < 1 || expected.length == 0) {
+                return false;
+            }
+            return MessageDigest.isEqual(derive(password, salt, storedIterations, expected.length), expected);
+        } catch (IllegalArgumentException e) {
+            // Corrupted hash (bad number or Base64): nothing can match it
+            return false;
+        }
+    }
+
+    /**
+     * Whether the stored value should be replaced by a fresh hash once the password is known
+     */
+    public boolean needsRehash(String stored) {
+        if (!isHashed(stored)) {
+            return true;
+        }
+        int end = stored.indexOf('$', PREFIX.length());
+        return end < 0 || !stored.substring(PREFIX.length(), end).equals(Integer.toString(iterations));
+    }
+
+    /**
+     * Whether the stored value is a hash made here, rather than a password saved in clear
+     */
+    public static boolean isHashed(String stored) {
+        return stored != null && stored.startsWith(PREFIX) && HASH_FORMAT.matcher(stored).matches();
+    }
+
+    private static byte[] derive(String password, byte[] salt, int iterations, int length) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, length * 8);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2 is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
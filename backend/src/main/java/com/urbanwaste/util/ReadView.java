@@ -0,0 +1,70 @@
+package com.urbanwaste.util;
+
+import jakarta.xml.bind.JAXBException;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Consistent, read-only view over several entity stores.
+ *
+ * Every commit publishes a new view holding the latest snapshot of each store, so the
+ * snapshots inside one view were all current at the same instant: a request that reads
+ * routes, vehicles and points through the same view never sees half of a concurrent
+ * write. Taking a view is a single volatile read and never blocks writers.
+ */
+public final class ReadView {
+
+    static final ReadView EMPTY = new ReadView(new IdentityHashMap<>(), 0);
+
+    private final Map<EntityStore<?, ?>, EntityStore.Snapshot<?>> snapshots;
+    private final long sequence;
+
+    private ReadView(Map<EntityStore<?, ?>, EntityStore.Snapshot<?>> snapshots, long sequence) {
+        this.snapshots = snapshots;
+        this.sequence = sequence;
+    }
+
+    /**
+     * New view with one store's snapshot replaced (the view itself is never modified)
+     */
+    ReadView with(EntityStore<?, ?> store, EntityStore.Snapshot<?> snapshot) {
+        Map<EntityStore<?, ?>, EntityStore.Snapshot<?>> next = new IdentityHashMap<>(snapshots);
+        next.put(store, snapshot);
+        return new ReadView(next, sequence + 1);
+    }
+
+    /**
+     * Number of commits (across all stores) this view includes
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * All entities of the store as of this view, read-only
+     */
+    public <T> List<T> getAll(EntityStore<?, T> store) throws JAXBException {
+        return snapshot(store).entities;
+    }
+
+    public <T> Optional<T> findById(EntityStore<?, T> store, int id) throws JAXBException {
+        return Optional.ofNullable(snapshot(store).byId.get(id));
+    }
+
+    /**
+     * Version of the store's snapshot in this view
+     */
+    public long getVersion(EntityStore<?, ?> store) throws JAXBException {
+        return snapshot(store).version;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> EntityStore.Snapshot<T> snapshot(EntityStore<?, T> store) throws JAXBException {
+        EntityStore.Snapshot<T> snapshot = (EntityStore.Snapshot<T>) snapshots.get(store);
+        // A store missing from the view had not been loaded yet, so it had no commits either
+        return snapshot != null ? snapshot : store.current();
+    }
+}
@@ -0,0 +1,225 @@
+package com.urbanwaste.util;
+
+import jakarta.xml.bind.JAXBException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Equality indexes on attributes of the entities of a store (state, type, owner, ...),
+ * kept up to date from the store's commits, imports included.
+ *
+ * Each entity gets a dense slot number. Every distinct value of an attribute is interned
+ * once into a small code and owns a bitmap of the slots holding it, so a lookup reads
+ * one bitmap and a query on several attributes is a bitmap AND. Case-insensitive
+ * attributes are interned upper-cased, so lookups pay no case-insensitive comparisons.
+ *
+ * Declare the attributes with {@link #on}, then {@link #attach()} the index to the store.
+ */
+public class SecondaryIndex<T> implements EntityStore.Listener<T> {
+
+    // Interned key of a null attribute value
+    private static final Object NULL = new Object();
+
+    private final EntityStore<?, T> store;
+    private final ToIntFunction<T> idGetter;
+    private final Map<String, Attribute<T>> attributes = new LinkedHashMap<>();
+    private boolean attached;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by lock
+    private final IntObjectHashMap<Integer> slotById = new IntObjectHashMap<>();
+    private final List<T> bySlot = new ArrayList<>();
+    private final BitSet freeSlots = new BitSet();
+
+    public SecondaryIndex(EntityStore<?, T> store, ToIntFunction<T> idGetter) {
+        this.store = store;
+        this.idGetter = idGetter;
+    }
+
+    /**
+     * Index an attribute. String values of a case-insensitive attribute match whatever
+     * their case.
+     */
+    public SecondaryIndex<T> on(String name, Function<T, ?> getter, boolean ignoreCase) {
+        if (attached) {
+            throw new IllegalStateException("Attributes must be declared before attaching the index");
+        }
+        attributes.put(name, new Attribute<>(getter, ignoreCase));
+        return this;
+    }
+
+    /**
+     * Start following the store (indexes its current entities once it is loaded)
+     */
+    public SecondaryIndex<T> attach() {
+        attached = true;
+        store.addListener(this);
+        return this;
+    }
+
+    @Override
+    public void loaded(List<T> entities) {
+        lock.writeLock().lock();
+        try {
+            slotById.clear();
+            bySlot.clear();
+            freeSlots.clear();
+            for (Attribute<T> attribute : attributes.values()) {
+                attribute.postings.forEach(BitSet::clear);
+            }
+            for (T entity : entities) {
+                add(entity);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void changed(T before, T after) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotById.remove(idGetter.applyAsInt(after != null ? after : before));
+            if (slot != null) {
+                T indexed = bySlot.get(slot);
+                for (Attribute<T> attribute : attributes.values()) {
+                    Integer code = attribute.codes.get(attribute.key(indexed));
+                    if (code != null) {
+                        attribute.postings.get(code).clear(slot);
+                    }
+                }
+                bySlot.set(slot, null);
+                freeSlots.set(slot);
+            }
+            if (after != null) {
+                add(after);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Entities whose attribute equals the value, in id order
+     */
+    public List<T> find(String attribute, Object value) throws JAXBException {
+        return find(Collections.singletonMap(attribute, value));
+    }
+
+    /**
+     * Entities matching every attribute/value pair, in id order (a null value matches
+     * entities where the attribute is missing)
+     */
+    public List<T> find(Map<String, ?> criteria) throws JAXBException {
+        // The store loads lazily; loading fills the index through loaded()
+        store.current();
+        lock.readLock().lock();
+        try {
+            BitSet matches = null;
+            for (Map.Entry<String, ?> criterion : criteria.entrySet()) {
+                BitSet posting = posting(criterion.getKey(), criterion.getValue());
+                if (posting == null) {
+                    return new ArrayList<>();
+                }
+                if (matches == null) {
+                    matches = (BitSet) posting.clone();
+                } else {
+                    matches.and(posting);
+                }
+            }
+            List<T> result = new ArrayList<>(matches == null ? 0 : matches.cardinality());
+            if (matches != null) {
+                for (int slot = matches.nextSetBit(0); slot >= 0; slot = matches.nextSetBit(slot + 1)) {
+                    result.add(bySlot.get(slot));
+                }
+            }
+            result.sort(Comparator.comparingInt(idGetter));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of entities whose attribute equals the value, without materializing them
+     */
+    public int count(String attribute, Object value) throws JAXBException {
+        store.current();
+        lock.readLock().lock();
+        try {
+            BitSet posting = posting(attribute, value);
+            return posting == null ? 0 : posting.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private BitSet posting(String name, Object value) {
+        Attribute<T> attribute = attributes.get(name);
+        if (attribute == null) {
+            throw new IllegalArgumentException("Attribute not indexed: " + name);
+        }
+        Integer code = attribute.codes.get(attribute.normalize(value));
+        return code == null ? null : attribute.postings.get(code);
+    }
+
+    private void add(T entity) {
+        int slot = freeSlots.nextSetBit(0);
+        if (slot >= 0) {
+            freeSlots.clear(slot);
+            bySlot.set(slot, entity);
+        } else {
+            slot = bySlot.size();
+            bySlot.add(entity);
+        }
+        slotById.put(idGetter.applyAsInt(entity), slot);
+        for (Attribute<T> attribute : attributes.values()) {
+            Object key = attribute.key(entity);
+            Integer code = attribute.codes.get(key);
+            if (code == null) {
+                code = attribute.postings.size();
+                attribute.codes.put(key, code);
+                attribute.postings.add(new BitSet());
+            }
+            attribute.postings.get(code).set(slot);
+        }
+    }
+
+    private static final class Attribute<T> {
+        final Function<T, ?> getter;
+        final boolean ignoreCase;
+        // Distinct values seen so far -> code, and the bitmap of each code
+        final Map<Object, Integer> codes = new HashMap<>();
+        final List<BitSet> postings = new ArrayList<>();
+
+        Attribute(Function<T, ?> getter, boolean ignoreCase) {
+            this.getter = getter;
+            this.ignoreCase = ignoreCase;
+        }
+
+        Object key(T entity) {
+            return normalize(getter.apply(entity));
+        }
+
+        Object normalize(Object value) {
+            if (value == null) {
+                return NULL;
+            }
+            if (ignoreCase && value instanceof String) {
+                return ((String) value).toUpperCase(Locale.ROOT);
+            }
+            return value;
+        }
+    }
+}
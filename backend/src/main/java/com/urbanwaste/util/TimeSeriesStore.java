@@ -0,0 +1,738 @@
+package com.urbanwaste.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Embedded append-only store of numeric series keyed by an int id (one series per
+ * collection point), with hourly and daily rollups.
+ *
+ * Samples are buffered per series and written as chunks into memory-mapped segment
+ * files of a fixed size. Inside a chunk each sample takes a varint timestamp delta
+ * (seconds) and a zigzag varint delta of the value, kept as an int of hundredths, so a
+ * sensor reporting every few minutes costs about 3 bytes per sample. Each chunk starts
+ * with a header (series, kind, count, first and last timestamp) and ends with a CRC32;
+ * reopening the store scans the segments and rebuilds the per-series chunk index from
+ * the headers alone.
+ *
+ * Samples still in a buffer are also appended to a small memory-mapped head log, which
+ * is replayed on startup and emptied once every buffer has been written out. Rollup
+ * buckets are derived from the raw samples: those not yet written as chunks are
+ * recomputed from the raw data the first time a series is touched after a restart.
+ *
+ * Timestamps must increase per series; a sample not newer than the last one is refused.
+ */
+public class TimeSeriesStore implements Closeable {
+
+    /**
+     * Granularity of a query: raw samples or aggregated buckets (UTC aligned)
+     */
+    public enum Resolution {
+        RAW(1), HOUR(3600), DAY(86400);
+
+        private final long seconds;
+
+        Resolution(long seconds) {
+            this.seconds = seconds;
+        }
+
+        public long getSeconds() {
+            return seconds;
+        }
+
+        public long bucketStart(long epochSecond) {
+            return Math.floorDiv(epochSecond, seconds) * seconds;
+        }
+    }
+
+    private static final int SEGMENT_MAGIC = 0x54535347; // "TSSG"
+    private static final int HEAD_MAGIC = 0x54534844;    // "TSHD"
+    private static final int FILE_HEADER = 8;
+    // payload length, series id, kind (+3 spare), count, first timestamp, last timestamp
+    private static final int CHUNK_HEADER = 32;
+    private static final int CHUNK_TRAILER = 4;
+    // series id, timestamp, value
+    private static final int HEAD_RECORD = 16;
+    private static final Resolution[] KINDS = Resolution.values();
+    private static final Resolution[] ROLLUPS = {Resolution.HOUR, Resolution.DAY};
+
+    private final File directory;
+    private final String name;
+    private final int segmentBytes;
+    private final int chunkSamples;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by lock
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private int writeOffset;
+    private MappedByteBuffer head;
+    private int headOffset;
+    private final IntObjectHashMap<Series> series = new IntObjectHashMap<>();
+    private long chunks;
+    // Raw samples in chunks (rollup buckets not counted)
+    private long storedSamples;
+    private long refused;
+
+    /**
+     * Open (or create) the store made of the files name-*.seg and name.head in directory
+     *
+     * @param segmentBytes size of each segment file
+     * @param headBytes size of the head log; when full, all buffers are written as chunks
+     * @param chunkSamples raw samples per chunk (rollup chunks hold a quarter of that)
+     */
+    public TimeSeriesStore(File directory, String name, int segmentBytes, int headBytes, int chunkSamples) throws IOException {
+        if (chunkSamples < 4 || segmentBytes < FILE_HEADER + CHUNK_HEADER + CHUNK_TRAILER + 16 * chunkSamples) {
+            throw new IllegalArgumentException("Segments too small for " + chunkSamples + " samples per chunk");
+        }
+        this.directory = directory;
+        this.name = name;
+        this.segmentBytes = segmentBytes;
+        this.chunkSamples = chunkSamples;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory.getAbsolutePath());
+        }
+        openSegments();
+        openHead(headBytes);
+    }
+
+    /**
+     * Append a sample to a series. Returns false if it is not newer than the last sample.
+     */
+    public boolean append(int id, long epochSecond, float value) {
+        if (Float.isNaN(value) || Float.isInfinite(value)) {
+            return false;
+        }
+        int encoded = Math.round(value * 100);
+        lock.writeLock().lock();
+        try {
+            Series s = series.get(id);
+            if (s == null) {
+                s = new Series(id);
+                s.seeded = true;
+                series.put(id, s);
+            }
+            ensureSeeded(s);
+            if (epochSecond <= s.lastTs) {
+                refused++;
+                return false;
+            }
+            if (headOffset + HEAD_RECORD > head.capacity()) {
+                rotateHead();
+            }
+            head.putInt(headOffset + 4, (int) (epochSecond >>> 32));
+            head.putInt(headOffset + 8, (int) epochSecond);
+            head.putInt(headOffset + 12, encoded);
+            // The id goes last: a record with id 0 marks the end of the log
+            head.putInt(headOffset, id);
+            headOffset += HEAD_RECORD;
+            add(s, epochSecond, encoded);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Samples (RAW) or buckets of a series with a timestamp in [fromSecond, toSecond],
+     * oldest first. The current, still open bucket is included.
+     */
+    public List<Sample> query(int id, Resolution resolution, long fromSecond, long toSecond) {
+        lock.readLock().lock();
+        try {
+            Series s = series.get(id);
+            if (s == null || fromSecond > toSecond) {
+                return new ArrayList<>();
+            }
+            if (!s.seeded) {
+                // Rebuilding the open buckets writes to the series: switch to the write lock
+                lock.readLock().unlock();
+                lock.writeLock().lock();
+                try {
+                    ensureSeeded(s);
+                    lock.readLock().lock();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            Records records = new Records(16);
+            read(s, resolution.ordinal(), fromSecond, toSecond, records);
+            if (resolution != Resolution.RAW) {
+                Bucket open = s.open[resolution.ordinal()];
+                if (open != null && open.start >= fromSecond && open.start <= toSecond) {
+                    records.add(open.start, open.min, open.max, open.average(), open.count);
+                }
+            }
+            List<Sample> result = new ArrayList<>(records.size);
+            for (int i = 0; i < records.size; i++) {
+                result.add(new Sample(records.ts[i], records.min[i], records.max[i], records.avg[i], records.count[i]));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Write every buffer as a chunk, empty the head log and force the files to disk
+     */
+    public void flush() {
+        lock.writeLock().lock();
+        try {
+            rotateHead();
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+            head.force();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+
+    /**
+     * Series, chunks and bytes used by the store
+     */
+    public Map<String, Object> getStats() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            long bytes = (long) (segments.size() - 1) * segmentBytes + writeOffset;
+            stats.put("series", series.size());
+            stats.put("segments", segments.size());
+            stats.put("chunks", chunks);
+            stats.put("samplesInChunks", storedSamples);
+            // Rollups and chunk headers included
+            stats.put("bytesUsed", bytes);
+            stats.put("bytesPerSample", storedSamples == 0 ? 0 : Math.round(bytes * 100.0 / storedSamples) / 100.0);
+            stats.put("bufferedSamples", (headOffset - FILE_HEADER) / HEAD_RECORD);
+            stats.put("refused", refused);
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---- write path (write lock held) ----
+
+    private void add(Series s, long ts, int value) {
+        Records raw = s.buffer(0);
+        raw.add(ts, value, value, value, 1);
+        s.lastTs = ts;
+        if (s.seeded) {
+            for (Resolution resolution : ROLLUPS) {
+                roll(s, resolution, ts, value, 1, value, value);
+            }
+        }
+        if (raw.size >= chunkSamples) {
+            writeChunk(s, 0);
+        }
+    }
+
+    // Fold a sample (or a partial aggregate) into the open bucket, closing the previous one
+    private void roll(Series s, Resolution resolution, long ts, long sum, int count, int min, int max) {
+        int kind = resolution.ordinal();
+        long start = resolution.bucketStart(ts);
+        Bucket bucket = s.open[kind];
+        if (bucket != null && bucket.start != start) {
+            Records closed = s.buffer(kind);
+            closed.add(bucket.start, bucket.min, bucket.max, bucket.average(), bucket.count);
+            if (closed.size >= chunkSamples / 4) {
+                writeChunk(s, kind);
+            }
+            bucket = null;
+        }
+        if (bucket == null) {
+            bucket = new Bucket(start);
+            s.open[kind] = bucket;
+        }
+        bucket.sum += sum;
+        bucket.count += count;
+        bucket.min = Math.min(bucket.min, min);
+        bucket.max = Math.max(bucket.max, max);
+    }
+
+    /**
+     * Rebuild the rollup buckets not yet in chunks from the raw samples (first touch of a
+     * series loaded from disk)
+     */
+    private void ensureSeeded(Series s) {
+        if (s.seeded) {
+            return;
+        }
+        s.seeded = true;
+        long[] from = new long[ROLLUPS.length];
+        long earliest = Long.MAX_VALUE;
+        for (int r = 0; r < ROLLUPS.length; r++) {
+            ChunkIndex index = s.index[ROLLUPS[r].ordinal()];
+            from[r] = index == null || index.size == 0
+                ? Long.MIN_VALUE
+                : index.last[index.size - 1] + ROLLUPS[r].seconds;
+            earliest = Math.min(earliest, from[r]);
+        }
+        Records raw = new Records(64);
+        read(s, 0, earliest, Long.MAX_VALUE, raw);
+        for (int i = 0; i < raw.size; i++) {
+            for (int r = 0; r < ROLLUPS.length; r++) {
+                if (raw.ts[i] >= from[r]) {
+                    roll(s, ROLLUPS[r], raw.ts[i], raw.avg[i], 1, raw.avg[i], raw.avg[i]);
+                }
+            }
+        }
+    }
+
+    private void writeChunk(Series s, int kind) {
+        Records records = s.buffers[kind];
+        if (records == null || records.size == 0) {
+            return;
+        }
+        byte[] payload = encode(records, kind);
+        int total = CHUNK_HEADER + payload.length + CHUNK_TRAILER;
+        if (writeOffset + total > segmentBytes) {
+            addSegment();
+        }
+        ByteBuffer chunk = ByteBuffer.allocate(total);
+        chunk.putInt(payload.length).putInt(s.id).put((byte) kind).put(new byte[3]).putInt(records.size)
+            .putLong(records.ts[0]).putLong(records.ts[records.size - 1]).put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(chunk.array(), 4, CHUNK_HEADER - 4 + payload.length);
+        chunk.putInt((int) crc.getValue());
+
+        MappedByteBuffer segment = segments.get(segments.size() - 1);
+        segment.put(writeOffset, chunk.array());
+        s.index(kind).add(records.ts[0], records.ts[records.size - 1],
+            (long) (segments.size() - 1) << 32 | writeOffset);
+        writeOffset += total;
+        chunks++;
+        if (kind == 0) {
+            storedSamples += records.size;
+        }
+        records.size = 0;
+    }
+
+    // Write out every raw buffer so the head log can start over
+    private void rotateHead() {
+        series.forEachValue(s -> {
+            for (int kind = 0; kind < s.buffers.length; kind++) {
+                writeChunk(s, kind);
+            }
+        });
+        head.put(FILE_HEADER, new byte[headOffset - FILE_HEADER]);
+        headOffset = FILE_HEADER;
+    }
+
+    private static byte[] encode(Records records, int kind) {
+        Encoder out = new Encoder(records.size * (kind == 0 ? 4 : 8));
+        long prevTs = records.ts[0];
+        int prevAvg = 0;
+        long step = KINDS[kind].seconds;
+        for (int i = 0; i < records.size; i++) {
+            out.varLong((records.ts[i] - prevTs) / step);
+            out.varLong(zigzag(records.avg[i] - prevAvg));
+            if (kind != 0) {
+                out.varLong(records.avg[i] - records.min[i]);
+                out.varLong(records.max[i] - records.avg[i]);
+                out.varLong(records.count[i]);
+            }
+            prevTs = records.ts[i];
+            prevAvg = records.avg[i];
+        }
+        return out.toByteArray();
+    }
+
+    // ---- read path (read or write lock held) ----
+
+    private void read(Series s, int kind, long from, long to, Records out) {
+        ChunkIndex index = s.index[kind];
+        if (index != null) {
+            for (int i = index.firstEndingAtOrAfter(from); i < index.size && index.first[i] <= to; i++) {
+                decode(index.location[i], kind, from, to, out);
+            }
+        }
+        Records buffer = s.buffers[kind];
+        if (buffer != null) {
+            for (int i = 0; i < buffer.size; i++) {
+                if (buffer.ts[i] >= from && buffer.ts[i] <= to) {
+                    out.add(buffer.ts[i], buffer.min[i], buffer.max[i], buffer.avg[i], buffer.count[i]);
+                }
+            }
+        }
+    }
+
+    private void decode(long location, int kind, long from, long to, Records out) {
+        MappedByteBuffer segment = segments.get((int) (location >>> 32));
+        int offset = (int) location;
+        int length = segment.getInt(offset);
+        int count = segment.getInt(offset + 12);
+        long ts = segment.getLong(offset + 16);
+        byte[] payload = new byte[length];
+        segment.get(offset + CHUNK_HEADER, payload);
+
+        long step = KINDS[kind].seconds;
+        int[] pos = {0};
+        int avg = 0;
+        for (int i = 0; i < count; i++) {
+            ts += readVarLong(payload, pos) * step;
+            avg += unzigzag(readVarLong(payload, pos));
+            int min = avg;
+            int max = avg;
+            int n = 1;
+            if (kind != 0) {
+                min = avg - (int) readVarLong(payload, pos);
+                max = avg + (int) readVarLong(payload, pos);
+                n = (int) readVarLong(payload, pos);
+            }
+            if (ts > to) {
+                return;
+            }
+            if (ts >= from) {
+                out.add(ts, min, max, avg, n);
+            }
+        }
+    }
+
+    // ---- files ----
+
+    private void openSegments() throws IOException {
+        File[] files = directory.listFiles((dir, file) -> file.startsWith(name + "-") && file.endsWith(".seg"));
+        if (files == null || files.length == 0) {
+            addSegment();
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            MappedByteBuffer segment = map(file, segmentBytes);
+            if (segment.getInt(0) != SEGMENT_MAGIC) {
+                throw new IOException("Not a series segment: " + file.getAbsolutePath());
+            }
+            segments.add(segment);
+            writeOffset = scan(segment, segments.size() - 1);
+        }
+        System.out.println("[TimeSeriesStore] Opened " + segments.size() + " segment(s) of " + name
+            + ": " + series.size() + " series, " + storedSamples + " samples");
+    }
+
+    // Index the valid chunks of a segment; returns where the next chunk goes
+    private int scan(MappedByteBuffer segment, int segmentIndex) {
+        int offset = FILE_HEADER;
+        CRC32 crc = new CRC32();
+        while (offset + CHUNK_HEADER + CHUNK_TRAILER <= segment.capacity()) {
+            int length = segment.getInt(offset);
+            if (length <= 0 || offset + CHUNK_HEADER + length + CHUNK_TRAILER > segment.capacity()) {
+                break;
+            }
+            byte[] chunk = new byte[CHUNK_HEADER - 4 + length];
+            segment.get(offset + 4, chunk);
+            crc.reset();
+            crc.update(chunk);
+            if ((int) crc.getValue() != segment.getInt(offset + CHUNK_HEADER + length)) {
+                System.err.println("[TimeSeriesStore] Torn chunk in segment " + segmentIndex + " at " + offset + ", dropped");
+                break;
+            }
+            int id = segment.getInt(offset + 4);
+            int kind = segment.get(offset + 8);
+            int count = segment.getInt(offset + 12);
+            long last = segment.getLong(offset + 24);
+            Series s = series.get(id);
+            if (s == null) {
+                s = new Series(id);
+                series.put(id, s);
+            }
+            s.index(kind).add(segment.getLong(offset + 16), last, (long) segmentIndex << 32 | offset);
+            if (kind == 0) {
+                s.lastTs = Math.max(s.lastTs, last);
+            }
+            chunks++;
+            if (kind == 0) {
+                storedSamples += count;
+            }
+            offset += CHUNK_HEADER + length + CHUNK_TRAILER;
+        }
+        // Clear what a crash may have left half-written so that it is never read back
+        if (offset + 4 <= segment.capacity() && segment.getInt(offset) != 0) {
+            segment.put(offset, new byte[segment.capacity() - offset]);
+        }
+        return offset;
+    }
+
+    private void openHead(int headBytes) throws IOException {
+        File file = new File(directory, name + ".head");
+        boolean exists = file.exists() && file.length() >= FILE_HEADER;
+        head = map(file, Math.max(headBytes, FILE_HEADER + HEAD_RECORD));
+        if (!exists || head.getInt(0) != HEAD_MAGIC) {
+            head.put(0, new byte[head.capacity()]);
+            head.putInt(0, HEAD_MAGIC);
+            headOffset = FILE_HEADER;
+            return;
+        }
+        // Replay the samples that had not been written as chunks yet
+        int offset = FILE_HEADER;
+        int replayed = 0;
+        while (offset + HEAD_RECORD <= head.capacity()) {
+            int id = head.getInt(offset);
+            if (id == 0) {
+                break;
+            }
+            long ts = (long) head.getInt(offset + 4) << 32 | (head.getInt(offset + 8) & 0xFFFFFFFFL);
+            Series s = series.get(id);
+            if (s == null) {
+                s = new Series(id);
+                series.put(id, s);
+            }
+            if (ts > s.lastTs) {
+                add(s, ts, head.getInt(offset + 12));
+                replayed++;
+            }
+            offset += HEAD_RECORD;
+        }
+        headOffset = offset;
+        if (replayed > 0) {
+            System.out.println("[TimeSeriesStore] Replayed " + replayed + " buffered sample(s) of " + name);
+        }
+    }
+
+    private void addSegment() {
+        File file = new File(directory, String.format("%s-%06d.seg", name, segments.size()));
+        try {
+            MappedByteBuffer segment = map(file, segmentBytes);
+            segment.putInt(0, SEGMENT_MAGIC);
+            segments.add(segment);
+            writeOffset = FILE_HEADER;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot create segment " + file.getAbsolutePath() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static MappedByteBuffer map(File file, int size) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            if (raf.length() < size) {
+                raf.setLength(size);
+            }
+            // The mapping stays valid once the file is closed
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    // ---- encoding helpers ----
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static int unzigzag(long value) {
+        return (int) ((value >>> 1) ^ -(value & 1));
+    }
+
+    private static long readVarLong(byte[] in, int[] pos) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in[pos[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static final class Encoder {
+        private byte[] bytes;
+        private int size;
+
+        Encoder(int capacity) {
+            bytes = new byte[Math.max(16, capacity)];
+        }
+
+        void varLong(long value) {
+            if (size + 10 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+
+    // ---- in-memory state ----
+
+    private static final class Series {
+        final int id;
+        // Indexed by Resolution ordinal, created on demand
+        final ChunkIndex[] index = new ChunkIndex[3];
+        final Records[] buffers = new Records[3];
+        final Bucket[] open = new Bucket[3];
+        long lastTs = Long.MIN_VALUE;
+        // Open buckets rebuilt from the raw samples (always true for a series created at runtime)
+        boolean seeded;
+
+        Series(int id) {
+            this.id = id;
+        }
+
+        ChunkIndex index(int kind) {
+            if (index[kind] == null) {
+                index[kind] = new ChunkIndex();
+            }
+            return index[kind];
+        }
+
+        Records buffer(int kind) {
+            if (buffers[kind] == null) {
+                buffers[kind] = new Records(kind == 0 ? 16 : 4);
+            }
+            return buffers[kind];
+        }
+    }
+
+    /**
+     * Chunks of one series and kind in time order: first/last timestamp and location
+     * (segment number in the high 32 bits, offset in the low 32 bits)
+     */
+    private static final class ChunkIndex {
+        long[] first = new long[4];
+        long[] last = new long[4];
+        long[] location = new long[4];
+        int size;
+
+        void add(long firstTs, long lastTs, long at) {
+            if (size == first.length) {
+                first = Arrays.copyOf(first, size * 2);
+                last = Arrays.copyOf(last, size * 2);
+                location = Arrays.copyOf(location, size * 2);
+            }
+            first[size] = firstTs;
+            last[size] = lastTs;
+            location[size] = at;
+            size++;
+        }
+
+        // Chunks are in time order, so their last timestamps are sorted
+        int firstEndingAtOrAfter(long ts) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (last[mid] < ts) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Growable columns of samples or buckets; values are hundredths
+     */
+    private static final class Records {
+        long[] ts;
+        int[] min;
+        int[] max;
+        int[] avg;
+        int[] count;
+        int size;
+
+        Records(int capacity) {
+            ts = new long[capacity];
+            min = new int[capacity];
+            max = new int[capacity];
+            avg = new int[capacity];
+            count = new int[capacity];
+        }
+
+        void add(long t, int mn, int mx, int av, int n) {
+            if (size == ts.length) {
+                int capacity = size * 2;
+                ts = Arrays.copyOf(ts, capacity);
+                min = Arrays.copyOf(min, capacity);
+                max = Arrays.copyOf(max, capacity);
+                avg = Arrays.copyOf(avg, capacity);
+                count = Arrays.copyOf(count, capacity);
+            }
+            ts[size] = t;
+            min[size] = mn;
+            max[size] = mx;
+            avg[size] = av;
+            count[size] = n;
+            size++;
+        }
+    }
+
+    private static final class Bucket {
+        final long start;
+        long sum;
+        int count;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+
+        Bucket(long start) {
+            this.start = start;
+        }
+
+        int average() {
+            return (int) Math.round((double) sum / count);
+        }
+    }
+
+    /**
+     * A raw sample (min = max = average, count 1) or an aggregated bucket starting at epochSecond
+     */
+    public static final class Sample {
+        private final long epochSecond;
+        private final int min;
+        private final int max;
+        private final int average;
+        private final int count;
+
+        Sample(long epochSecond, int min, int max, int average, int count) {
+            this.epochSecond = epochSecond;
+            this.min = min;
+            this.max = max;
+            this.average = average;
+            this.count = count;
+        }
+
+        public long getEpochSecond() {
+            return epochSecond;
+        }
+
+        public float getMin() {
+            return min / 100f;
+        }
+
+        public float getMax() {
+            return max / 100f;
+        }
+
+        public float getAverage() {
+            return average / 100f;
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+}
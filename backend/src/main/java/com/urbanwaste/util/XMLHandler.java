@@ -2,6 +2,7 @@ package com.urbanwaste.util;
 
 import com.urbanwaste.model.*;
 import com.urbanwaste.exception.XMLValidationException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.stereotype.Component;
@@ -9,21 +10,52 @@ import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
 // --- JAXB IS JAKARTA ---
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.xml.bind.*;
+import jakarta.xml.bind.annotation.XmlRootElement;
 
 // --- CORE XML IS JAVAX (Standard Java) ---
 import javax.xml.XMLConstants;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 import javax.xml.validation.Validator;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
 import javax.xml.transform.stream.StreamSource;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
+import java.util.zip.GZIPOutputStream;
 
 @Component
 public class XMLHandler {
@@ -31,9 +63,51 @@ public class XMLHandler {
     private final ResourceLoader resourceLoader;
     private static final String STORAGE_DIR = "src/main/resources/data"; 
     private static final String CLASSPATH_DIR = "data/"; 
+    private static final String TEMP_SUFFIX = ".tmp";
+    
+    private static final XMLInputFactory STAX_INPUT = newStaxInputFactory();
+    private static final XMLOutputFactory STAX_OUTPUT = XMLOutputFactory.newFactory();
 
     private final ConcurrentHashMap<Class<?>, JAXBContext> contextCache = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, Schema> schemaCache = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, EntityStore<?, ?>> stores = new ConcurrentHashMap<>();
+    
+    // Latest snapshot of every loaded store, swapped as a whole on each commit
+    private final AtomicReference<ReadView> readView = new AtomicReference<>(ReadView.EMPTY);
+    
+    // "snapshot": every write rewrites the XML file. "journal": writes are appended to
+    // <file>.wal and folded into the XML file by a background compactor.
+    @Value("${urbanwaste.persistence.mode:snapshot}")
+    private String persistenceMode;
+    
+    @Value("${urbanwaste.persistence.journal.compact-interval-ms:30000}")
+    private long compactIntervalMs;
+    
+    @Value("${urbanwaste.persistence.journal.compact-threshold:1000}")
+    private int compactThreshold;
+    
+    // Group commit: concurrent writes to a file are saved together within this window
+    @Value("${urbanwaste.persistence.group-commit.window-ms:5}")
+    private long groupCommitWindowMs;
+    
+    @Value("${urbanwaste.persistence.group-commit.max-batch:64}")
+    private int groupCommitMaxBatch;
+    
+    private ScheduledExecutorService compactor;
+    
+    // Streaming imports merge this many records per store write
+    @Value("${urbanwaste.import.chunk-size:500}")
+    private int importChunkSize;
+    
+    // When writes are forced to disk: "none" (left to the OS), "data" (file contents are
+    // fsynced before the rename) or "full" (data, plus the directory after the rename)
+    @Value("${urbanwaste.persistence.durability:full}")
+    private String durabilityLevel;
+    
+    private Durability durability = Durability.FULL;
+    
+    // Reusable marshallers/unmarshallers/validators, keyed by class, schema and configuration
+    private final JaxbPool jaxbPool;
     
     /**
      * Clear schema cache to force reload (useful when XSD files are updated)
@@ -47,10 +121,90 @@ public class XMLHandler {
      */
     public void clearSchemaCache(String xsdFileName) {
         schemaCache.remove(xsdFileName);
+        // Pooled instances hold the old schema
+        jaxbPool.evict("|" + xsdFileName + "|");
     }
     
-    public XMLHandler(ResourceLoader resourceLoader) {
+    public XMLHandler(ResourceLoader resourceLoader,
+                      @Value("${urbanwaste.xml.pool.max-idle:32}") int poolMaxIdle) {
         this.resourceLoader = resourceLoader;
+        this.jaxbPool = new JaxbPool(poolMaxIdle);
+    }
+    
+    private static XMLInputFactory newStaxInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        // Uploaded files: no DTDs or external entities
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+    
+    @PostConstruct
+    public void init() {
+        durability = Durability.parse(durabilityLevel);
+        recoverPartialWrites();
+        
+        if (isJournaling()) {
+            System.out.println("[XMLHandler] Journal persistence enabled, compacting every " + compactIntervalMs + " ms");
+            compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "xml-journal-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            compactor.scheduleWithFixedDelay(this::compactAll, compactIntervalMs, compactIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * Fold every journal into its XML snapshot before shutting down
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (compactor != null) {
+            compactor.shutdown();
+            try {
+                compactor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        compactAll();
+        stores.values().forEach(EntityStore::close);
+    }
+    
+    /**
+     * Startup recovery. Files are only ever replaced by renaming a complete temp file over
+     * them, so a crash mid-save leaves the previous version intact plus an orphaned temp
+     * file: the partial write is rolled back by deleting it.
+     */
+    private void recoverPartialWrites() {
+        File storageDir = new File(STORAGE_DIR);
+        File[] orphans = storageDir.listFiles((dir, name) -> name.endsWith(TEMP_SUFFIX));
+        if (orphans == null || orphans.length == 0) {
+            return;
+        }
+        for (File orphan : orphans) {
+            if (orphan.delete()) {
+                System.out.println("[XMLHandler] Rolled back partial write: deleted " + orphan.getName());
+            } else {
+                System.err.println("[XMLHandler] Could not delete partial write " + orphan.getAbsolutePath());
+            }
+        }
+        if (durability == Durability.FULL) {
+            syncDirectory(storageDir);
+        }
+    }
+    
+    long getGroupCommitWindowMs() {
+        return groupCommitWindowMs;
+    }
+    
+    int getGroupCommitMaxBatch() {
+        return groupCommitMaxBatch;
+    }
+    
+    public boolean isJournaling() {
+        return "journal".equalsIgnoreCase(persistenceMode);
     }
     
     /**
@@ -68,6 +222,8 @@ public class XMLHandler {
             return "signalements.xsd";
         } else if (fileName.contains("notifications")) {
             return "notifications.xsd";
+        } else if (fileName.contains("zones")) {
+            return "zones.xsd";
         } else if (fileName.contains("points") || fileName.contains("collection")) {
             return "pointsCollecte.xsd";
         }
@@ -95,19 +251,32 @@ public class XMLHandler {
             return; // No validation if no XSD specified
         }
         
-        Schema schema = getOrLoadSchema(xsdFileName);
-        Validator validator = schema.newValidator();
-        
-        // Marshal to temporary stream for validation
-        JAXBContext context = getOrCreateContext(object.getClass());
-        Marshaller marshaller = context.createMarshaller();
+        // Fast path: validate while marshalling, without keeping the output
+        boolean[] invalid = new boolean[1];
+        try (JaxbPool.Lease<Marshaller> marshaller = marshaller(object.getClass(), xsdFileName, false)) {
+            marshaller.get().setEventHandler(event -> {
+                invalid[0] = true;
+                return false;
+            });
+            marshaller.get().marshal(object, OutputStream.nullOutputStream());
+        } catch (MarshalException e) {
+            if (!invalid[0]) {
+                throw e;
+            }
+        }
+        if (!invalid[0]) {
+            return;
+        }
         
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            marshaller.marshal(object, baos);
+        // Invalid: marshal to temporary stream and validate it to get the line and column
+        try (JaxbPool.Lease<Marshaller> marshaller = marshaller(object.getClass(), null, false);
+             JaxbPool.Lease<Validator> validator = validator(xsdFileName);
+             ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+            marshaller.get().marshal(object, baos);
             
             // Validate the XML
             try (ByteArrayInputStream bais = new ByteArrayInputStream(baos.toByteArray())) {
-                validator.validate(new StreamSource(bais));
+                validator.get().validate(new StreamSource(bais));
             } catch (SAXParseException e) {
                 throw new XMLValidationException(
                     String.format("XML validation failed at line %d, column %d: %s", 
@@ -116,6 +285,7 @@ public class XMLHandler {
                 throw new XMLValidationException("XML validation failed: " + e.getMessage(), e);
             }
         }
+        throw new XMLValidationException("XML validation failed during marshalling");
     }
     
     /**
@@ -127,23 +297,6 @@ public class XMLHandler {
             xsdFileName = determineXsdFileName(fileName, object.getClass());
         }
         
-        // Validate before saving
-        if (xsdFileName != null && !xsdFileName.isEmpty()) {
-            validateXML(object, xsdFileName);
-        }
-        
-        JAXBContext context = getOrCreateContext(object.getClass());
-        Marshaller marshaller = context.createMarshaller();
-        
-        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-        marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
-        
-        // Set schema for marshalling (will also validate during marshalling)
-        if (xsdFileName != null && !xsdFileName.isEmpty()) {
-            Schema schema = getOrLoadSchema(xsdFileName);
-            marshaller.setSchema(schema);
-        }
-        
         File storageDir = new File(STORAGE_DIR);
         if (!storageDir.exists()) {
             storageDir.mkdirs();
@@ -152,19 +305,95 @@ public class XMLHandler {
         File file = new File(storageDir, fileName);
         System.out.println("Saving XML to: " + file.getAbsolutePath());
         
-        try (FileOutputStream fos = new FileOutputStream(file)) {
-            marshaller.marshal(object, fos);
-        } catch (MarshalException e) {
-            if (e.getLinkedException() instanceof SAXParseException) {
-                SAXParseException saxEx = (SAXParseException) e.getLinkedException();
-                throw new XMLValidationException(
-                    String.format("XML validation failed during marshalling at line %d, column %d: %s", 
-                        saxEx.getLineNumber(), saxEx.getColumnNumber(), saxEx.getMessage()), saxEx);
+        // Single pass: the schema is set on the marshaller, so the document is validated
+        // while it is written to a temp file. The real file is only replaced on success.
+        File temp = File.createTempFile(fileName + ".", TEMP_SUFFIX, storageDir);
+        boolean moved = false;
+        try {
+            ValidationEvent[] firstError = new ValidationEvent[1];
+            try (JaxbPool.Lease<Marshaller> marshaller = marshaller(object.getClass(), xsdFileName, true);
+                 FileOutputStream fos = new FileOutputStream(temp);
+                 OutputStream out = new BufferedOutputStream(fos, 64 * 1024)) {
+                // Keep going after a schema error so the temp file holds the whole document
+                marshaller.get().setEventHandler(event -> {
+                    if (firstError[0] == null) {
+                        firstError[0] = event;
+                    }
+                    return event.getSeverity() != ValidationEvent.FATAL_ERROR;
+                });
+                marshaller.get().marshal(object, out);
+                
+                // The data must be on disk before the rename can make it visible
+                out.flush();
+                if (firstError[0] == null && durability != Durability.NONE) {
+                    fos.getFD().sync();
+                }
+            } catch (MarshalException e) {
+                if (firstError[0] == null) {
+                    throw e;
+                }
             }
-            throw e;
+            
+            if (firstError[0] != null) {
+                throw locateValidationError(temp, xsdFileName, firstError[0]);
+            }
+            
+            moveIntoPlace(temp, file);
+            moved = true;
+            
+            // Persist the rename itself (the directory entry)
+            if (durability == Durability.FULL) {
+                syncDirectory(storageDir);
+            }
+        } finally {
+            if (!moved) {
+                temp.delete();
+            }
+        }
+    }
+    
+    /**
+     * fsync a directory so renames and newly created files in it survive a crash.
+     * Some platforms (e.g. Windows) cannot open directories; there it is skipped.
+     */
+    static void syncDirectory(File directory) {
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported on this platform/file system
+        }
+    }
+    
+    /**
+     * Rename the fully written temp file over the target, atomically where the file system allows it
+     */
+    private void moveIntoPlace(File temp, File target) throws IOException {
+        try {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
         }
     }
     
+    /**
+     * Marshal-time validation events carry no text position, so the rejected document is
+     * validated once more from the temp file to report the line and column of the error.
+     * Only runs on the failure path.
+     */
+    private XMLValidationException locateValidationError(File temp, String xsdFileName, ValidationEvent event) {
+        try (JaxbPool.Lease<Validator> validator = validator(xsdFileName)) {
+            validator.get().validate(new StreamSource(temp));
+        } catch (SAXParseException e) {
+            return new XMLValidationException(
+                String.format("XML validation failed at line %d, column %d: %s", 
+                    e.getLineNumber(), e.getColumnNumber(), e.getMessage()), e);
+        } catch (SAXException | IOException | JAXBException e) {
+            // Fall through to the marshal-time message
+        }
+        return new XMLValidationException("XML validation failed during marshalling: " + event.getMessage(),
+            event.getLinkedException());
+    }
+    
     /**
      * Save object to XML with automatic XSD validation (convenience method)
      */
@@ -211,22 +440,19 @@ public class XMLHandler {
         }
         
         // 4. Unmarshal
-        try (InputStream is = inputStream) {
-            JAXBContext context = getOrCreateContext(clazz);
-            Unmarshaller unmarshaller = context.createUnmarshaller();
-            
-            if (xsdFileName != null && !xsdFileName.isEmpty()) {
-                Schema schema = getOrLoadSchema(xsdFileName);
-                unmarshaller.setSchema(schema);
+        try (InputStream is = inputStream;
+             JaxbPool.Lease<Unmarshaller> unmarshaller = unmarshaller(clazz, xsdFileName)) {
+            return (T) unmarshaller.get().unmarshal(is);
+        } catch (UnmarshalException e) {
+            if (!(e.getLinkedException() instanceof SAXParseException)) {
+                throw e;
             }
-            
-            return (T) unmarshaller.unmarshal(is);
-        } catch (org.xml.sax.SAXParseException e) {
             // Wrap SAXParseException with more details
+            SAXParseException saxEx = (SAXParseException) e.getLinkedException();
             throw new SAXException(
-                String.format("XML validation failed at line %d, column %d: %s", 
-                    e.getLineNumber(), e.getColumnNumber(), 
-                    e.getMessage() != null ? e.getMessage() : e.getLocalizedMessage()), e);
+                String.format("XML validation failed at line %d, column %d: %s",
+                    saxEx.getLineNumber(), saxEx.getColumnNumber(),
+                    saxEx.getMessage() != null ? saxEx.getMessage() : saxEx.getLocalizedMessage()), saxEx);
         } catch (IOException e) {
             throw new JAXBException("Error reading input stream", e);
         }
@@ -240,9 +466,316 @@ public class XMLHandler {
         }
     }
     
+    /**
+     * Get the resident entity store for an XML file (one shared instance per file).
+     * The file is unmarshalled on first access; afterwards reads are served from memory
+     * and writes made through the store are persisted back to the file.
+     */
+    public <W, T> EntityStore<W, T> getStore(String fileName, Class<W> wrapperClass,
+                                             Function<W, List<T>> listGetter,
+                                             BiConsumer<W, List<T>> listSetter,
+                                             ToIntFunction<T> idGetter) {
+        return getStore(fileName, wrapperClass, listGetter, listSetter, idGetter, null);
+    }
+    
+    /**
+     * Same as above, with the copier used by {@link EntityStore.Transaction#edit(int)} to
+     * modify existing entities copy-on-write
+     */
+    @SuppressWarnings("unchecked")
+    public <W, T> EntityStore<W, T> getStore(String fileName, Class<W> wrapperClass,
+                                             Function<W, List<T>> listGetter,
+                                             BiConsumer<W, List<T>> listSetter,
+                                             ToIntFunction<T> idGetter,
+                                             UnaryOperator<T> copier) {
+        return (EntityStore<W, T>) stores.computeIfAbsent(fileName, k -> {
+            EntityJournal journal = isJournaling() ? new EntityJournal(journalFile(fileName), durability) : null;
+            return new EntityStore<>(this, fileName, wrapperClass, listGetter, listSetter, idGetter, copier, journal);
+        });
+    }
+    
+    /**
+     * Consistent view of all stores as of the last commit. Lock-free; hold on to the
+     * returned view to read several stores at the same point in time.
+     */
+    public ReadView view() {
+        return readView.get();
+    }
+    
+    /**
+     * Record a store's newly published snapshot in the shared view
+     */
+    void publish(EntityStore<?, ?> store, EntityStore.Snapshot<?> snapshot) {
+        readView.updateAndGet(view -> view.with(store, snapshot));
+    }
+    
+    /**
+     * Ask the compactor to fold a store's journal into its XML file soon
+     */
+    void requestCompaction(EntityStore<?, ?> store) {
+        if (compactor != null && store.getJournalSize() >= compactThreshold && store.markCompactionRequested()) {
+            compactor.execute(() -> compact(store));
+        }
+    }
+    
+    private void compactAll() {
+        stores.values().forEach(this::compact);
+    }
+    
+    private void compact(EntityStore<?, ?> store) {
+        try {
+            store.compact();
+        } catch (Exception e) {
+            // The journal is kept, so nothing is lost; the next run retries
+            System.err.println("[XMLHandler] Failed to compact " + store.getFileName() + ": " + e.getMessage());
+        }
+    }
+    
+    private File journalFile(String fileName) {
+        return new File(STORAGE_DIR, fileName + ".wal");
+    }
+    
+    /**
+     * Validate a wrapper against the XSD of the given XML file without writing anything
+     */
+    void validate(Object wrapper, String fileName) throws JAXBException, XMLValidationException {
+        try {
+            validateXML(wrapper, determineXsdFileName(fileName, wrapper.getClass()));
+        } catch (SAXException | IOException e) {
+            throw new JAXBException("Failed to validate XML: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Marshal a single entity as a compact XML fragment (journal records)
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    byte[] marshalFragment(Object entity, Class<?> contextClass) throws JAXBException {
+        try (JaxbPool.Lease<Marshaller> marshaller = jaxbPool.lease(contextClass.getName() + "||fragment",
+                () -> {
+                    Marshaller m = getOrCreateContext(contextClass).createMarshaller();
+                    m.setProperty(Marshaller.JAXB_FRAGMENT, true);
+                    m.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
+                    return m;
+                }, null)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+            marshaller.get().marshal(new JAXBElement(new QName("e"), entity.getClass(), entity), out);
+            return out.toByteArray();
+        }
+    }
+    
+    /**
+     * Unmarshal a fragment written by {@link #marshalFragment}
+     */
+    <T> T unmarshalFragment(byte[] xml, Class<T> type, Class<?> contextClass) throws JAXBException {
+        try (JaxbPool.Lease<Unmarshaller> unmarshaller = unmarshaller(contextClass, null)) {
+            return unmarshaller.get().unmarshal(new StreamSource(new ByteArrayInputStream(xml)), type).getValue();
+        }
+    }
+    
+    /**
+     * Stream-import a wrapper document record by record, so memory stays bounded whatever
+     * the file size. Each record element (e.g. <tournee> under <tournees>) is read with
+     * StAX, validated on its own against the XSD, unmarshalled, and handed to the merger
+     * in chunks of at most urbanwaste.import.chunk-size entities. Rejected records are reported per record
+     * and do not stop the import.
+     */
+    public <T> ImportReport streamImport(InputStream inputStream, Class<?> wrapperClass, Class<T> entityClass,
+                                         String recordElement, String xsdFileName,
+                                         ChunkMerger<T> merger) throws JAXBException {
+        int chunkSize = Math.max(1, importChunkSize);
+        String rootElement = wrapperClass.getAnnotation(XmlRootElement.class).name();
+        ImportReport report = new ImportReport();
+        List<T> chunk = new ArrayList<>(chunkSize);
+        int[] chunkRange = {0, 0};
+        
+        XMLEventReader reader = null;
+        try (JaxbPool.Lease<Unmarshaller> unmarshaller = unmarshaller(wrapperClass, null);
+             JaxbPool.Lease<Validator> validator = xsdFileName != null ? validator(xsdFileName) : null) {
+            reader = STAX_INPUT.createXMLEventReader(inputStream);
+            
+            // The document element must be the wrapper
+            XMLEvent event = null;
+            while (reader.hasNext() && (event == null || !event.isStartElement())) {
+                event = reader.nextEvent();
+            }
+            if (event == null || !event.isStartElement()
+                    || !rootElement.equals(event.asStartElement().getName().getLocalPart())) {
+                report.setFatalError("Invalid XML structure: expected <" + rootElement + "> as root element");
+                return report;
+            }
+            
+            int recordNumber = 0;
+            while (reader.hasNext()) {
+                event = reader.nextEvent();
+                if (event.isEndElement()) {
+                    break; // </root>
+                }
+                if (!event.isStartElement()) {
+                    continue;
+                }
+                
+                recordNumber++;
+                report.recordSeen();
+                StartElement start = event.asStartElement();
+                int line = start.getLocation().getLineNumber();
+                byte[] fragment = copyElement(start, reader);
+                
+                if (!recordElement.equals(start.getName().getLocalPart())) {
+                    report.recordError(recordNumber, line, 0, "Unexpected element <" + start.getName().getLocalPart()
+                        + ">, expected <" + recordElement + ">");
+                    continue;
+                }
+                
+                // Record types are local to the XSD, so validate the fragment inside its wrapper
+                if (validator != null) {
+                    try {
+                        validator.get().validate(new StreamSource(new SequenceInputStream(Collections.enumeration(List.of(
+                            new ByteArrayInputStream(("<" + rootElement + ">").getBytes(StandardCharsets.UTF_8)),
+                            new ByteArrayInputStream(fragment),
+                            new ByteArrayInputStream(("</" + rootElement + ">").getBytes(StandardCharsets.UTF_8)))))));
+                    } catch (SAXParseException e) {
+                        report.recordError(recordNumber, line + Math.max(e.getLineNumber(), 1) - 1,
+                            e.getLineNumber() > 1 ? e.getColumnNumber() : 0, e.getMessage());
+                        continue;
+                    } catch (SAXException | IOException e) {
+                        report.recordError(recordNumber, line, 0, e.getMessage());
+                        continue;
+                    }
+                }
+                
+                T entity;
+                try {
+                    entity = unmarshaller.get()
+                        .unmarshal(new StreamSource(new ByteArrayInputStream(fragment)), entityClass).getValue();
+                } catch (JAXBException e) {
+                    report.recordError(recordNumber, line, 0,
+                        e.getMessage() != null ? e.getMessage() : String.valueOf(e.getLinkedException()));
+                    continue;
+                }
+                
+                if (chunk.isEmpty()) {
+                    chunkRange[0] = recordNumber;
+                }
+                chunkRange[1] = recordNumber;
+                chunk.add(entity);
+                if (chunk.size() >= chunkSize) {
+                    mergeChunk(chunk, chunkRange, merger, report);
+                }
+            }
+        } catch (XMLStreamException e) {
+            // Not well-formed: keep what was read so far, report where the document broke
+            report.setFatalError(e.getLocation() != null
+                ? String.format("XML parsing failed at line %d, column %d: %s",
+                    e.getLocation().getLineNumber(), e.getLocation().getColumnNumber(), e.getMessage())
+                : "XML parsing failed: " + e.getMessage());
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
+                    // Ignore close errors
+                }
+            }
+        }
+        
+        if (!chunk.isEmpty()) {
+            mergeChunk(chunk, chunkRange, merger, report);
+        }
+        System.out.println("[XMLHandler] Streamed " + report.getTotal() + " <" + recordElement + "> records: "
+            + report.getImported() + " imported, " + report.getFailed() + " rejected");
+        return report;
+    }
+    
+    private <T> void mergeChunk(List<T> chunk, int[] chunkRange, ChunkMerger<T> merger, ImportReport report) {
+        try {
+            report.addImported(merger.merge(new ArrayList<>(chunk)));
+        } catch (JAXBException | XMLValidationException | RuntimeException e) {
+            report.chunkError(chunkRange[0], chunkRange[1], chunk.size(), e.getMessage());
+        }
+        chunk.clear();
+    }
+    
+    /**
+     * Copy one element, from its start tag to the matching end tag, into a standalone fragment
+     */
+    private byte[] copyElement(StartElement start, XMLEventReader reader) throws XMLStreamException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+        XMLEventWriter writer = STAX_OUTPUT.createXMLEventWriter(out, "UTF-8");
+        writer.add(start);
+        int depth = 1;
+        while (depth > 0) {
+            XMLEvent event = reader.nextEvent();
+            if (event.isStartElement()) {
+                depth++;
+            } else if (event.isEndElement()) {
+                depth--;
+            }
+            writer.add(event);
+        }
+        writer.close();
+        return out.toByteArray();
+    }
+    
+    /**
+     * Stream a wrapper document straight to the output, one record element at a time,
+     * instead of marshalling the whole wrapper into a String first. Memory use stays at
+     * one record whatever the export size. With gzip the output is compressed on the fly.
+     */
+    public <T> void streamExport(OutputStream outputStream, Class<?> wrapperClass, String recordElement,
+                                 Iterable<T> entities, boolean gzip) throws IOException {
+        String rootElement = wrapperClass.getAnnotation(XmlRootElement.class).name();
+        GZIPOutputStream gzipStream = gzip ? new GZIPOutputStream(outputStream, 8192) : null;
+        OutputStream out = new BufferedOutputStream(gzip ? gzipStream : outputStream, 64 * 1024);
+        
+        int count = 0;
+        try (JaxbPool.Lease<Marshaller> marshaller = jaxbPool.lease(wrapperClass.getName() + "||fragment-formatted",
+                () -> {
+                    Marshaller m = getOrCreateContext(wrapperClass).createMarshaller();
+                    m.setProperty(Marshaller.JAXB_FRAGMENT, true);
+                    m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+                    m.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
+                    return m;
+                }, null)) {
+            out.write(("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n<" + rootElement + ">\n")
+                .getBytes(StandardCharsets.UTF_8));
+            QName name = new QName(recordElement);
+            for (T entity : entities) {
+                marshallRecord(marshaller.get(), name, entity, out);
+                out.write('\n');
+                count++;
+            }
+            out.write(("</" + rootElement + ">\n").getBytes(StandardCharsets.UTF_8));
+        } catch (JAXBException e) {
+            throw new IOException("Failed to export <" + recordElement + "> records: " + e.getMessage(), e);
+        }
+        
+        out.flush();
+        if (gzipStream != null) {
+            gzipStream.finish();
+        }
+        System.out.println("[XMLHandler] Streamed " + count + " <" + recordElement + "> records" + (gzip ? " (gzip)" : ""));
+    }
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void marshallRecord(Marshaller marshaller, QName name, Object entity, OutputStream out) throws JAXBException {
+        marshaller.marshal(new JAXBElement(name, entity.getClass(), entity), out);
+    }
+    
+    /**
+     * Merges one chunk of imported entities, returning how many were imported/updated
+     */
+    @FunctionalInterface
+    public interface ChunkMerger<T> {
+        int merge(List<T> chunk) throws JAXBException, XMLValidationException;
+    }
+    
     public boolean fileExists(String fileName) {
         File file = new File(STORAGE_DIR, fileName);
         if (file.exists()) return true;
+        
+        // In journal mode a file may only exist as its log until the first compaction
+        if (isJournaling() && journalFile(fileName).length() > 0) return true;
 
         Resource resource = resourceLoader.getResource("classpath:" + CLASSPATH_DIR + fileName);
         return resource.exists();
@@ -289,10 +822,76 @@ public class XMLHandler {
         classes.add(TourneesWrapper.class);
         classes.add(PointsCollecteWrapper.class);
         classes.add(VehiculesWrapper.class);
+        classes.add(Zone.class);
+        classes.add(Sommet.class);
+        classes.add(ZonesWrapper.class);
         
         return classes.toArray(new Class<?>[0]);
     }
     
+    /**
+     * Pooled marshaller for a class, optionally bound to a schema and set up for file output
+     */
+    private JaxbPool.Lease<Marshaller> marshaller(Class<?> clazz, String xsdFileName, boolean formatted) throws JAXBException {
+        String xsd = xsdFileName != null ? xsdFileName : "";
+        return jaxbPool.lease(clazz.getName() + "|" + xsd + "|" + (formatted ? "formatted" : "plain"), () -> {
+            Marshaller marshaller = getOrCreateContext(clazz).createMarshaller();
+            if (formatted) {
+                marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+                marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
+            }
+            if (!xsd.isEmpty()) {
+                marshaller.setSchema(schemaFor(xsd));
+            }
+            return marshaller;
+        }, XMLHandler::resetEventHandler);
+    }
+    
+    private static void resetEventHandler(Marshaller marshaller) {
+        try {
+            marshaller.setEventHandler(null);
+        } catch (JAXBException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Pooled unmarshaller for a class, optionally validating against a schema
+     */
+    private JaxbPool.Lease<Unmarshaller> unmarshaller(Class<?> clazz, String xsdFileName) throws JAXBException {
+        String xsd = xsdFileName != null ? xsdFileName : "";
+        return jaxbPool.lease(clazz.getName() + "|" + xsd + "|unmarshal", () -> {
+            Unmarshaller unmarshaller = getOrCreateContext(clazz).createUnmarshaller();
+            if (!xsd.isEmpty()) {
+                unmarshaller.setSchema(schemaFor(xsd));
+            }
+            return unmarshaller;
+        }, null);
+    }
+    
+    /**
+     * Pooled validator for a schema, reset before it is reused
+     */
+    private JaxbPool.Lease<Validator> validator(String xsdFileName) throws JAXBException {
+        return jaxbPool.lease("|" + xsdFileName + "|validator",
+            () -> schemaFor(xsdFileName).newValidator(), Validator::reset);
+    }
+    
+    private Schema schemaFor(String xsdFileName) throws JAXBException {
+        try {
+            return getOrLoadSchema(xsdFileName);
+        } catch (SAXException e) {
+            throw new JAXBException("Failed to load schema: " + xsdFileName, e);
+        }
+    }
+    
+    /**
+     * Pool hit/miss counts and acquire times, for monitoring
+     */
+    public Map<String, Object> getPoolMetrics() {
+        return jaxbPool.getMetrics();
+    }
+    
     private Schema getOrLoadSchema(String xsdFileName) throws SAXException {
         return schemaCache.computeIfAbsent(xsdFileName, k -> {
             try {
@@ -326,14 +925,11 @@ public class XMLHandler {
      * Used for export endpoints and interoperability
      */
     public <T> String marshalToString(T object) throws JAXBException {
-        JAXBContext context = getOrCreateContext(object.getClass());
-        Marshaller marshaller = context.createMarshaller();
-        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-        marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
-        
-        StringWriter writer = new StringWriter();
-        marshaller.marshal(object, writer);
-        return writer.toString();
+        try (JaxbPool.Lease<Marshaller> marshaller = marshaller(object.getClass(), null, true)) {
+            StringWriter writer = new StringWriter();
+            marshaller.get().marshal(object, writer);
+            return writer.toString();
+        }
     }
     
     /**
@@ -360,20 +956,15 @@ public class XMLHandler {
         String preview = new String(buffer, 0, Math.min(500, buffer.length));
         System.out.println("[XMLHandler] XML preview (first 500 chars): " + preview.replace("\n", "\\n").replace("\r", "\\r"));
         
-        JAXBContext context = getOrCreateContext(clazz);
-        Unmarshaller unmarshaller = context.createUnmarshaller();
-        
-        // Set schema for validation if provided
+        // Schema set on the unmarshaller for validation if provided
         if (xsdFileName != null && !xsdFileName.isEmpty()) {
-            Schema schema = getOrLoadSchema(xsdFileName);
-            unmarshaller.setSchema(schema);
             System.out.println("[XMLHandler] Using XSD schema: " + xsdFileName);
             System.out.println("[XMLHandler] Schema cache cleared, using fresh schema");
         }
         
         ByteArrayInputStream bais = new ByteArrayInputStream(buffer);
-        try {
-            return (T) unmarshaller.unmarshal(bais);
+        try (JaxbPool.Lease<Unmarshaller> unmarshaller = unmarshaller(clazz, xsdFileName)) {
+            return (T) unmarshaller.get().unmarshal(bais);
         } catch (JAXBException e) {
             // Check if the cause is a SAXParseException (validation error)
             Throwable cause = e.getCause();
@@ -438,4 +1029,23 @@ public class XMLHandler {
             throw new JAXBException("Failed to unmarshal from stream: " + e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * How far a save is forced to disk before it is acknowledged
+     */
+    public enum Durability {
+        NONE, DATA, FULL;
+        
+        static Durability parse(String value) {
+            if (value == null || value.isBlank()) {
+                return FULL;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                System.err.println("[XMLHandler] Unknown durability level '" + value + "', using FULL");
+                return FULL;
+            }
+        }
+    }
+}
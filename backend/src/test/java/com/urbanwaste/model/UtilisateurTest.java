@@ -0,0 +1,33 @@
+package com.urbanwaste.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UtilisateurTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void passwordIsNeverSerialized() throws Exception {
+        Admin admin = new Admin();
+        admin.setId(3);
+        admin.setMail("a@b.c");
+        admin.setMotDePasse("pbkdf2-sha256$210000$c2FsdA$aGFzaA");
+
+        String json = mapper.writeValueAsString(admin);
+
+        assertFalse(json.contains("pbkdf2"), json);
+        assertFalse(json.contains("assword"), json);
+        assertFalse(json.contains("motDePasse"), json);
+        assertTrue(json.contains("a@b.c"), json);
+    }
+
+    @Test
+    void passwordIsReadUnderEitherName() throws Exception {
+        assertEquals("1234", mapper.readValue("{\"mail\":\"a@b.c\",\"motDePasse\":\"1234\"}", Utilisateur.class).getPassword());
+        assertEquals("1234", mapper.readValue("{\"mail\":\"a@b.c\",\"password\":\"1234\"}", Utilisateur.class).getPassword());
+        assertNull(mapper.readValue("{\"mail\":\"a@b.c\"}", Utilisateur.class).getPassword());
+    }
+}
@@ -0,0 +1,75 @@
+package com.urbanwaste.service;
+
+import com.urbanwaste.util.PasswordHasher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordServiceTest {
+
+    private PasswordService passwords;
+
+    @BeforeEach
+    void setUp() {
+        passwords = new PasswordService();
+        // Low work factor: the tests are about what gets stored, not about its cost
+        ReflectionTestUtils.setField(passwords, "iterations", 1000);
+        ReflectionTestUtils.setField(passwords, "verifierThreads", 2);
+        ReflectionTestUtils.setField(passwords, "verifierQueue", 16);
+        passwords.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        passwords.shutdown();
+    }
+
+    @Test
+    void passwordIsStoredAsASaltedHash() {
+        String stored = passwords.encode("1234");
+
+        assertTrue(PasswordHasher.isHashed(stored));
+        assertNotEquals(stored, passwords.encode("1234"));
+        assertTrue(passwords.verify("1234", stored).isMatched());
+        assertFalse(passwords.verify("5678", stored).isMatched());
+    }
+
+    @Test
+    void passwordLookingLikeAHashIsHashed() {
+        String chosen = PasswordHasher.PREFIX + "1000$c2FsdA$aGFzaA";
+
+        String stored = passwords.encode(chosen);
+
+        assertNotEquals(chosen, stored);
+        assertTrue(passwords.verify(chosen, stored).isMatched());
+    }
+
+    @Test
+    void noPasswordGivesNoHash() {
+        // An update without a password keeps the stored one
+        assertNull(passwords.encode(null));
+    }
+
+    @Test
+    void clearPasswordStillVerifiesAndIsUpgraded() {
+        // A legacy password stored in clear, before migration
+        PasswordService.Verification verification = passwords.verify("1234", "1234");
+
+        assertTrue(verification.isMatched());
+        assertTrue(PasswordHasher.isHashed(verification.getRehashed()));
+    }
+
+    @Test
+    void outdatedHashIsUpgradedOnVerification() {
+        String old = new PasswordHasher(500).hash("1234");
+
+        PasswordService.Verification verification = passwords.verify("1234", old);
+
+        assertTrue(verification.isMatched());
+        assertNotNull(verification.getRehashed());
+        assertNull(passwords.verify("1234", verification.getRehashed()).getRehashed());
+    }
+}
@@ -0,0 +1,203 @@
+package com.urbanwaste.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EntityJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recordsAreReadBackInOrder() throws IOException {
+        File file = new File(dir.toFile(), "items.xml.wal");
+        EntityJournal journal = open(file);
+        appendPuts(journal, 1, 2);
+        journal.append(frame(EntityJournal.DELETE, 1), 1);
+        appendPuts(journal, 3);
+        assertEquals(4, journal.size());
+        journal.close();
+
+        EntityJournal reopened = open(file);
+        List<EntityJournal.Record> records = reopened.readAll();
+        assertEquals(4, records.size());
+        assertRecord(records.get(0), EntityJournal.PUT, 1);
+        assertRecord(records.get(1), EntityJournal.PUT, 2);
+        assertRecord(records.get(2), EntityJournal.DELETE, 1);
+        assertRecord(records.get(3), EntityJournal.PUT, 3);
+        assertEquals(4, reopened.size());
+        reopened.close();
+    }
+
+    @Test
+    void recordsSurviveAnUncleanStop() throws IOException {
+        File file = new File(dir.toFile(), "items.xml.wal");
+        EntityJournal crashed = open(file);
+        appendPuts(crashed, 1);
+        appendPuts(crashed, 2, 3);
+        // Never closed: the next instance opens the file as the crash left it
+
+        EntityJournal journal = open(file);
+        List<EntityJournal.Record> records = journal.readAll();
+        assertEquals(3, records.size());
+        assertRecord(records.get(2), EntityJournal.PUT, 3);
+
+        // Appends go on after the replayed records
+        appendPuts(journal, 4);
+        journal.close();
+        assertEquals(4, open(file).readAll().size());
+    }
+
+    @Test
+    void tornTailIsDroppedAndCutOff() throws IOException {
+        File file = new File(dir.toFile(), "items.xml.wal");
+        EntityJournal journal = open(file);
+        appendPuts(journal, 1);
+        appendPuts(journal, 2);
+        long intact = file.length();
+        appendPuts(journal, 3, 4);
+        journal.close();
+        byte[] written = Files.readAllBytes(file.toPath());
+
+        // Cuts all along the last frame, as a crash in the middle of its write would leave
+        for (int length = written.length - 1; length > intact; length -= 7) {
+            Files.write(file.toPath(), Arrays.copyOf(written, length));
+            EntityJournal reopened = open(file);
+            List<EntityJournal.Record> records = reopened.readAll();
+            assertEquals(2, records.size(), "cut at " + length);
+            assertEquals(intact, file.length(), "cut at " + length);
+            reopened.close();
+        }
+
+        // The next frame starts on the boundary, so it is read back
+        EntityJournal reopened = open(file);
+        reopened.readAll();
+        appendPuts(reopened, 5);
+        reopened.close();
+        List<EntityJournal.Record> records = open(file).readAll();
+        assertEquals(3, records.size());
+        assertRecord(records.get(2), EntityJournal.PUT, 5);
+    }
+
+    @Test
+    void frameWithABadChecksumIsDropped() throws IOException {
+        File file = new File(dir.toFile(), "items.xml.wal");
+        EntityJournal journal = open(file);
+        appendPuts(journal, 1);
+        long intact = file.length();
+        appendPuts(journal, 2, 3);
+        journal.close();
+
+        // Flip a byte of the last frame's body: it is whole but not what was written
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(intact + 10);
+            int b = raf.read();
+            raf.seek(intact + 10);
+            raf.write(b ^ 0xFF);
+        }
+
+        List<EntityJournal.Record> records = open(file).readAll();
+        assertEquals(1, records.size());
+        assertRecord(records.get(0), EntityJournal.PUT, 1);
+        assertEquals(intact, file.length());
+    }
+
+    @Test
+    void garbageAfterTheLastFrameIsDropped() throws IOException {
+        File file = new File(dir.toFile(), "items.xml.wal");
+        EntityJournal journal = open(file);
+        appendPuts(journal, 1, 2);
+        long intact = file.length();
+        journal.close();
+
+        // A length that runs past the end of the file, then a few stray bytes
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(intact);
+            raf.writeInt(1 << 20);
+            raf.write(new byte[] {1, 2, 3});
+        }
+
+        assertEquals(2, open(file).readAll().size());
+        assertEquals(intact, file.length());
+    }
+
+    @Test
+    void truncateEmptiesTheLog() throws IOException {
+        File file = new File(dir.toFile(), "items.xml.wal");
+        EntityJournal journal = open(file);
+        appendPuts(journal, 1, 2);
+        assertTrue(journal.exists());
+
+        journal.truncate();
+        assertEquals(0, journal.size());
+        assertFalse(journal.exists());
+
+        appendPuts(journal, 3);
+        journal.close();
+        List<EntityJournal.Record> records = open(file).readAll();
+        assertEquals(1, records.size());
+        assertRecord(records.get(0), EntityJournal.PUT, 3);
+    }
+
+    @Test
+    void missingFileReadsAsEmpty() throws IOException {
+        EntityJournal journal = open(new File(dir.toFile(), "none.xml.wal"));
+        assertTrue(journal.readAll().isEmpty());
+        assertEquals(0, journal.size());
+        assertFalse(journal.exists());
+        // Truncating a log that was never written does not create it
+        journal.truncate();
+        assertFalse(new File(dir.toFile(), "none.xml.wal").exists());
+    }
+
+    private static EntityJournal open(File file) {
+        return new EntityJournal(file, XMLHandler.Durability.NONE);
+    }
+
+    // One frame putting every id, as a batch of writes committed together
+    private static void appendPuts(EntityJournal journal, int... ids) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream batch = new DataOutputStream(bytes);
+        for (int id : ids) {
+            EntityJournal.encode(batch, EntityJournal.PUT, id, "Item", xml(id));
+        }
+        batch.flush();
+        journal.append(bytes.toByteArray(), ids.length);
+    }
+
+    private static byte[] frame(byte op, int id) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream batch = new DataOutputStream(bytes);
+        EntityJournal.encode(batch, op, id, "", new byte[0]);
+        batch.flush();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] xml(int id) {
+        return ("<e><id>" + id + "</id></e>").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void assertRecord(EntityJournal.Record record, byte op, int id) {
+        assertEquals(op, record.op);
+        assertEquals(id, record.id);
+        if (op == EntityJournal.PUT) {
+            assertEquals("Item", record.type);
+            assertEquals(new String(xml(id), StandardCharsets.UTF_8), new String(record.xml, StandardCharsets.UTF_8));
+        } else {
+            assertEquals(0, record.xml.length);
+        }
+    }
+}
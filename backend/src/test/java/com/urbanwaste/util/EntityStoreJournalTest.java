@@ -0,0 +1,256 @@
+package com.urbanwaste.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Journal mode of the EntityStore: what a store opened after a crash sees. The XML file
+ * is kept in memory by the handler below; the journal is the real one, on disk.
+ */
+class EntityStoreJournalTest {
+
+    private static final String FILE = "items.xml";
+
+    @TempDir
+    Path dir;
+
+    private final MemoryXMLHandler xml = new MemoryXMLHandler();
+    private final List<EntityStore<Items, Item>> opened = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(EntityStore::close);
+    }
+
+    @Test
+    void writesAreReplayedAfterAnUncleanStop() throws Exception {
+        EntityStore<Items, Item> crashed = open();
+        put(crashed, 1, "a");
+        put(crashed, 2, "b");
+        put(crashed, 1, "a2");
+        crashed.write(tx -> tx.remove(2));
+        put(crashed, 3, "c");
+        // Nothing folded into the file: everything is in the journal
+        assertNull(xml.files.get(FILE));
+
+        EntityStore<Items, Item> store = open();
+        assertEquals(Map.of(1, "a2", 3, "c"), contents(store));
+        assertEquals(5, store.getJournalSize());
+    }
+
+    @Test
+    void journalIsReplayedOverTheCompactedFile() throws Exception {
+        EntityStore<Items, Item> crashed = open();
+        put(crashed, 1, "a");
+        put(crashed, 2, "b");
+        crashed.compact();
+        assertEquals(0, crashed.getJournalSize());
+        put(crashed, 2, "b2");
+        crashed.write(tx -> tx.remove(1));
+
+        EntityStore<Items, Item> store = open();
+        assertEquals(Map.of(2, "b2"), contents(store));
+    }
+
+    @Test
+    void crashBetweenSaveAndTruncateReplaysHarmlessly() throws Exception {
+        EntityStore<Items, Item> crashed = open();
+        put(crashed, 1, "a");
+        put(crashed, 2, "b");
+        crashed.write(tx -> tx.remove(1));
+        byte[] journal = Files.readAllBytes(journalFile().toPath());
+        crashed.compact();
+        // The file was saved, but the journal was not emptied
+        Files.write(journalFile().toPath(), journal);
+
+        EntityStore<Items, Item> store = open();
+        assertEquals(Map.of(2, "b"), contents(store));
+    }
+
+    @Test
+    void tornJournalTailIsDroppedOnLoad() throws Exception {
+        EntityStore<Items, Item> crashed = open();
+        put(crashed, 1, "a");
+        put(crashed, 2, "b");
+        long intact = journalFile().length();
+        put(crashed, 3, "c");
+        // Cut in the middle of the last frame
+        byte[] journal = Files.readAllBytes(journalFile().toPath());
+        Files.write(journalFile().toPath(), Arrays.copyOf(journal, (int) (intact + (journal.length - intact) / 2)));
+
+        EntityStore<Items, Item> store = open();
+        assertEquals(Map.of(1, "a", 2, "b"), contents(store));
+        assertEquals(intact, journalFile().length());
+
+        // Writes after the recovery are replayed like any other
+        put(store, 4, "d");
+        assertEquals(Map.of(1, "a", 2, "b", 4, "d"), contents(open()));
+    }
+
+    @Test
+    void compactionRacingCommitsLosesNothing() throws Exception {
+        EntityStore<Items, Item> crashed = open();
+        int writers = 4;
+        int writes = 200;
+        CountDownLatch done = new CountDownLatch(writers);
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread compactor = new Thread(() -> {
+            try {
+                while (!stop.get()) {
+                    crashed.compact();
+                }
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        });
+        compactor.start();
+        for (int w = 0; w < writers; w++) {
+            int base = w * 1000;
+            new Thread(() -> {
+                try {
+                    for (int i = 0; i < writes; i++) {
+                        put(crashed, base + i % 50, "v" + i);
+                        if (i % 7 == 0) {
+                            int id = base + (i * 3) % 50;
+                            crashed.write(tx -> tx.remove(id));
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+        stop.set(true);
+        compactor.join();
+        assertNull(failure.get());
+
+        // Each writer owns its ids, so its own order decides their final state
+        Map<Integer, String> expected = new TreeMap<>();
+        for (int w = 0; w < writers; w++) {
+            int base = w * 1000;
+            for (int i = 0; i < writes; i++) {
+                expected.put(base + i % 50, "v" + i);
+                if (i % 7 == 0) {
+                    expected.remove(base + (i * 3) % 50);
+                }
+            }
+        }
+        assertEquals(expected, contents(crashed));
+        // What a restart sees: the last compacted file plus whatever the journal holds since
+        assertEquals(expected, contents(open()));
+    }
+
+    private EntityStore<Items, Item> open() {
+        EntityStore<Items, Item> store = new EntityStore<>(xml, FILE, Items.class,
+            items -> items.items, (items, list) -> items.items = list,
+            item -> item.id, Item::copy, new EntityJournal(journalFile(), XMLHandler.Durability.NONE));
+        opened.add(store);
+        return store;
+    }
+
+    private File journalFile() {
+        return new File(dir.toFile(), FILE + ".wal");
+    }
+
+    private static void put(EntityStore<Items, Item> store, int id, String name) throws Exception {
+        store.write(tx -> {
+            tx.put(new Item(id, name));
+            return null;
+        });
+    }
+
+    private static Map<Integer, String> contents(EntityStore<Items, Item> store) throws Exception {
+        Map<Integer, String> contents = new TreeMap<>();
+        for (Item item : store.getAll()) {
+            assertNull(contents.put(item.id, item.name), "duplicate id " + item.id);
+            assertSame(item, store.get(item.id));
+        }
+        return contents;
+    }
+
+    static final class Item {
+        int id;
+        String name;
+
+        Item(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        Item copy() {
+            return new Item(id, name);
+        }
+    }
+
+    static final class Items {
+        List<Item> items = new ArrayList<>();
+    }
+
+    /**
+     * Saves the "XML file" as a copy of the list, and the journal fragments as "id|name"
+     */
+    private static final class MemoryXMLHandler extends XMLHandler {
+        final Map<String, List<Item>> files = new ConcurrentHashMap<>();
+
+        MemoryXMLHandler() {
+            super(null, 1);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T loadFromXML(String fileName, Class<T> clazz) {
+            List<Item> saved = files.get(fileName);
+            if (saved == null) {
+                return null;
+            }
+            Items items = new Items();
+            saved.forEach(item -> items.items.add(item.copy()));
+            return (T) items;
+        }
+
+        @Override
+        public <T> void saveToXML(T object, String fileName) {
+            List<Item> saved = new ArrayList<>();
+            ((Items) object).items.forEach(item -> saved.add(item.copy()));
+            files.put(fileName, saved);
+        }
+
+        @Override
+        void validate(Object wrapper, String fileName) {
+        }
+
+        @Override
+        byte[] marshalFragment(Object entity, Class<?> contextClass) {
+            Item item = (Item) entity;
+            return (item.id + "|" + item.name).getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        <T> T unmarshalFragment(byte[] xml, Class<T> type, Class<?> contextClass) {
+            String[] fields = new String(xml, StandardCharsets.UTF_8).split("\\|", 2);
+            return type.cast(new Item(Integer.parseInt(fields[0]), fields[1]));
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.urbanwaste.util;
+
+import com.urbanwaste.util.TimeSeriesStore.Resolution;
+import com.urbanwaste.util.TimeSeriesStore.Sample;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeSeriesStoreTest {
+
+    // Small, so that a few days of samples span several segment files
+    private static final int SEGMENT_BYTES = 2048;
+    private static final int HEAD_BYTES = 16 * 1024;
+    private static final int CHUNK_SAMPLES = 16;
+    // Midnight UTC, so that hour and day buckets are aligned on it
+    private static final long DAY0 = 19675L * 86400;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void samplesAndRollupsSurviveFlushAndReopen() throws IOException {
+        Random random = new Random(42);
+        // Two series over three days, a sample every 10 minutes; values go up and down
+        List<long[]> first = randomWalk(random, DAY0, 600, 3 * 144);
+        List<long[]> second = randomWalk(random, DAY0 + 7, 600, 3 * 144);
+        try (TimeSeriesStore store = open()) {
+            appendAll(store, 1, first);
+            appendAll(store, 2, second);
+            assertSeries(store, 1, first);
+            store.flush();
+        }
+        try (TimeSeriesStore store = open()) {
+            assertSeries(store, 1, first);
+            assertSeries(store, 2, second);
+
+            // The series go on where they stopped, and stale samples are still refused
+            assertFalse(store.append(1, first.get(first.size() - 1)[0], 10f));
+            List<long[]> more = randomWalk(random, first.get(first.size() - 1)[0] + 600, 600, 50);
+            appendAll(store, 1, more);
+            first.addAll(more);
+            assertSeries(store, 1, first);
+        }
+        try (TimeSeriesStore store = open()) {
+            assertSeries(store, 1, first);
+        }
+    }
+
+    @Test
+    void rangeQueriesReturnOnlyTheRequestedSamples() throws IOException {
+        List<long[]> samples = randomWalk(new Random(7), DAY0, 60, 200);
+        try (TimeSeriesStore store = open()) {
+            appendAll(store, 5, samples);
+            store.flush();
+            long from = samples.get(37)[0];
+            long to = samples.get(121)[0];
+            List<Sample> raw = store.query(5, Resolution.RAW, from, to);
+            assertEquals(85, raw.size());
+            assertEquals(from, raw.get(0).getEpochSecond());
+            assertEquals(to, raw.get(raw.size() - 1).getEpochSecond());
+            assertTrue(store.query(5, Resolution.RAW, to, from).isEmpty());
+            assertTrue(store.query(6, Resolution.RAW, from, to).isEmpty());
+        }
+    }
+
+    @Test
+    void tornChunkIsDroppedOnReopen() throws IOException {
+        // All in one hour, so that no rollup chunk is written: 16 samples fill chunk A,
+        // the 4 others go to chunk B on flush, the last chunk of the segment
+        List<long[]> samples = randomWalk(new Random(3), DAY0, 60, 20);
+        try (TimeSeriesStore store = open()) {
+            appendAll(store, 1, samples);
+            store.flush();
+        }
+        // Tear the end of chunk B, as a crash in the middle of writing it would
+        File segment = new File(dir.toFile(), "history-000000.seg");
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            long end = lastNonZeroByte(file);
+            for (long at = end - 7; at <= end; at++) {
+                file.seek(at);
+                file.write(0);
+            }
+        }
+
+        List<long[]> kept = new ArrayList<>(samples.subList(0, CHUNK_SAMPLES));
+        try (TimeSeriesStore store = open()) {
+            assertSeries(store, 1, kept);
+            // The torn space is reused: the dropped samples can be written again
+            List<long[]> rewritten = samples.subList(CHUNK_SAMPLES, samples.size());
+            appendAll(store, 1, rewritten);
+            kept.addAll(rewritten);
+            assertSeries(store, 1, kept);
+        }
+        try (TimeSeriesStore store = open()) {
+            assertSeries(store, 1, kept);
+        }
+    }
+
+    @Test
+    void bufferedSamplesAreReplayedFromTheHeadLog() throws IOException {
+        // Over several hours: some raw and hourly chunks are written, the rest (raw samples
+        // and the open buckets) exists only in memory and in the head log
+        List<long[]> samples = randomWalk(new Random(11), DAY0 + 86400 - 5 * 3600, 300, 100);
+        TimeSeriesStore crashed = open();
+        appendAll(crashed, 9, samples);
+        Map<String, Object> stats = crashed.getStats();
+        assertTrue(((Number) stats.get("bufferedSamples")).intValue() > 0);
+        // No flush nor close: the next instance starts from what a crash leaves on disk
+
+        try (TimeSeriesStore store = open()) {
+            assertSeries(store, 9, samples);
+            // Appends after the replay go on from the last replayed sample
+            assertFalse(store.append(9, samples.get(samples.size() - 1)[0], 1f));
+            assertTrue(store.append(9, samples.get(samples.size() - 1)[0] + 1, 1f));
+        }
+    }
+
+    private TimeSeriesStore open() throws IOException {
+        return new TimeSeriesStore(dir.toFile(), "history", SEGMENT_BYTES, HEAD_BYTES, CHUNK_SAMPLES);
+    }
+
+    // {epochSecond, value in hundredths}: a random walk between 0 and 100, stepping by step seconds
+    private static List<long[]> randomWalk(Random random, long start, long step, int count) {
+        List<long[]> samples = new ArrayList<>();
+        long value = 5000;
+        for (int i = 0; i < count; i++) {
+            value = Math.max(0, Math.min(10000, value + random.nextInt(1201) - 600));
+            samples.add(new long[] {start + i * step, value});
+        }
+        return samples;
+    }
+
+    private static void appendAll(TimeSeriesStore store, int id, List<long[]> samples) {
+        for (long[] sample : samples) {
+            assertTrue(store.append(id, sample[0], sample[1] / 100f), "sample at " + sample[0]);
+        }
+    }
+
+    // Every resolution against the expected samples and their buckets computed here
+    private static void assertSeries(TimeSeriesStore store, int id, List<long[]> samples) {
+        long from = samples.get(0)[0];
+        long to = samples.get(samples.size() - 1)[0];
+
+        List<Sample> raw = store.query(id, Resolution.RAW, from, to);
+        assertEquals(samples.size(), raw.size(), "raw samples");
+        for (int i = 0; i < samples.size(); i++) {
+            assertEquals(samples.get(i)[0], raw.get(i).getEpochSecond());
+            assertEquals(samples.get(i)[1] / 100.0, raw.get(i).getAverage(), 0.001, "raw value at " + i);
+            assertEquals(1, raw.get(i).getCount());
+        }
+
+        for (Resolution resolution : new Resolution[] {Resolution.HOUR, Resolution.DAY}) {
+            TreeMap<Long, long[]> buckets = new TreeMap<>();
+            for (long[] sample : samples) {
+                // min, max, sum, count
+                long[] bucket = buckets.computeIfAbsent(resolution.bucketStart(sample[0]),
+                    start -> new long[] {Long.MAX_VALUE, Long.MIN_VALUE, 0, 0});
+                bucket[0] = Math.min(bucket[0], sample[1]);
+                bucket[1] = Math.max(bucket[1], sample[1]);
+                bucket[2] += sample[1];
+                bucket[3]++;
+            }
+            List<Sample> actual = store.query(id, resolution, resolution.bucketStart(from), to);
+            assertEquals(buckets.size(), actual.size(), resolution + " buckets");
+            int i = 0;
+            for (Map.Entry<Long, long[]> entry : buckets.entrySet()) {
+                Sample bucket = actual.get(i++);
+                long[] expected = entry.getValue();
+                String what = resolution + " bucket " + entry.getKey();
+                assertEquals((long) entry.getKey(), bucket.getEpochSecond(), what);
+                assertEquals(expected[0] / 100.0, bucket.getMin(), 0.001, what + " min");
+                assertEquals(expected[1] / 100.0, bucket.getMax(), 0.001, what + " max");
+                assertEquals(Math.round((double) expected[2] / expected[3]) / 100.0, bucket.getAverage(), 0.001, what + " average");
+                assertEquals(expected[3], bucket.getCount(), what + " count");
+            }
+        }
+    }
+
+    private static long lastNonZeroByte(RandomAccessFile file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        file.seek(0);
+        file.readFully(bytes);
+        for (int i = bytes.length - 1; i >= 0; i--) {
+            if (bytes[i] != 0) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Empty segment");
+    }
+}
@@ -26,7 +26,7 @@ export const AddUserModal: React.FC<Props> = ({ isOpen, onClose, role, initialDa
       setPrenom(initialData.prenom || '');
       setMail(initialData.mail || initialData.email || '');
       setTelephone(String(initialData.telephone || ''));
-      setMotDePasse(initialData.motDePasse || initialData.password || '');
+      setMotDePasse('');
       setSelectedRole(initialData.role || role);
     } else {
       setNom('');
@@ -68,7 +68,8 @@ export const AddUserModal: React.FC<Props> = ({ isOpen, onClose, role, initialDa
         prenom,
         mail,
         telephone,
-        motDePasse: motDePasse || (initialData?.motDePasse || initialData?.password || '1234'),
+        // Left empty on an update: the current password is kept
+        motDePasse,
       };
 
       // If editing, use updateUser
@@ -339,7 +339,7 @@ export const useWasteStore = create<WasteStore>((set, get) => ({
         prenom: updated.prenom.trim(),
         telephone: updated.telephone ? parseInt(updated.telephone.replace(/\D/g, '')) || 0 : 0,
         role: updated.role === 'CHAUFFEUR' ? 'CHAUFFEUR' : updated.role === 'SUPERVISEUR' ? 'SUPERVISEUR' : 'EMPLOYE',
-        motDePasse: (updates as any).motDePasse || (updates as any).password || '1234',
+        motDePasse: (updates as any).motDePasse || (updates as any).password || undefined, // omitted: the current password is kept
         // Don't send disponible - it's not in Utilisateur base class
       };
       
@@ -1139,7 +1139,7 @@ export const useWasteStore = create<WasteStore>((set, get) => ({
         nom: data.nom || data.nom || '',
         prenom: data.prenom || data.prenom || '',
         telephone: data.telephone ? parseInt(String(data.telephone).replace(/\D/g, '')) || 0 : 0,
-        motDePasse: data.motDePasse || data.password || '1234',
+        motDePasse: data.motDePasse || data.password || undefined, // omitted: the current password is kept
         role: normalizedRole,
       };
       